@@ -0,0 +1,121 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * A check combining other checks; see {@link LogEventCheck#allOf(LogEventCheck...)} and {@link LogEventCheck#anyOf(LogEventCheck...)}.
+ * 
+ * @author mepeisen
+ */
+final class CompositeCheck implements LogEventCheck
+{
+    
+    /** {@code true} if all checks must match; {@code false} if any check must match */
+    private final boolean         all;
+    
+    /** the checks */
+    private final LogEventCheck[] checks;
+    
+    /**
+     * Constructor
+     * 
+     * @param all
+     *            {@code true} if all checks must match; {@code false} if any check must match
+     * @param checks
+     */
+    CompositeCheck(boolean all, LogEventCheck[] checks)
+    {
+        this.all = all;
+        this.checks = checks.clone();
+    }
+    
+    /**
+     * Returns a literal check that must match for this check to match
+     * 
+     * @return literal check or {@code null} if there is no such literal
+     */
+    LiteralCheck getRequiredLiteral()
+    {
+        if (this.all)
+        {
+            for (final LogEventCheck check : this.checks)
+            {
+                final LiteralCheck literal = requiredLiteral(check);
+                if (literal != null)
+                {
+                    return literal;
+                }
+            }
+        }
+        else if (this.checks.length == 1)
+        {
+            return requiredLiteral(this.checks[0]);
+        }
+        return null;
+    }
+    
+    /**
+     * Returns a literal check that must match for given check to match
+     * 
+     * @param check
+     * @return literal check or {@code null} if there is no such literal
+     */
+    static LiteralCheck requiredLiteral(LogEventCheck check)
+    {
+        if (check instanceof LiteralCheck)
+        {
+            return ((LiteralCheck) check).getLiteral().isEmpty() ? null : (LiteralCheck) check;
+        }
+        if (check instanceof CompositeCheck)
+        {
+            return ((CompositeCheck) check).getRequiredLiteral();
+        }
+        return null;
+    }
+    
+    @Override
+    public boolean check(LogEvent event)
+    {
+        for (final LogEventCheck check : this.checks)
+        {
+            if (check.check(event) != this.all)
+            {
+                return !this.all;
+            }
+        }
+        return this.all;
+    }
+    
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder(this.all ? "allOf(" : "anyOf("); //$NON-NLS-1$ //$NON-NLS-2$
+        for (int i = 0; i < this.checks.length; i++)
+        {
+            if (i > 0)
+            {
+                builder.append(", "); //$NON-NLS-1$
+            }
+            builder.append(this.checks[i]);
+        }
+        return builder.append(')').toString();
+    }
+    
+}
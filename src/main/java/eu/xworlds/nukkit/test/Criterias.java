@@ -98,6 +98,28 @@ public class Criterias
         return selectLangAndWaitStarted(() -> lang);
     }
     
+    /**
+     * Writes the server config before startup
+     * 
+     * @param config
+     *            server config
+     * @return the criteria to set the server config
+     */
+    public static NukkitServerCriteria serverConfig(NukkitServerConfig config)
+    {
+        return serverConfig(() -> config);
+    }
+    
+    /**
+     * Writes the default server config before startup
+     * 
+     * @return the criteria to set the server config
+     */
+    public static NukkitServerCriteria defaultServerConfig()
+    {
+        return serverConfig(NukkitServerConfig::new);
+    }
+    
     /**
      * Sets the server folder
      * 
@@ -170,6 +192,194 @@ public class Criterias
         };
     }
     
+    /**
+     * Writes the server config before startup
+     * 
+     * @param supplier
+     *            server config (lambda)
+     * @return the criteria to set the server config
+     */
+    public static NukkitServerCriteria serverConfig(Supplier<NukkitServerConfig> supplier)
+    {
+        return new NukkitServerBeforeStartupCriteria() {
+            @Override
+            public void beforeStartup(NukkitTestSession session)
+            {
+                session.setServerConfig(supplier.get());
+            }
+        };
+    }
+    
+    /**
+     * Materializes a template into the server folder before startup; uses the template config if no other config is set
+     * 
+     * @param template
+     *            the server template
+     * @return the criteria to set the template
+     */
+    public static NukkitServerCriteria template(NukkitServerTemplate template)
+    {
+        return new NukkitServerBeforeStartupCriteria() {
+            @Override
+            public void beforeStartup(NukkitTestSession session)
+            {
+                session.setTemplate(template);
+                if (session.getServerConfig() == null)
+                {
+                    session.setServerConfig(template.getConfig());
+                }
+            }
+        };
+    }
+    
+    /**
+     * Materializes the default template into the server folder before startup
+     * 
+     * @return the criteria to set the template
+     */
+    public static NukkitServerCriteria defaultTemplate()
+    {
+        return template(NukkitServerTemplate.defaultTemplate());
+    }
+    
+    /**
+     * Loads the server within its own class loader; allows running multiple servers concurrently
+     * 
+     * @return the criteria to isolate the server
+     */
+    public static NukkitServerCriteria isolated()
+    {
+        return new NukkitServerBeforeStartupCriteria() {
+            @Override
+            public void beforeStartup(NukkitTestSession session)
+            {
+                session.setIsolated(true);
+            }
+        };
+    }
+    
+    /**
+     * Runs the server within a pre-warmed worker vm
+     * 
+     * @return the criteria to fork the server
+     */
+    public static NukkitServerCriteria forked()
+    {
+        return new NukkitServerBeforeStartupCriteria() {
+            @Override
+            public void beforeStartup(NukkitTestSession session)
+            {
+                session.setForked(true);
+            }
+        };
+    }
+    
+    /**
+     * Sets the log buffer of the session
+     * 
+     * @param capacity
+     *            the number of log events kept in memory
+     * @param overflow
+     *            the policy for log events exceeding the capacity
+     * @return the criteria to set the log buffer
+     */
+    public static NukkitServerCriteria logBuffer(int capacity, LogOverflow overflow)
+    {
+        return new NukkitServerBeforeStartupCriteria() {
+            @Override
+            public void beforeStartup(NukkitTestSession session)
+            {
+                session.setLogBuffer(capacity, overflow);
+            }
+        };
+    }
+    
+    /**
+     * Journals the log events within a memory mapped file in the server folder; use for long running sessions
+     * 
+     * @return the criteria to journal the log events
+     */
+    public static NukkitServerCriteria logJournal()
+    {
+        return new NukkitServerBeforeStartupCriteria() {
+            @Override
+            public void beforeStartup(NukkitTestSession session)
+            {
+                session.setLogJournal(true);
+            }
+        };
+    }
+    
+    /**
+     * Sets the filter for captured log messages
+     * 
+     * @param filter
+     *            the capture filter
+     * @return the criteria to set the capture filter
+     */
+    public static NukkitServerCriteria captureFilter(LogCaptureFilter filter)
+    {
+        return new NukkitServerBeforeStartupCriteria() {
+            @Override
+            public void beforeStartup(NukkitTestSession session)
+            {
+                session.setCaptureFilter(filter);
+            }
+        };
+    }
+    
+    /**
+     * Captures the log messages without writing them to the log file and console of the server
+     * 
+     * @return the criteria to disable the log forwarding
+     */
+    public static NukkitServerCriteria quietLog()
+    {
+        return new NukkitServerBeforeStartupCriteria() {
+            @Override
+            public void beforeStartup(NukkitTestSession session)
+            {
+                session.setLogForwarding(false);
+            }
+        };
+    }
+    
+    /**
+     * Sets the clock of the main loop
+     * 
+     * @param mode
+     *            the tick mode
+     * @return the criteria to set the tick mode
+     */
+    public static NukkitServerCriteria tickMode(TickMode mode)
+    {
+        return new NukkitServerBeforeStartupCriteria() {
+            @Override
+            public void beforeStartup(NukkitTestSession session)
+            {
+                session.setTickMode(mode);
+            }
+        };
+    }
+    
+    /**
+     * Waits for the server being started; requires a configured server
+     * 
+     * @return the criteria to wait for the startup
+     */
+    public static NukkitServerCriteria waitStarted()
+    {
+        return new NukkitServerAfterStartupCriteria() {
+            
+            @Override
+            public void afterStartup(NukkitTestSession session, Server server)
+            {
+                // wait for finished startup
+                session.waitMainLoop(10000); // wait for at least 10 seconds
+            }
+        };
+    }
+    
     /**
      * Selects a language and waits for the server being started
      * 
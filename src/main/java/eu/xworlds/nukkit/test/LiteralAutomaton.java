@@ -0,0 +1,241 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton finding all occurrences of a set of literals within a single pass over a message.
+ * 
+ * @author mepeisen
+ */
+final class LiteralAutomaton
+{
+    
+    /**
+     * Receiver of literal occurrences
+     */
+    @FunctionalInterface
+    interface Hit
+    {
+        /**
+         * Invoked for each occurrence of a literal
+         * 
+         * @param literal
+         *            index of the literal
+         * @param start
+         *            index of the first character of the occurrence
+         */
+        void found(int literal, int start);
+    }
+    
+    /** the literal lengths */
+    private final int[]   lengths;
+    
+    /** the transition characters per state; sorted */
+    private final char[][] keys;
+    
+    /** the transition targets per state */
+    private final int[][] targets;
+    
+    /** the failure link per state */
+    private final int[]   fail;
+    
+    /** the nearest state reachable via failure links having outputs; {@code -1} for none */
+    private final int[]   dictionary;
+    
+    /** the literals ending at each state */
+    private final int[][] outputs;
+    
+    /**
+     * Constructor
+     * 
+     * @param literals
+     *            the literals to find
+     */
+    LiteralAutomaton(List<String> literals)
+    {
+        this.lengths = new int[literals.size()];
+        final List<char[]> keyList = new ArrayList<>();
+        final List<int[]> targetList = new ArrayList<>();
+        final List<int[]> outputList = new ArrayList<>();
+        keyList.add(new char[0]);
+        targetList.add(new int[0]);
+        outputList.add(new int[0]);
+        
+        // trie
+        for (int l = 0; l < literals.size(); l++)
+        {
+            final String literal = literals.get(l);
+            this.lengths[l] = literal.length();
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++)
+            {
+                final char c = literal.charAt(i);
+                final char[] k = keyList.get(state);
+                final int pos = Arrays.binarySearch(k, c);
+                if (pos >= 0)
+                {
+                    state = targetList.get(state)[pos];
+                }
+                else
+                {
+                    final int ins = -pos - 1;
+                    final int next = keyList.size();
+                    keyList.add(new char[0]);
+                    targetList.add(new int[0]);
+                    outputList.add(new int[0]);
+                    keyList.set(state, insert(k, ins, c));
+                    targetList.set(state, insert(targetList.get(state), ins, next));
+                    state = next;
+                }
+            }
+            outputList.set(state, append(outputList.get(state), l));
+        }
+        
+        final int size = keyList.size();
+        this.keys = keyList.toArray(new char[size][]);
+        this.targets = targetList.toArray(new int[size][]);
+        this.outputs = outputList.toArray(new int[size][]);
+        this.fail = new int[size];
+        this.dictionary = new int[size];
+        this.dictionary[0] = -1;
+        
+        // failure links in breadth first order
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (final int child : this.targets[0])
+        {
+            this.fail[child] = 0;
+            this.dictionary[child] = -1;
+            queue.add(child);
+        }
+        while (!queue.isEmpty())
+        {
+            final int state = queue.poll();
+            for (int i = 0; i < this.keys[state].length; i++)
+            {
+                final char c = this.keys[state][i];
+                final int child = this.targets[state][i];
+                int f = this.fail[state];
+                int next = this.step(f, c);
+                while (next < 0 && f != 0)
+                {
+                    f = this.fail[f];
+                    next = this.step(f, c);
+                }
+                this.fail[child] = next < 0 ? 0 : next;
+                final int fc = this.fail[child];
+                this.dictionary[child] = this.outputs[fc].length > 0 ? fc : this.dictionary[fc];
+                queue.add(child);
+            }
+        }
+    }
+    
+    /**
+     * Returns the direct transition
+     * 
+     * @param state
+     * @param c
+     * @return target state or {@code -1}
+     */
+    private int step(int state, char c)
+    {
+        final int pos = Arrays.binarySearch(this.keys[state], c);
+        return pos >= 0 ? this.targets[state][pos] : -1;
+    }
+    
+    /**
+     * Scans a message and reports each occurrence of each literal
+     * 
+     * @param message
+     * @param hit
+     */
+    void scan(String message, Hit hit)
+    {
+        int state = 0;
+        for (int i = 0; i < message.length(); i++)
+        {
+            final char c = message.charAt(i);
+            int next = this.step(state, c);
+            while (next < 0 && state != 0)
+            {
+                state = this.fail[state];
+                next = this.step(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            for (int s = state; s > 0; s = this.dictionary[s])
+            {
+                for (final int literal : this.outputs[s])
+                {
+                    hit.found(literal, i - this.lengths[literal] + 1);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Inserts a char into an array
+     * 
+     * @param array
+     * @param index
+     * @param value
+     * @return new array
+     */
+    private static char[] insert(char[] array, int index, char value)
+    {
+        final char[] result = new char[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+    
+    /**
+     * Inserts an int into an array
+     * 
+     * @param array
+     * @param index
+     * @param value
+     * @return new array
+     */
+    private static int[] insert(int[] array, int index, int value)
+    {
+        final int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+    
+    /**
+     * Appends an int to an array
+     * 
+     * @param array
+     * @param value
+     * @return new array
+     */
+    private static int[] append(int[] array, int value)
+    {
+        return insert(array, array.length, value);
+    }
+    
+}
@@ -0,0 +1,128 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * A check comparing the log message against a literal; compiled into the automaton of a {@link LogMatcher}.
+ * 
+ * @author mepeisen
+ */
+final class LiteralCheck implements LogEventCheck
+{
+    
+    /**
+     * The kind of comparison
+     */
+    enum Kind
+    {
+        /** the message equals the literal */
+        EQUALS,
+        /** the message starts with the literal */
+        PREFIX,
+        /** the message contains the literal */
+        CONTAINS
+    }
+    
+    /** the kind of comparison */
+    private final Kind   kind;
+    
+    /** the literal */
+    private final String literal;
+    
+    /**
+     * Constructor
+     * 
+     * @param kind
+     * @param literal
+     */
+    LiteralCheck(Kind kind, String literal)
+    {
+        this.kind = kind;
+        this.literal = literal;
+    }
+    
+    /**
+     * Returns the kind of comparison
+     * 
+     * @return kind
+     */
+    Kind getKind()
+    {
+        return this.kind;
+    }
+    
+    /**
+     * Returns the literal
+     * 
+     * @return literal
+     */
+    String getLiteral()
+    {
+        return this.literal;
+    }
+    
+    /**
+     * Checks if a literal occurrence found by an automaton satisfies this check
+     * 
+     * @param message
+     *            the log message
+     * @param start
+     *            the index the literal was found at
+     * @return {@code true} if the check is satisfied
+     */
+    boolean accepts(String message, int start)
+    {
+        switch (this.kind)
+        {
+            case EQUALS:
+                return start == 0 && message.length() == this.literal.length();
+            case PREFIX:
+                return start == 0;
+            default:
+                return true;
+        }
+    }
+    
+    @Override
+    public boolean check(LogEvent event)
+    {
+        final String message = event.getMessage();
+        if (message == null)
+        {
+            return false;
+        }
+        switch (this.kind)
+        {
+            case EQUALS:
+                return message.equals(this.literal);
+            case PREFIX:
+                return message.startsWith(this.literal);
+            default:
+                return message.contains(this.literal);
+        }
+    }
+    
+    @Override
+    public String toString()
+    {
+        return this.kind.name().toLowerCase() + " \"" + this.literal + "\""; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    
+}
@@ -0,0 +1,298 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static org.junit.gen5.api.Assertions.assertFalse;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import cn.nukkit.utils.LogLevel;
+
+/**
+ * Filter deciding which log messages a test session captures.
+ * 
+ * <p>
+ * The filter is evaluated on the logging thread before a {@link NukkitTestSession.LogEvent} is created; rejected messages do not allocate anything.
+ * The messages the session waits for during startup are always captured; the filter applies as soon as the startup messages arrived. Forked sessions
+ * send the filter to the worker vm so that rejected messages never cross the connection.
+ * </p>
+ * 
+ * <p>
+ * The filter counts the messages it rejected. Use one filter instance per session to get meaningful counters.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class LogCaptureFilter
+{
+    
+    /** the least severe level to capture */
+    private LogLevel         minimumLevel     = LogLevel.DEBUG;
+    
+    /** the prefixes a message must start with; empty to allow all messages */
+    private String[]         allowedPrefixes  = new String[0];
+    
+    /** the prefixes of messages to be rejected */
+    private String[]         deniedPrefixes   = new String[0];
+    
+    /** the maximum message length; longer messages are truncated */
+    private int              maxLength        = Integer.MAX_VALUE;
+    
+    /** the number of messages rejected by level */
+    private final LongAdder  droppedByLevel   = new LongAdder();
+    
+    /** the number of messages rejected by prefix */
+    private final LongAdder  droppedByPrefix  = new LongAdder();
+    
+    /** the number of truncated messages */
+    private final LongAdder  truncated        = new LongAdder();
+    
+    /** {@code true} if the filter is used by a running session */
+    private volatile boolean inUse;
+    
+    /**
+     * Constructor
+     */
+    public LogCaptureFilter()
+    {
+        // empty
+    }
+    
+    /**
+     * Sets the least severe level to capture; all levels more severe are captured too
+     * 
+     * @param level
+     * @return this filter
+     */
+    public LogCaptureFilter setMinimumLevel(LogLevel level)
+    {
+        assertFalse(this.inUse, "Filter already in use"); //$NON-NLS-1$
+        this.minimumLevel = level;
+        return this;
+    }
+    
+    /**
+     * Sets the prefixes a message must start with to be captured; no prefixes capture all messages
+     * 
+     * @param prefixes
+     * @return this filter
+     */
+    public LogCaptureFilter setAllowedPrefixes(String... prefixes)
+    {
+        assertFalse(this.inUse, "Filter already in use"); //$NON-NLS-1$
+        this.allowedPrefixes = prefixes.clone();
+        return this;
+    }
+    
+    /**
+     * Sets the prefixes of messages that are not captured
+     * 
+     * @param prefixes
+     * @return this filter
+     */
+    public LogCaptureFilter setDeniedPrefixes(String... prefixes)
+    {
+        assertFalse(this.inUse, "Filter already in use"); //$NON-NLS-1$
+        this.deniedPrefixes = prefixes.clone();
+        return this;
+    }
+    
+    /**
+     * Sets the maximum length of captured messages; longer messages are truncated
+     * 
+     * @param length
+     * @return this filter
+     */
+    public LogCaptureFilter setMaxMessageLength(int length)
+    {
+        assertFalse(this.inUse, "Filter already in use"); //$NON-NLS-1$
+        this.maxLength = length;
+        return this;
+    }
+    
+    /**
+     * Marks this filter being used by a session; the filter cannot be changed afterwards
+     */
+    void markInUse()
+    {
+        this.inUse = true;
+    }
+    
+    /**
+     * Returns the least severe level to capture
+     * 
+     * @return minimum level
+     */
+    LogLevel getMinimumLevel()
+    {
+        return this.minimumLevel;
+    }
+    
+    /**
+     * Returns the prefixes a message must start with
+     * 
+     * @return allowed prefixes; empty to allow all messages
+     */
+    String[] getAllowedPrefixes()
+    {
+        return this.allowedPrefixes.clone();
+    }
+    
+    /**
+     * Returns the prefixes of messages that are not captured
+     * 
+     * @return denied prefixes
+     */
+    String[] getDeniedPrefixes()
+    {
+        return this.deniedPrefixes.clone();
+    }
+    
+    /**
+     * Returns the maximum length of captured messages
+     * 
+     * @return maximum length
+     */
+    int getMaxMessageLength()
+    {
+        return this.maxLength;
+    }
+    
+    /**
+     * Adds the counters of a copy of this filter applied within a worker vm
+     * 
+     * @param byLevel
+     *            messages rejected by level
+     * @param byPrefix
+     *            messages rejected by prefix
+     * @param truncatedMessages
+     *            truncated messages
+     */
+    void addCounters(long byLevel, long byPrefix, long truncatedMessages)
+    {
+        this.droppedByLevel.add(byLevel);
+        this.droppedByPrefix.add(byPrefix);
+        this.truncated.add(truncatedMessages);
+    }
+    
+    /**
+     * Filters a log message; public for the worker vm running the server of a forked session
+     * 
+     * @param level
+     * @param message
+     * @return the message to be captured or {@code null} if the message is rejected
+     */
+    public String filter(LogLevel level, String message)
+    {
+        if (level.ordinal() > this.minimumLevel.ordinal())
+        {
+            this.droppedByLevel.increment();
+            return null;
+        }
+        if (message == null)
+        {
+            return null;
+        }
+        if (this.allowedPrefixes.length > 0 && !startsWithAny(message, this.allowedPrefixes))
+        {
+            this.droppedByPrefix.increment();
+            return null;
+        }
+        if (startsWithAny(message, this.deniedPrefixes))
+        {
+            this.droppedByPrefix.increment();
+            return null;
+        }
+        if (message.length() > this.maxLength)
+        {
+            this.truncated.increment();
+            return message.substring(0, this.maxLength);
+        }
+        return message;
+    }
+    
+    /**
+     * Checks if given message starts with any of the prefixes
+     * 
+     * @param message
+     * @param prefixes
+     * @return {@code true} if one of the prefixes matched
+     */
+    private static boolean startsWithAny(String message, String[] prefixes)
+    {
+        for (final String prefix : prefixes)
+        {
+            if (message.startsWith(prefix))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the number of messages rejected because of their level
+     * 
+     * @return number of rejected messages
+     */
+    public long getDroppedByLevel()
+    {
+        return this.droppedByLevel.sum();
+    }
+    
+    /**
+     * Returns the number of messages rejected because of their prefix
+     * 
+     * @return number of rejected messages
+     */
+    public long getDroppedByPrefix()
+    {
+        return this.droppedByPrefix.sum();
+    }
+    
+    /**
+     * Returns the number of rejected messages
+     * 
+     * @return number of rejected messages
+     */
+    public long getDropped()
+    {
+        return this.droppedByLevel.sum() + this.droppedByPrefix.sum();
+    }
+    
+    /**
+     * Returns the number of messages that were truncated
+     * 
+     * @return number of truncated messages
+     */
+    public long getTruncated()
+    {
+        return this.truncated.sum();
+    }
+    
+    /**
+     * Resets the counters
+     */
+    public void resetCounters()
+    {
+        this.droppedByLevel.reset();
+        this.droppedByPrefix.reset();
+        this.truncated.reset();
+    }
+    
+}
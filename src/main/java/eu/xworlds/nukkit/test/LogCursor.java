@@ -0,0 +1,67 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+/**
+ * A reading position within the log of a test session.
+ * 
+ * <p>
+ * Cursors are advanced by {@link NukkitTestSession#checkLog(LogEventCheck, LogCursor)} and {@link NukkitTestSession#readLog(LogCursor)}, so repeated
+ * reads only visit log events not seen before. A cursor must not be shared between threads.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class LogCursor
+{
+    
+    /** the sequence number of the next log event to read */
+    private long position;
+    
+    /**
+     * Constructor
+     * 
+     * @param position
+     *            the sequence number of the next log event to read
+     */
+    LogCursor(long position)
+    {
+        this.position = position;
+    }
+    
+    /**
+     * Returns the sequence number of the next log event to read
+     * 
+     * @return sequence number
+     */
+    public long getPosition()
+    {
+        return this.position;
+    }
+    
+    /**
+     * Sets the sequence number of the next log event to read
+     * 
+     * @param position
+     */
+    void setPosition(long position)
+    {
+        this.position = position;
+    }
+    
+}
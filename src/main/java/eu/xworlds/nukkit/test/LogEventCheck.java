@@ -17,10 +17,20 @@
  */
 package eu.xworlds.nukkit.test;
 
+import java.util.regex.Pattern;
+
+import cn.nukkit.utils.LogLevel;
 import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
 
 /**
  * Functional interface to check a log message
+ * 
+ * <p>
+ * The static factories create checks a {@link LogMatcher} compiles into a single automaton. Literal checks ({@link #message(String)},
+ * {@link #prefix(String)}, {@link #contains(String)}) and {@link #allOf(LogEventCheck...)} combinations containing them are found within one pass
+ * over each message.
+ * </p>
+ * 
  * @author mepeisen
  */
 @FunctionalInterface
@@ -32,4 +42,150 @@ public interface LogEventCheck
      * @return {@code true} if given message matches the critaria
      */
     boolean check(LogEvent event);
-}
\ No newline at end of file
+    
+    /**
+     * Creates a check for messages equal to given text
+     * 
+     * @param text
+     * @return check
+     */
+    static LogEventCheck message(String text)
+    {
+        return new LiteralCheck(LiteralCheck.Kind.EQUALS, text);
+    }
+    
+    /**
+     * Creates a check for messages starting with given text
+     * 
+     * @param text
+     * @return check
+     */
+    static LogEventCheck prefix(String text)
+    {
+        return new LiteralCheck(LiteralCheck.Kind.PREFIX, text);
+    }
+    
+    /**
+     * Creates a check for messages containing given text
+     * 
+     * @param text
+     * @return check
+     */
+    static LogEventCheck contains(String text)
+    {
+        return new LiteralCheck(LiteralCheck.Kind.CONTAINS, text);
+    }
+    
+    /**
+     * Creates a check for messages containing a match of given regular expression
+     * 
+     * @param regex
+     * @return check
+     */
+    static LogEventCheck regex(String regex)
+    {
+        final Pattern pattern = Pattern.compile(regex);
+        return new LogEventCheck() {
+            @Override
+            public boolean check(LogEvent event)
+            {
+                return event.getMessage() != null && pattern.matcher(event.getMessage()).find();
+            }
+            
+            @Override
+            public String toString()
+            {
+                return "regex \"" + regex + "\""; //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        };
+    }
+    
+    /**
+     * Creates a check for events of given level
+     * 
+     * @param level
+     * @return check
+     */
+    static LogEventCheck level(LogLevel level)
+    {
+        return new LogEventCheck() {
+            @Override
+            public boolean check(LogEvent event)
+            {
+                return event.getLevel() == level;
+            }
+            
+            @Override
+            public String toString()
+            {
+                return "level " + level; //$NON-NLS-1$
+            }
+        };
+    }
+    
+    /**
+     * Creates a check matching if all given checks match the same event
+     * 
+     * @param checks
+     * @return check
+     */
+    static LogEventCheck allOf(LogEventCheck... checks)
+    {
+        return new CompositeCheck(true, checks);
+    }
+    
+    /**
+     * Creates a check matching if any of given checks matches
+     * 
+     * @param checks
+     * @return check
+     */
+    static LogEventCheck anyOf(LogEventCheck... checks)
+    {
+        return new CompositeCheck(false, checks);
+    }
+    
+    /**
+     * Creates a check matching as soon as all given checks matched in given order; each event advances at most one step.
+     * 
+     * <p>
+     * The returned check is stateful; create a new one for each use. Events at or below the sequence number of the last checked event are ignored.
+     * </p>
+     * 
+     * @param checks
+     * @return check
+     */
+    static LogEventCheck inOrder(LogEventCheck... checks)
+    {
+        final LogEventCheck[] steps = checks.clone();
+        return new LogEventCheck() {
+            /** the index of the next step */
+            private int  next;
+            
+            /** the sequence number of the last checked event */
+            private long last = -1;
+            
+            @Override
+            public synchronized boolean check(LogEvent event)
+            {
+                if (event.getSequence() <= this.last)
+                {
+                    return this.next == steps.length;
+                }
+                this.last = event.getSequence();
+                if (this.next < steps.length && steps[this.next].check(event))
+                {
+                    this.next++;
+                }
+                return this.next == steps.length;
+            }
+            
+            @Override
+            public String toString()
+            {
+                return "inOrder" + new CompositeCheck(true, steps).toString().substring(5); //$NON-NLS-1$
+            }
+        };
+    }
+    
+}
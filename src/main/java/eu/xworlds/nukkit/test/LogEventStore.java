@@ -0,0 +1,797 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * A bounded store of log events.
+ * 
+ * <p>
+ * The log events are kept within a ring buffer; each event is assigned a sequence number that addresses its slot. Appending does not lock; readers
+ * scan the ring starting at a given sequence number. Events overwritten by newer events are either dropped or spilled to disk, see
+ * {@link LogOverflow}. Events are spilled before their slot is overwritten; readers lapped by the producers find them in the spill file.
+ * </p>
+ * 
+ * <p>
+ * With a {@link LogJournal} each event is journaled on append; readers take events no longer within the ring from the journal and the overflow
+ * policy does not apply.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+final class LogEventStore
+{
+    
+    /** the default capacity */
+    static final int                            DEFAULT_CAPACITY = 65536;
+    
+    /** the ring slots */
+    private final AtomicReferenceArray<LogEvent> slots;
+    
+    /** the mask to compute slot indices */
+    private final int                            mask;
+    
+    /** the overflow policy */
+    private final LogOverflow                    overflow;
+    
+    /** the supplier of the spill file */
+    private final Supplier<File>                 spillFile;
+    
+    /** the spill file or {@code null} if nothing was spilled */
+    private Spill                                spill;
+    
+    /** the journal or {@code null} */
+    private final LogJournal                     journal;
+    
+    /** the next sequence number */
+    private final AtomicLong                     next             = new AtomicLong();
+    
+    /** the number of dropped events */
+    private final AtomicLong                     dropped          = new AtomicLong();
+    
+    /** the first sequence number visible to readers; set by {@link #clear()} */
+    private volatile long                        first;
+    
+    /**
+     * Constructor
+     * 
+     * @param capacity
+     *            the minimum number of events kept in memory; rounded up to a power of two
+     * @param overflow
+     *            the overflow policy
+     * @param spillFile
+     *            supplier of the spill file; only invoked on the first overflow
+     * @param journal
+     *            the journal receiving all events or {@code null}
+     */
+    LogEventStore(int capacity, LogOverflow overflow, Supplier<File> spillFile, LogJournal journal)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("capacity must be positive"); //$NON-NLS-1$
+        }
+        final int size = capacity > (1 << 30) ? (1 << 30) : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+        this.mask = this.slots.length() - 1;
+        this.overflow = overflow;
+        this.spillFile = spillFile;
+        this.journal = journal;
+    }
+    
+    /**
+     * Returns the journal
+     * 
+     * @return journal or {@code null}
+     */
+    LogJournal getJournal()
+    {
+        return this.journal;
+    }
+    
+    /**
+     * Returns the number of events kept in memory
+     * 
+     * @return capacity
+     */
+    int getCapacity()
+    {
+        return this.slots.length();
+    }
+    
+    /**
+     * Returns the overflow policy
+     * 
+     * @return overflow policy
+     */
+    LogOverflow getOverflow()
+    {
+        return this.overflow;
+    }
+    
+    /**
+     * Appends a new log event
+     * 
+     * @param level
+     * @param message
+     * @param nanoTime
+     * @param threadName
+     * @param tick
+     * @return the new log event
+     */
+    LogEvent append(LogLevel level, String message, long nanoTime, String threadName, int tick)
+    {
+        final long seq;
+        final LogEvent event;
+        if (this.journal == null)
+        {
+            seq = this.next.getAndIncrement();
+            event = new LogEvent(level, message, seq, nanoTime, threadName, tick);
+        }
+        else
+        {
+            // the journal requires ascending sequence numbers
+            synchronized (this.journal)
+            {
+                seq = this.next.getAndIncrement();
+                event = new LogEvent(level, message, seq, nanoTime, threadName, tick);
+                this.journal.append(event);
+            }
+        }
+        final int index = (int) (seq & this.mask);
+        while (true)
+        {
+            final LogEvent old = this.slots.get(index);
+            if (old != null && old.getSequence() > seq)
+            {
+                // a faster thread already lapped us
+                this.evict(event);
+                break;
+            }
+            final boolean spillFirst = old != null && this.isSpilling();
+            if (spillFirst)
+            {
+                // readers must find the old event as soon as the slot no longer holds it; losing the race spills it twice and readers skip the duplicate
+                this.evict(old);
+            }
+            if (this.slots.compareAndSet(index, old, event))
+            {
+                if (old != null && !spillFirst)
+                {
+                    this.evict(old);
+                }
+                break;
+            }
+        }
+        return event;
+    }
+    
+    /**
+     * Checks if overwritten events are spilled to disk
+     * 
+     * @return {@code true} for spilling stores without journal
+     */
+    private boolean isSpilling()
+    {
+        return this.overflow == LogOverflow.SPILL_TO_DISK && this.journal == null;
+    }
+    
+    /**
+     * Removes an overwritten event from ring
+     * 
+     * @param event
+     */
+    private void evict(LogEvent event)
+    {
+        if (event.getSequence() < this.first || this.journal != null)
+        {
+            // already cleared or journaled
+            return;
+        }
+        if (this.overflow == LogOverflow.SPILL_TO_DISK)
+        {
+            final Spill s = this.getSpill();
+            if (s.write(event))
+            {
+                return;
+            }
+            // the spill file was deleted by clear
+        }
+        this.dropped.incrementAndGet();
+    }
+    
+    /**
+     * Returns the spill file; creates it on first use
+     * 
+     * @return spill file
+     */
+    private synchronized Spill getSpill()
+    {
+        if (this.spill == null)
+        {
+            this.spill = new Spill(this.spillFile.get());
+        }
+        return this.spill;
+    }
+    
+    /**
+     * Returns the sequence number the next event will receive
+     * 
+     * @return next sequence number
+     */
+    long getHead()
+    {
+        return this.next.get();
+    }
+    
+    /**
+     * Returns the sequence number of the oldest readable event
+     * 
+     * @return oldest sequence number
+     */
+    long getTail()
+    {
+        if (this.overflow == LogOverflow.SPILL_TO_DISK || this.journal != null)
+        {
+            return this.first;
+        }
+        return Math.max(this.first, this.next.get() - this.slots.length());
+    }
+    
+    /**
+     * Returns the number of dropped events
+     * 
+     * @return dropped events
+     */
+    long getDropped()
+    {
+        return this.dropped.get();
+    }
+    
+    /**
+     * Hides all present events from readers; deletes the spill file and discards the journal
+     */
+    void clear()
+    {
+        if (this.journal != null)
+        {
+            // appending journals under the same lock; no event newer than first is discarded
+            synchronized (this.journal)
+            {
+                this.first = this.next.get();
+                this.journal.close();
+            }
+            return;
+        }
+        this.first = this.next.get();
+        final Spill s;
+        synchronized (this)
+        {
+            s = this.spill;
+            this.spill = null;
+        }
+        if (s != null)
+        {
+            s.delete();
+        }
+    }
+    
+    /**
+     * Closes the spill file after the server stopped; spilled events stay readable till {@link #clear()}
+     */
+    void close()
+    {
+        final Spill s;
+        synchronized (this)
+        {
+            s = this.spill;
+        }
+        if (s != null)
+        {
+            s.close();
+        }
+    }
+    
+    /**
+     * Visits the events starting at given sequence number till the visitor accepts an event or the last published event was visited
+     * 
+     * @param from
+     *            the sequence number of the first event to visit
+     * @param visitor
+     *            the visitor; returns {@code true} to stop the scan
+     * @return the sequence number following the last visited event; the position to continue the scan
+     */
+    long scan(long from, Predicate<LogEvent> visitor)
+    {
+        long seq = from;
+        restart: while (true)
+        {
+            seq = Math.max(seq, this.first);
+            final long head = this.next.get();
+            final long ring = head - this.slots.length();
+            if (seq < ring)
+            {
+                final long min = this.first;
+                final Predicate<LogEvent> evicted = (event) -> event.getSequence() >= min && visitor.test(event);
+                if (this.journal != null)
+                {
+                    final long pos = this.journal.scan(seq, ring, evicted);
+                    if (pos >= 0)
+                    {
+                        return pos;
+                    }
+                    seq = ring;
+                }
+                else if (this.overflow == LogOverflow.SPILL_TO_DISK)
+                {
+                    final Spill s;
+                    synchronized (this)
+                    {
+                        s = this.spill;
+                    }
+                    if (s != null)
+                    {
+                        final boolean[] accepted = new boolean[1];
+                        seq = s.scan(seq, ring, (event) -> accepted[0] = evicted.test(event));
+                        if (accepted[0])
+                        {
+                            return seq;
+                        }
+                    }
+                    // events not within the spill file were not yet evicted and are still within the ring
+                }
+                else
+                {
+                    // the events were dropped and counted, see getDropped
+                    seq = ring;
+                }
+            }
+            for (; seq < head; seq++)
+            {
+                final LogEvent event = this.slots.get((int) (seq & this.mask));
+                if (event == null || event.getSequence() < seq)
+                {
+                    // claimed but not yet published
+                    break;
+                }
+                if (event.getSequence() > seq)
+                {
+                    // overwritten while scanning; continue with the evicted events
+                    continue restart;
+                }
+                if (visitor.test(event))
+                {
+                    return seq + 1;
+                }
+            }
+            return seq;
+        }
+    }
+    
+    /**
+     * Returns the readable events starting at given sequence number
+     * 
+     * @param from
+     * @return log events
+     */
+    List<LogEvent> read(long from)
+    {
+        final List<LogEvent> result = new ArrayList<>();
+        this.scan(from, (event) -> {
+            result.add(event);
+            return false;
+        });
+        return result;
+    }
+    
+    /**
+     * Returns the readable events captured within given time range
+     * 
+     * @param fromNanoTime
+     *            first capture time (inclusive)
+     * @param toNanoTime
+     *            last capture time (exclusive)
+     * @return log events
+     */
+    List<LogEvent> readTime(long fromNanoTime, long toNanoTime)
+    {
+        final List<LogEvent> result = new ArrayList<>();
+        final Predicate<LogEvent> collector = (event) -> {
+            if (event.getNanoTime() - fromNanoTime >= 0 && event.getNanoTime() - toNanoTime < 0)
+            {
+                result.add(event);
+            }
+            return false;
+        };
+        if (this.journal != null)
+        {
+            final long min = this.first;
+            this.journal.scanTime(fromNanoTime, toNanoTime, (event) -> event.getSequence() >= min && collector.test(event));
+        }
+        else
+        {
+            this.scan(0, collector);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the readable events of given sequence range
+     * 
+     * @param from
+     *            first sequence number (inclusive)
+     * @param to
+     *            last sequence number (exclusive)
+     * @return log events
+     */
+    List<LogEvent> read(long from, long to)
+    {
+        final List<LogEvent> result = new ArrayList<>();
+        this.scan(from, (event) -> {
+            if (event.getSequence() >= to)
+            {
+                return true;
+            }
+            result.add(event);
+            return false;
+        });
+        return result;
+    }
+    
+    /**
+     * File receiving the evicted events.
+     * 
+     * <p>
+     * The events are appended in blocks of {@link #BLOCK} records; the offset and the sequence range of each block are kept in memory so that readers
+     * only stream the blocks overlapping the requested range.
+     * </p>
+     */
+    private static final class Spill
+    {
+        
+        /** the number of records per block */
+        private static final int            BLOCK        = 1024;
+        
+        /** the log levels by ordinal */
+        private static final LogLevel[]     LEVELS       = LogLevel.values();
+        
+        /** the file */
+        private final File                  file;
+        
+        /** the output stream or {@code null} if closed */
+        private DataOutputStream            out;
+        
+        /** the buffer encoding one record */
+        private final ByteArrayOutputStream record       = new ByteArrayOutputStream();
+        
+        /** the number of bytes written */
+        private long                        length;
+        
+        /** the file offset of each block */
+        private long[]                      blockOffsets = new long[16];
+        
+        /** the lowest sequence number of each block */
+        private long[]                      blockMin     = new long[16];
+        
+        /** the highest sequence number of each block */
+        private long[]                      blockMax     = new long[16];
+        
+        /** the number of blocks */
+        private int                         blocks;
+        
+        /** the number of records within the last block */
+        private int                         lastCount    = BLOCK;
+        
+        /** {@code true} after the file was deleted */
+        private boolean                     deleted;
+        
+        /**
+         * Constructor
+         * 
+         * @param file
+         */
+        Spill(File file)
+        {
+            this.file = file;
+            this.out = open(file, false);
+            file.deleteOnExit();
+        }
+        
+        /**
+         * Opens the output stream
+         * 
+         * @param file
+         * @param append
+         * @return output stream
+         */
+        private static DataOutputStream open(File file, boolean append)
+        {
+            try
+            {
+                return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append)));
+            }
+            catch (IOException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+        }
+        
+        /**
+         * Writes an event; reopens the file if it was closed
+         * 
+         * @param event
+         * @return {@code false} if the file was deleted
+         */
+        synchronized boolean write(LogEvent event)
+        {
+            if (this.deleted)
+            {
+                return false;
+            }
+            if (this.out == null)
+            {
+                this.out = open(this.file, true);
+            }
+            try
+            {
+                this.record.reset();
+                final DataOutputStream rec = new DataOutputStream(this.record);
+                rec.writeLong(event.getSequence());
+                rec.writeByte(event.getLevel().ordinal());
+                rec.writeLong(event.getNanoTime());
+                rec.writeUTF(event.getThreadName());
+                rec.writeInt(event.getTick());
+                final byte[] message = event.getMessage().getBytes(StandardCharsets.UTF_8);
+                rec.writeInt(message.length);
+                rec.write(message);
+                this.record.writeTo(this.out);
+            }
+            catch (IOException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+            
+            final long seq = event.getSequence();
+            if (this.lastCount == BLOCK)
+            {
+                if (this.blocks == this.blockOffsets.length)
+                {
+                    this.blockOffsets = Arrays.copyOf(this.blockOffsets, this.blocks * 2);
+                    this.blockMin = Arrays.copyOf(this.blockMin, this.blocks * 2);
+                    this.blockMax = Arrays.copyOf(this.blockMax, this.blocks * 2);
+                }
+                this.blockOffsets[this.blocks] = this.length;
+                this.blockMin[this.blocks] = seq;
+                this.blockMax[this.blocks] = seq;
+                this.blocks++;
+                this.lastCount = 0;
+            }
+            final int block = this.blocks - 1;
+            this.blockMin[block] = Math.min(this.blockMin[block], seq);
+            this.blockMax[block] = Math.max(this.blockMax[block], seq);
+            this.lastCount++;
+            this.length += this.record.size();
+            return true;
+        }
+        
+        /**
+         * Closes the output stream; the events stay readable
+         */
+        synchronized void close()
+        {
+            if (this.out != null)
+            {
+                try
+                {
+                    this.out.close();
+                }
+                catch (IOException ex)
+                {
+                    throw new IllegalStateException(ex);
+                }
+                finally
+                {
+                    this.out = null;
+                }
+            }
+        }
+        
+        /**
+         * Closes and deletes the file
+         */
+        synchronized void delete()
+        {
+            try
+            {
+                this.close();
+            }
+            finally
+            {
+                this.deleted = true;
+                this.file.delete();
+            }
+        }
+        
+        /**
+         * Visits the gapless events of given sequence range in order of sequence till the visitor accepts an event; stops at the first sequence number
+         * not yet spilled
+         * 
+         * @param from
+         *            first sequence number (inclusive)
+         * @param to
+         *            last sequence number (exclusive)
+         * @param visitor
+         *            the visitor; returns {@code true} to stop the scan
+         * @return the sequence number following the last visited event; {@code from} if no event was visited
+         */
+        synchronized long scan(long from, long to, Predicate<LogEvent> visitor)
+        {
+            long expected = from;
+            if (this.deleted)
+            {
+                return expected;
+            }
+            // concurrent producers may have evicted slightly out of order; an event is emitted once no later block may contain a lower sequence
+            final long[] lowest = new long[this.blocks + 1];
+            lowest[this.blocks] = Long.MAX_VALUE;
+            for (int i = this.blocks - 1; i >= 0; i--)
+            {
+                lowest[i] = Math.min(lowest[i + 1], this.blockMin[i]);
+            }
+            final PriorityQueue<LogEvent> pending = new PriorityQueue<>((a, b) -> Long.compare(a.getSequence(), b.getSequence()));
+            try
+            {
+                if (this.out != null)
+                {
+                    this.out.flush();
+                }
+                try (final FileInputStream fis = new FileInputStream(this.file))
+                {
+                    DataInputStream in = null;
+                    long position = -1;
+                    for (int block = 0; block < this.blocks; block++)
+                    {
+                        if (this.blockMax[block] >= from && this.blockMin[block] < to)
+                        {
+                            if (position != this.blockOffsets[block])
+                            {
+                                fis.getChannel().position(this.blockOffsets[block]);
+                                in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(fis.getChannel())));
+                            }
+                            final int count = block == this.blocks - 1 ? this.lastCount : BLOCK;
+                            for (int i = 0; i < count; i++)
+                            {
+                                final LogEvent event = read(in, from, to);
+                                if (event != null)
+                                {
+                                    pending.add(event);
+                                }
+                            }
+                            position = block + 1 < this.blocks ? this.blockOffsets[block + 1] : this.length;
+                        }
+                        while (!pending.isEmpty() && pending.peek().getSequence() < lowest[block + 1])
+                        {
+                            final LogEvent event = pending.poll();
+                            if (event.getSequence() < expected)
+                            {
+                                // spilled twice by competing producers
+                                continue;
+                            }
+                            if (event.getSequence() > expected)
+                            {
+                                // the missing event is still within the ring
+                                return expected;
+                            }
+                            expected++;
+                            if (visitor.test(event))
+                            {
+                                return expected;
+                            }
+                        }
+                        if (lowest[block + 1] >= to)
+                        {
+                            break;
+                        }
+                    }
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+            return expected;
+        }
+        
+        /**
+         * Reads one record
+         * 
+         * @param in
+         * @param from
+         *            first sequence number (inclusive)
+         * @param to
+         *            last sequence number (exclusive)
+         * @return the event or {@code null} if it is not within given range
+         * @throws IOException
+         */
+        private static LogEvent read(DataInputStream in, long from, long to) throws IOException
+        {
+            final long seq = in.readLong();
+            if (seq < from || seq >= to)
+            {
+                // level, nano time, thread name, tick and message
+                skip(in, 1 + 8);
+                skip(in, in.readUnsignedShort());
+                skip(in, 4);
+                skip(in, in.readInt());
+                return null;
+            }
+            final LogLevel level = LEVELS[in.readByte()];
+            final long nanoTime = in.readLong();
+            final String threadName = in.readUTF();
+            final int tick = in.readInt();
+            final byte[] message = new byte[in.readInt()];
+            in.readFully(message);
+            return new LogEvent(level, new String(message, StandardCharsets.UTF_8), seq, nanoTime, threadName, tick);
+        }
+        
+        /**
+         * Skips given number of bytes
+         * 
+         * @param in
+         * @param count
+         * @throws IOException
+         */
+        private static void skip(DataInputStream in, int count) throws IOException
+        {
+            int remaining = count;
+            while (remaining > 0)
+            {
+                final int skipped = in.skipBytes(remaining);
+                if (skipped <= 0)
+                {
+                    throw new EOFException();
+                }
+                remaining -= skipped;
+            }
+        }
+        
+    }
+    
+}
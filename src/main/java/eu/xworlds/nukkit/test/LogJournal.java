@@ -0,0 +1,437 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * A journal of log events within a memory mapped file.
+ * 
+ * <p>
+ * The events are appended as length prefixed binary records in order of sequence number. The file is mapped in chunks; a record never crosses a
+ * chunk. The file is only opened to map the next chunk; {@link #close()} releases the chunks and deletes the file. Every {@link #INDEX_INTERVAL} records the sequence number, capture time and file offset are added to a sparse index kept in memory. Range
+ * queries seek via the index and decode one record at a time; they never load the journal into the heap.
+ * </p>
+ * 
+ * <p>
+ * Record layout: {@code int length, long sequence, long nanoTime, int tick, byte level, short threadLength, thread, int messageLength, message}. A length of
+ * {@code -1} marks the end of a chunk.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+final class LogJournal
+{
+    
+    /** the default chunk size */
+    static final int                 CHUNK_SIZE     = 1 << 24;
+    
+    /** the number of records between two index entries */
+    static final int                 INDEX_INTERVAL = 64;
+    
+    /** the capture times of concurrently logging threads may be slightly out of order */
+    private static final long        TIME_SLACK     = TimeUnit.MILLISECONDS.toNanos(100);
+    
+    /** the fixed record size without the strings */
+    private static final int         HEADER_SIZE    = 4 + 8 + 8 + 4 + 1 + 2 + 4;
+    
+    /** the end of chunk marker */
+    private static final int         END_OF_CHUNK   = -1;
+    
+    /** the log levels by ordinal */
+    private static final LogLevel[]  LEVELS         = LogLevel.values();
+    
+    /** the supplier of the journal file */
+    private final Supplier<File>     fileSupplier;
+    
+    /** the chunk size */
+    private final int                chunkSize;
+    
+    /** the journal file; {@code null} till the first append */
+    private File                     file;
+    
+    /** the mapped chunks */
+    private final List<ByteBuffer>   chunks         = new ArrayList<>();
+    
+    /** the offset of the next record */
+    private volatile long            writePosition;
+    
+    /** the number of records */
+    private long                     records;
+    
+    /** the index sequence numbers */
+    private long[]                   indexSequence  = new long[1024];
+    
+    /** the index capture times */
+    private long[]                   indexTime      = new long[1024];
+    
+    /** the index offsets */
+    private long[]                   indexOffset    = new long[1024];
+    
+    /** the number of index entries */
+    private int                      indexSize;
+    
+    /**
+     * Constructor
+     * 
+     * @param file
+     *            supplier of the journal file; invoked on the first append
+     */
+    LogJournal(Supplier<File> file)
+    {
+        this(file, CHUNK_SIZE);
+    }
+    
+    /**
+     * Constructor
+     * 
+     * @param file
+     *            supplier of the journal file; invoked on the first append
+     * @param chunkSize
+     *            the size of the mapped chunks; the maximum record size
+     */
+    LogJournal(Supplier<File> file, int chunkSize)
+    {
+        this.fileSupplier = file;
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Appends an event; the caller guarantees ascending sequence numbers
+     * 
+     * @param event
+     */
+    synchronized void append(LogEvent event)
+    {
+        final byte[] thread = String.valueOf(event.getThreadName()).getBytes(StandardCharsets.UTF_8);
+        byte[] message = String.valueOf(event.getMessage()).getBytes(StandardCharsets.UTF_8);
+        final int threadLength = Math.min(thread.length, Short.MAX_VALUE);
+        if (HEADER_SIZE + threadLength + message.length + 4 > this.chunkSize)
+        {
+            message = Arrays.copyOf(message, this.chunkSize - HEADER_SIZE - threadLength - 4);
+        }
+        final int size = HEADER_SIZE + threadLength + message.length;
+        
+        long pos = this.writePosition;
+        ByteBuffer chunk = this.chunk(pos);
+        int offset = (int) (pos % this.chunkSize);
+        if (offset + size + 4 > this.chunkSize)
+        {
+            chunk.putInt(offset, END_OF_CHUNK);
+            pos = (pos / this.chunkSize + 1) * this.chunkSize;
+            chunk = this.chunk(pos);
+            offset = 0;
+        }
+        
+        if (this.records % INDEX_INTERVAL == 0)
+        {
+            this.addIndex(event.getSequence(), event.getNanoTime(), pos);
+        }
+        
+        final ByteBuffer buffer = chunk.duplicate();
+        buffer.position(offset);
+        buffer.putInt(size - 4);
+        buffer.putLong(event.getSequence());
+        buffer.putLong(event.getNanoTime());
+        buffer.putInt(event.getTick());
+        buffer.put((byte) event.getLevel().ordinal());
+        buffer.putShort((short) threadLength);
+        buffer.put(thread, 0, threadLength);
+        buffer.putInt(message.length);
+        buffer.put(message);
+        this.records++;
+        // publish
+        this.writePosition = pos + size;
+    }
+    
+    /**
+     * Returns the chunk containing given offset; maps the chunk if needed
+     * 
+     * @param offset
+     * @return chunk
+     */
+    private ByteBuffer chunk(long offset)
+    {
+        final int index = (int) (offset / this.chunkSize);
+        if (this.chunks.size() <= index)
+        {
+            if (this.file == null)
+            {
+                this.file = this.fileSupplier.get();
+                this.file.deleteOnExit();
+            }
+            // the mappings stay valid after the channel was closed
+            try (final RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) //$NON-NLS-1$
+            {
+                final FileChannel channel = raf.getChannel();
+                while (this.chunks.size() <= index)
+                {
+                    final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, (long) this.chunks.size() * this.chunkSize, this.chunkSize);
+                    this.chunks.add(mapped);
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+        }
+        return this.chunks.get(index);
+    }
+    
+    /**
+     * Discards all events; releases the mapped chunks and deletes the file. The journal is reopened by the next append.
+     */
+    synchronized void close()
+    {
+        // the mappings are released as soon as running scans finished
+        this.chunks.clear();
+        this.writePosition = 0;
+        this.records = 0;
+        this.indexSize = 0;
+        if (this.file != null)
+        {
+            this.file.delete();
+            this.file = null;
+        }
+    }
+    
+    /**
+     * Adds an index entry
+     * 
+     * @param sequence
+     * @param nanoTime
+     * @param offset
+     */
+    private void addIndex(long sequence, long nanoTime, long offset)
+    {
+        if (this.indexSize == this.indexSequence.length)
+        {
+            final int length = this.indexSize * 2;
+            this.indexSequence = Arrays.copyOf(this.indexSequence, length);
+            this.indexTime = Arrays.copyOf(this.indexTime, length);
+            this.indexOffset = Arrays.copyOf(this.indexOffset, length);
+        }
+        this.indexSequence[this.indexSize] = sequence;
+        this.indexTime[this.indexSize] = nanoTime;
+        this.indexOffset[this.indexSize] = offset;
+        this.indexSize++;
+    }
+    
+    /**
+     * Returns the offset of the last index entry with a key lower or equal to given key
+     * 
+     * @param keys
+     *            the index keys
+     * @param key
+     * @return offset to start the scan at
+     */
+    private long seek(long[] keys, long key)
+    {
+        int low = 0;
+        int high = this.indexSize - 1;
+        int found = 0;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (keys[mid] <= key)
+            {
+                found = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return this.indexSize == 0 ? 0 : this.indexOffset[found];
+    }
+    
+    /**
+     * Returns the offset to start a scan for given sequence number
+     * 
+     * @param sequence
+     * @return offset
+     */
+    private synchronized long seekSequence(long sequence)
+    {
+        return this.seek(this.indexSequence, sequence);
+    }
+    
+    /**
+     * Returns the offset to start a scan for given capture time
+     * 
+     * @param nanoTime
+     * @return offset
+     */
+    private synchronized long seekTime(long nanoTime)
+    {
+        return this.seek(this.indexTime, nanoTime - TIME_SLACK);
+    }
+    
+    /**
+     * Returns a snapshot of the mapped chunks; the snapshot covers all records published before invocation
+     * 
+     * @return chunks
+     */
+    private synchronized ByteBuffer[] snapshot()
+    {
+        final ByteBuffer[] result = new ByteBuffer[this.chunks.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = this.chunks.get(i).duplicate();
+        }
+        return result;
+    }
+    
+    /**
+     * Visits the events of given sequence range
+     * 
+     * @param from
+     *            first sequence number (inclusive)
+     * @param to
+     *            last sequence number (exclusive)
+     * @param visitor
+     *            the visitor; returns {@code true} to stop the scan
+     * @return the sequence number following the accepted event or {@code -1} if the visitor did not accept any event
+     */
+    long scan(long from, long to, Predicate<LogEvent> visitor)
+    {
+        return this.scan(this.seekSequence(from), visitor, (seq, time) -> seq >= to ? 1 : (seq >= from ? 0 : -1));
+    }
+    
+    /**
+     * Visits the events captured within given time range
+     * 
+     * @param fromNanoTime
+     *            first capture time (inclusive)
+     * @param toNanoTime
+     *            last capture time (exclusive)
+     * @param visitor
+     *            the visitor; returns {@code true} to stop the scan
+     * @return the sequence number following the accepted event or {@code -1} if the visitor did not accept any event
+     */
+    long scanTime(long fromNanoTime, long toNanoTime, Predicate<LogEvent> visitor)
+    {
+        return this.scan(this.seekTime(fromNanoTime), visitor, (seq, time) -> {
+            if (time - toNanoTime >= TIME_SLACK)
+            {
+                return 1;
+            }
+            return time - fromNanoTime >= 0 && time - toNanoTime < 0 ? 0 : -1;
+        });
+    }
+    
+    /**
+     * Decides about records by their header
+     */
+    @FunctionalInterface
+    private interface RecordFilter
+    {
+        /**
+         * Decides about a record
+         * 
+         * @param sequence
+         * @param nanoTime
+         * @return {@code -1} to skip the record, {@code 0} to visit the record, {@code 1} to stop the scan
+         */
+        int decide(long sequence, long nanoTime);
+    }
+    
+    /**
+     * Visits the records starting at given offset
+     * 
+     * @param start
+     *            the offset of the first record
+     * @param visitor
+     * @param filter
+     * @return the sequence number following the accepted event or {@code -1} if the visitor did not accept any event
+     */
+    private long scan(long start, Predicate<LogEvent> visitor, RecordFilter filter)
+    {
+        final long end;
+        final ByteBuffer[] buffers;
+        synchronized (this)
+        {
+            // closing resets the write position
+            end = this.writePosition;
+            buffers = this.snapshot();
+        }
+        long pos = start;
+        while (pos < end)
+        {
+            final ByteBuffer buffer = buffers[(int) (pos / this.chunkSize)];
+            final int offset = (int) (pos % this.chunkSize);
+            final int length = buffer.getInt(offset);
+            if (length == END_OF_CHUNK)
+            {
+                pos = (pos / this.chunkSize + 1) * this.chunkSize;
+                continue;
+            }
+            final long seq = buffer.getLong(offset + 4);
+            final long time = buffer.getLong(offset + 12);
+            final int decision = filter.decide(seq, time);
+            if (decision > 0)
+            {
+                break;
+            }
+            if (decision == 0 && visitor.test(decode(buffer, offset, seq, time)))
+            {
+                return seq + 1;
+            }
+            pos += length + 4;
+        }
+        return -1;
+    }
+    
+    /**
+     * Decodes a record
+     * 
+     * @param buffer
+     * @param offset
+     * @param seq
+     * @param time
+     * @return log event
+     */
+    private static LogEvent decode(ByteBuffer buffer, int offset, long seq, long time)
+    {
+        final int tick = buffer.getInt(offset + 20);
+        final LogLevel level = LEVELS[buffer.get(offset + 24)];
+        final byte[] thread = new byte[buffer.getShort(offset + 25)];
+        buffer.position(offset + 27);
+        buffer.get(thread);
+        final byte[] message = new byte[buffer.getInt()];
+        buffer.get(message);
+        return new LogEvent(level, new String(message, StandardCharsets.UTF_8), seq, time, new String(thread, StandardCharsets.UTF_8), tick);
+    }
+    
+}
@@ -0,0 +1,298 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * Matches a set of expectations against the log stream of a session within a single pass per event.
+ * 
+ * <p>
+ * Literal checks (see {@link LogEventCheck#prefix(String)}) are compiled into one Aho-Corasick automaton; the automaton scans each message once and
+ * only expectations with a literal occurrence are evaluated further. Other checks are evaluated per event until they matched. The matcher records
+ * the sequence number of the event that satisfied each expectation. Events at or below the sequence number of the last offered event are ignored.
+ * </p>
+ * 
+ * <pre>
+ * final LogMatcher matcher = new LogMatcher().expect(prefix("Loading")).expect(contains("Done"));
+ * assertLogMatcher(session, matcher, 10000);
+ * </pre>
+ * 
+ * @author mepeisen
+ */
+public final class LogMatcher
+{
+    
+    /** the expectations */
+    private final List<LogEventCheck> checks       = new ArrayList<>();
+    
+    /** the expectation descriptions */
+    private final List<String>        descriptions = new ArrayList<>();
+    
+    /** the automaton; {@code null} if not compiled */
+    private LiteralAutomaton          automaton;
+    
+    /** the literal per automaton literal index */
+    private LiteralCheck[]            literals;
+    
+    /** the expectation per automaton literal index */
+    private int[]                     literalOwners;
+    
+    /** the expectations not backed by the automaton */
+    private int[]                     plain;
+    
+    /** the sequence number of the matching event per expectation; {@code -1} for pending expectations */
+    private long[]                    matches;
+    
+    /** the matched flag per expectation */
+    private boolean[]                 done;
+    
+    /** the literal hits of the current event per expectation */
+    private boolean[]                 hits;
+    
+    /** the number of pending expectations */
+    private int                       pending;
+    
+    /** the sequence number of the last offered event */
+    private long                      lastSequence = -1;
+    
+    /**
+     * Constructor
+     */
+    public LogMatcher()
+    {
+        // empty
+    }
+    
+    /**
+     * Adds an expectation
+     * 
+     * @param check
+     * @return this matcher
+     */
+    public LogMatcher expect(LogEventCheck check)
+    {
+        return this.expect(String.valueOf(check), check);
+    }
+    
+    /**
+     * Adds an expectation
+     * 
+     * @param description
+     *            the description used in failure messages
+     * @param check
+     * @return this matcher
+     */
+    public synchronized LogMatcher expect(String description, LogEventCheck check)
+    {
+        if (this.automaton != null)
+        {
+            throw new IllegalStateException("Matcher already compiled"); //$NON-NLS-1$
+        }
+        this.checks.add(check);
+        this.descriptions.add(description);
+        return this;
+    }
+    
+    /**
+     * Compiles the expectations; invoked on first event at the latest
+     * 
+     * @return this matcher
+     */
+    public synchronized LogMatcher compile()
+    {
+        if (this.automaton != null)
+        {
+            return this;
+        }
+        final int size = this.checks.size();
+        final List<String> texts = new ArrayList<>();
+        final List<LiteralCheck> literalList = new ArrayList<>();
+        final List<Integer> owners = new ArrayList<>();
+        final List<Integer> plainList = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+        {
+            final LiteralCheck literal = CompositeCheck.requiredLiteral(this.checks.get(i));
+            if (literal == null)
+            {
+                plainList.add(i);
+            }
+            else
+            {
+                texts.add(literal.getLiteral());
+                literalList.add(literal);
+                owners.add(i);
+            }
+        }
+        this.automaton = new LiteralAutomaton(texts);
+        this.literals = literalList.toArray(new LiteralCheck[literalList.size()]);
+        this.literalOwners = owners.stream().mapToInt(Integer::intValue).toArray();
+        this.plain = plainList.stream().mapToInt(Integer::intValue).toArray();
+        this.matches = new long[size];
+        Arrays.fill(this.matches, -1);
+        this.done = new boolean[size];
+        this.hits = new boolean[size];
+        this.pending = size;
+        return this;
+    }
+    
+    /**
+     * Evaluates all pending expectations against given event
+     * 
+     * @param event
+     * @return {@code true} if all expectations matched
+     */
+    public synchronized boolean offer(LogEvent event)
+    {
+        this.compile();
+        if (this.pending == 0)
+        {
+            return true;
+        }
+        if (event.getSequence() <= this.lastSequence)
+        {
+            return false;
+        }
+        this.lastSequence = event.getSequence();
+        final String message = event.getMessage();
+        if (message != null && this.literals.length > 0)
+        {
+            Arrays.fill(this.hits, false);
+            this.automaton.scan(message, (literal, start) -> {
+                final int owner = this.literalOwners[literal];
+                if (!this.done[owner] && this.literals[literal].accepts(message, start))
+                {
+                    this.hits[owner] = true;
+                }
+            });
+            for (final int owner : this.literalOwners)
+            {
+                if (this.hits[owner])
+                {
+                    this.hits[owner] = false;
+                    this.evaluate(owner, event, true);
+                }
+            }
+        }
+        for (final int index : this.plain)
+        {
+            if (!this.done[index])
+            {
+                this.evaluate(index, event, false);
+            }
+        }
+        return this.pending == 0;
+    }
+    
+    /**
+     * Evaluates a single expectation
+     * 
+     * @param index
+     * @param event
+     * @param scanned
+     *            {@code true} if the automaton found the literal of the expectation
+     */
+    private void evaluate(int index, LogEvent event, boolean scanned)
+    {
+        final LogEventCheck check = this.checks.get(index);
+        // literal checks found by the automaton were fully evaluated; empty literals are not compiled into the automaton
+        if ((scanned && check instanceof LiteralCheck) || check.check(event))
+        {
+            this.matches[index] = event.getSequence();
+            this.done[index] = true;
+            this.pending--;
+        }
+    }
+    
+    /**
+     * Returns a check matching as soon as all expectations matched; see {@link NukkitTestSession#waitForLog(LogEventCheck, int)}
+     * 
+     * @return check
+     */
+    public LogEventCheck asCheck()
+    {
+        return this::offer;
+    }
+    
+    /**
+     * Returns the number of expectations
+     * 
+     * @return number of expectations
+     */
+    public synchronized int size()
+    {
+        return this.checks.size();
+    }
+    
+    /**
+     * Checks if all expectations matched
+     * 
+     * @return {@code true} if all expectations matched
+     */
+    public synchronized boolean isComplete()
+    {
+        return this.automaton != null ? this.pending == 0 : this.checks.isEmpty();
+    }
+    
+    /**
+     * Checks if given expectation matched
+     * 
+     * @param index
+     *            the expectation index in order of {@link #expect(LogEventCheck)}
+     * @return {@code true} if the expectation matched
+     */
+    public synchronized boolean isMatched(int index)
+    {
+        return this.done != null && this.done[index];
+    }
+    
+    /**
+     * Returns the sequence number of the event that matched given expectation
+     * 
+     * @param index
+     *            the expectation index in order of {@link #expect(LogEventCheck)}
+     * @return sequence number or {@code -1} if the expectation is pending
+     */
+    public synchronized long getMatchedSequence(int index)
+    {
+        return this.matches == null ? -1 : this.matches[index];
+    }
+    
+    /**
+     * Returns the descriptions of the pending expectations
+     * 
+     * @return descriptions
+     */
+    public synchronized List<String> getPending()
+    {
+        final List<String> result = new ArrayList<>();
+        for (int i = 0; i < this.checks.size(); i++)
+        {
+            if (this.done == null || !this.done[i])
+            {
+                result.add(this.descriptions.get(i));
+            }
+        }
+        return result;
+    }
+    
+}
@@ -0,0 +1,34 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+/**
+ * Policy for log events overflowing the log buffer of a test session.
+ * 
+ * @author mepeisen
+ */
+public enum LogOverflow
+{
+    
+    /** the oldest log events are dropped */
+    DROP_OLDEST,
+    
+    /** the oldest log events are written to a file within the server folder; they are still visible to readers */
+    SPILL_TO_DISK
+    
+}
@@ -0,0 +1,114 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.util.concurrent.TimeUnit;
+
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * A check matching as soon as more events than allowed matched another check within one second.
+ * 
+ * @author mepeisen
+ */
+final class LogRateCheck implements LogEventCheck
+{
+    
+    /** one second */
+    private static final long   SECOND  = TimeUnit.SECONDS.toNanos(1);
+    
+    /** the initial ring size */
+    private static final int    INITIAL = 16;
+    
+    /** the counted check */
+    private final LogEventCheck check;
+    
+    /** the number of events exceeding the rate */
+    private final long          limit;
+    
+    /** the capture times of the counted events within the last second; used as ring, grows with the events within one second up to limit */
+    private long[]              times;
+    
+    /** the number of valid entries in times */
+    private int                 count;
+    
+    /** the index of the oldest entry in times */
+    private int                 head;
+    
+    /**
+     * Constructor
+     * 
+     * @param check
+     *            the counted check
+     * @param maxPerSecond
+     *            the maximum number of events per second
+     */
+    LogRateCheck(LogEventCheck check, int maxPerSecond)
+    {
+        if (maxPerSecond < 0)
+        {
+            throw new IllegalArgumentException("maxPerSecond must not be negative"); //$NON-NLS-1$
+        }
+        this.check = check;
+        this.limit = maxPerSecond + 1L;
+        this.times = new long[(int) Math.min(INITIAL, this.limit)];
+    }
+    
+    @Override
+    public synchronized boolean check(LogEvent event)
+    {
+        if (!this.check.check(event))
+        {
+            return false;
+        }
+        final long now = event.getNanoTime();
+        while (this.count > 0 && now - this.times[this.head] >= SECOND)
+        {
+            this.head = (this.head + 1) % this.times.length;
+            this.count--;
+        }
+        if (this.count == this.limit)
+        {
+            // still exceeded; the oldest event is no longer needed to tell
+            this.head = (this.head + 1) % this.times.length;
+            this.count--;
+        }
+        else if (this.count == this.times.length)
+        {
+            this.grow();
+        }
+        this.times[(this.head + this.count) % this.times.length] = now;
+        this.count++;
+        return this.count == this.limit;
+    }
+    
+    /**
+     * Doubles the ring size up to limit
+     */
+    private void grow()
+    {
+        final long[] grown = new long[(int) Math.min(this.limit, this.times.length * 2L)];
+        for (int i = 0; i < this.count; i++)
+        {
+            grown[i] = this.times[(this.head + i) % this.times.length];
+        }
+        this.times = grown;
+        this.head = 0;
+    }
+    
+}
@@ -0,0 +1,290 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * An ordered sequence of expected log events evaluated as a streaming state machine.
+ * 
+ * <p>
+ * Each event is checked against the forbidden checks and against the current step only. A step may limit the gap to its predecessor; the gap is
+ * measured between the capture times of the events. The sequence stops at the first violation: a forbidden event or an exceeded gap. Events at or below
+ * the sequence number of the last offered event are ignored, so a delivered event never advances the sequence twice.
+ * </p>
+ * 
+ * <pre>
+ * final LogSequence sequence = new LogSequence().then(prefix("Loading")).then(contains("Enabling"), 5000).then(prefix("Done")).forbid(level(LogLevel.ERROR));
+ * assertLogSequence(session, 10000, sequence);
+ * </pre>
+ * 
+ * @author mepeisen
+ */
+public final class LogSequence
+{
+    
+    /** the step checks */
+    private final List<LogEventCheck> steps        = new ArrayList<>();
+    
+    /** the step descriptions */
+    private final List<String>        descriptions = new ArrayList<>();
+    
+    /** the maximum gap to the previous step in nano seconds per step; {@code 0} for unbounded gaps */
+    private final List<Long>          maxGaps      = new ArrayList<>();
+    
+    /** the forbidden checks */
+    private final List<LogEventCheck> forbidden    = new ArrayList<>();
+    
+    /** the forbidden check descriptions */
+    private final List<String>        forbiddenDescriptions = new ArrayList<>();
+    
+    /** the matching events per reached step */
+    private final List<LogEvent>      matched      = new ArrayList<>();
+    
+    /** the violation or {@code null} */
+    private String                    violation;
+    
+    /** the sequence number of the last offered event */
+    private long                      lastSequence = -1;
+    
+    /**
+     * Constructor
+     */
+    public LogSequence()
+    {
+        // empty
+    }
+    
+    /**
+     * Adds a step
+     * 
+     * @param check
+     * @return this sequence
+     */
+    public LogSequence then(LogEventCheck check)
+    {
+        return this.then(String.valueOf(check), check, 0);
+    }
+    
+    /**
+     * Adds a step that must follow the previous step within given time
+     * 
+     * @param check
+     * @param maxGapMillis
+     *            maximum milliseconds between the previous step and this step
+     * @return this sequence
+     */
+    public LogSequence then(LogEventCheck check, int maxGapMillis)
+    {
+        return this.then(String.valueOf(check), check, maxGapMillis);
+    }
+    
+    /**
+     * Adds a step that must follow the previous step within given time
+     * 
+     * @param description
+     *            the description used in failure messages
+     * @param check
+     * @param maxGapMillis
+     *            maximum milliseconds between the previous step and this step; {@code 0} for unbounded gaps
+     * @return this sequence
+     */
+    public synchronized LogSequence then(String description, LogEventCheck check, int maxGapMillis)
+    {
+        this.steps.add(check);
+        this.descriptions.add(description);
+        this.maxGaps.add(TimeUnit.MILLISECONDS.toNanos(maxGapMillis));
+        return this;
+    }
+    
+    /**
+     * Adds a check for events that must not appear till the sequence is complete
+     * 
+     * @param check
+     * @return this sequence
+     */
+    public LogSequence forbid(LogEventCheck check)
+    {
+        return this.forbid(String.valueOf(check), check);
+    }
+    
+    /**
+     * Adds a check for events that must not appear till the sequence is complete
+     * 
+     * @param description
+     *            the description used in failure messages
+     * @param check
+     * @return this sequence
+     */
+    public synchronized LogSequence forbid(String description, LogEventCheck check)
+    {
+        this.forbidden.add(check);
+        this.forbiddenDescriptions.add(description);
+        return this;
+    }
+    
+    /**
+     * Advances the state machine
+     * 
+     * @param event
+     * @return {@code true} if the sequence is complete or violated
+     */
+    public synchronized boolean offer(LogEvent event)
+    {
+        if (this.isDone())
+        {
+            return true;
+        }
+        if (event.getSequence() <= this.lastSequence)
+        {
+            return false;
+        }
+        this.lastSequence = event.getSequence();
+        for (int i = 0; i < this.forbidden.size(); i++)
+        {
+            if (this.forbidden.get(i).check(event))
+            {
+                this.violation = "forbidden event (" + this.forbiddenDescriptions.get(i) + "): " + event.getMessage(); //$NON-NLS-1$ //$NON-NLS-2$
+                return true;
+            }
+        }
+        final int step = this.matched.size();
+        final long maxGap = this.maxGaps.get(step).longValue();
+        if (maxGap > 0 && step > 0 && event.getNanoTime() - this.matched.get(step - 1).getNanoTime() > maxGap)
+        {
+            this.violation = "step " + (step + 1) + " (" + this.descriptions.get(step) + ") not reached within " //$NON-NLS-1$ //$NON-NLS-2$
+                    + TimeUnit.NANOSECONDS.toMillis(maxGap) + " ms"; //$NON-NLS-1$
+            return true;
+        }
+        if (this.steps.get(step).check(event))
+        {
+            this.matched.add(event);
+        }
+        return this.isDone();
+    }
+    
+    /**
+     * Checks if the state machine stopped
+     * 
+     * @return {@code true} if the sequence is complete or violated
+     */
+    private boolean isDone()
+    {
+        return this.violation != null || this.matched.size() == this.steps.size();
+    }
+    
+    /**
+     * Returns a check matching as soon as the sequence is complete or violated; see {@link NukkitTestSession#waitForLog(LogEventCheck, int)}
+     * 
+     * @return check
+     */
+    public LogEventCheck asCheck()
+    {
+        return this::offer;
+    }
+    
+    /**
+     * Checks if all steps were reached without violation
+     * 
+     * @return {@code true} if the sequence is complete
+     */
+    public synchronized boolean isComplete()
+    {
+        return this.violation == null && this.matched.size() == this.steps.size();
+    }
+    
+    /**
+     * Returns the violation
+     * 
+     * @return violation or {@code null} if the sequence was not violated
+     */
+    public synchronized String getViolation()
+    {
+        return this.violation;
+    }
+    
+    /**
+     * Returns the number of reached steps
+     * 
+     * @return reached steps
+     */
+    public synchronized int getReachedSteps()
+    {
+        return this.matched.size();
+    }
+    
+    /**
+     * Returns the event that reached given step
+     * 
+     * @param step
+     *            the step index
+     * @return log event or {@code null} if the step was not reached
+     */
+    public synchronized LogEvent getEvent(int step)
+    {
+        return step < this.matched.size() ? this.matched.get(step) : null;
+    }
+    
+    /**
+     * Returns the nano seconds between each reached step and its predecessor; the first element is always {@code 0}
+     * 
+     * @return latencies in nano seconds
+     */
+    public synchronized long[] getLatencies()
+    {
+        final long[] result = new long[this.matched.size()];
+        for (int i = 1; i < result.length; i++)
+        {
+            result[i] = this.matched.get(i).getNanoTime() - this.matched.get(i - 1).getNanoTime();
+        }
+        return result;
+    }
+    
+    /**
+     * Describes the steps, the reached events and the observed latencies
+     * 
+     * @return description
+     */
+    public synchronized String describe()
+    {
+        final StringBuilder builder = new StringBuilder();
+        final long[] latencies = this.getLatencies();
+        for (int i = 0; i < this.steps.size(); i++)
+        {
+            builder.append("\n  ").append(i + 1).append(". ").append(this.descriptions.get(i)); //$NON-NLS-1$ //$NON-NLS-2$
+            if (i < this.matched.size())
+            {
+                builder.append(" -> #").append(this.matched.get(i).getSequence()); //$NON-NLS-1$
+                if (i > 0)
+                {
+                    builder.append(String.format(" +%.3f ms", Double.valueOf(latencies[i] / 1000000d))); //$NON-NLS-1$
+                }
+            }
+            else
+            {
+                builder.append(" -> pending"); //$NON-NLS-1$
+            }
+        }
+        return builder.toString();
+    }
+    
+}
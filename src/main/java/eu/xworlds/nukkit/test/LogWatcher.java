@@ -0,0 +1,173 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * A watcher on the log stream of a test session.
+ * 
+ * <p>
+ * Watchers are evaluated once per new log event on the thread logging the event. The future completes with the first matching event.
+ * </p>
+ * 
+ * <p>
+ * The check is never invoked concurrently and receives each event at most once: events offered while another thread delivers (e.g. while the present
+ * events are replayed, see {@link #replay(LogEventStore)}) are queued and delivered by that thread in sequence order; events already visited by the
+ * replay are dropped.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+final class LogWatcher
+{
+    
+    /** the check */
+    private final LogEventCheck              check;
+    
+    /** the future receiving the matching event */
+    private final CompletableFuture<LogEvent> future    = new CompletableFuture<>();
+    
+    /** the events offered while another thread delivers; guarded by this */
+    private final PriorityQueue<LogEvent>     pending   = new PriorityQueue<>(Comparator.comparingLong(LogEvent::getSequence));
+    
+    /** {@code true} while a thread delivers events; guarded by this */
+    private boolean                           delivering;
+    
+    /** the sequence following the replayed events; only accessed by the delivering thread */
+    private long                              replayed;
+    
+    /**
+     * Constructor
+     * 
+     * @param check
+     * @param replay
+     *            {@code true} if the present events are replayed by {@link #replay(LogEventStore)}; new events are queued till then
+     */
+    LogWatcher(LogEventCheck check, boolean replay)
+    {
+        this.check = check;
+        this.delivering = replay;
+    }
+    
+    /**
+     * Returns the future receiving the matching event
+     * 
+     * @return future
+     */
+    CompletableFuture<LogEvent> getFuture()
+    {
+        return this.future;
+    }
+    
+    /**
+     * Checks a new log event; queues the event if another thread delivers
+     * 
+     * @param event
+     * @return {@code true} if this watcher is done and can be removed
+     */
+    boolean offer(LogEvent event)
+    {
+        synchronized (this)
+        {
+            if (this.delivering)
+            {
+                if (!this.future.isDone())
+                {
+                    this.pending.add(event);
+                }
+                return this.future.isDone();
+            }
+            this.delivering = true;
+        }
+        this.deliver(event);
+        return this.drain();
+    }
+    
+    /**
+     * Checks the present events of given store and the events queued meanwhile; requires a watcher constructed for replay
+     * 
+     * @param store
+     */
+    void replay(LogEventStore store)
+    {
+        this.replayed = store.scan(0, this::deliver);
+        this.drain();
+    }
+    
+    /**
+     * Delivers the queued events till the queue is empty
+     * 
+     * @return {@code true} if this watcher is done and can be removed
+     */
+    private boolean drain()
+    {
+        while (true)
+        {
+            final LogEvent event;
+            synchronized (this)
+            {
+                event = this.pending.poll();
+                if (event == null)
+                {
+                    this.delivering = false;
+                    return this.future.isDone();
+                }
+            }
+            this.deliver(event);
+        }
+    }
+    
+    /**
+     * Checks an event; invoked by the delivering thread only
+     * 
+     * @param event
+     * @return {@code true} if this watcher is done
+     */
+    private boolean deliver(LogEvent event)
+    {
+        if (this.future.isDone())
+        {
+            return true;
+        }
+        if (event.getSequence() < this.replayed)
+        {
+            // already visited by the replay
+            return false;
+        }
+        try
+        {
+            if (this.check.check(event))
+            {
+                this.future.complete(event);
+                return true;
+            }
+        }
+        catch (RuntimeException ex)
+        {
+            this.future.completeExceptionally(ex);
+            return true;
+        }
+        return false;
+    }
+    
+}
@@ -22,6 +22,7 @@ import static org.junit.gen5.api.Assertions.assertTrue;
 import java.util.function.Supplier;
 
 import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
 
 /**
  * Asserts for nukkit
@@ -183,4 +184,139 @@ public class NukkitAssertions
         assertTrue(session.waitForLog(check, millis), message);
     }
     
+    /**
+     * Assert that all expectations of given matcher are met by the log events present or arriving within given time
+     * 
+     * @param session
+     * @param matcher
+     * @param millis
+     *            milliseconds to wait for the messages
+     */
+    public static void assertLogMatcher(NukkitTestSession session, LogMatcher matcher, int millis)
+    {
+        assertTrue(session.waitForLog(matcher.asCheck(), millis), () -> "missing log events: " + matcher.getPending()); //$NON-NLS-1$
+    }
+    
+    /**
+     * Assert that each of given checks is met by a log event present or arriving within given time; all checks are evaluated within one pass per
+     * event
+     * 
+     * @param session
+     * @param millis
+     *            milliseconds to wait for the messages
+     * @param checks
+     * @return the matcher holding the sequence numbers of the matching events
+     */
+    public static LogMatcher assertLogEvents(NukkitTestSession session, int millis, LogEventCheck... checks)
+    {
+        final LogMatcher matcher = new LogMatcher();
+        for (final LogEventCheck check : checks)
+        {
+            matcher.expect(check);
+        }
+        assertLogMatcher(session, matcher, millis);
+        return matcher;
+    }
+    
+    /**
+     * Assert that given checks are met by log events in given order
+     * 
+     * @param session
+     * @param millis
+     *            milliseconds to wait for the sequence
+     * @param checks
+     * @return the sequence holding the matching events and the observed latencies
+     */
+    public static LogSequence assertLogSequence(NukkitTestSession session, int millis, LogEventCheck... checks)
+    {
+        final LogSequence sequence = new LogSequence();
+        for (final LogEventCheck check : checks)
+        {
+            sequence.then(check);
+        }
+        assertLogSequence(session, millis, sequence);
+        return sequence;
+    }
+    
+    /**
+     * Assert that the steps of given sequence are met by log events in given order; fails as soon as the sequence is violated
+     * 
+     * @param session
+     * @param millis
+     *            milliseconds to wait for the sequence
+     * @param sequence
+     */
+    public static void assertLogSequence(NukkitTestSession session, int millis, LogSequence sequence)
+    {
+        session.waitForLog(sequence.asCheck(), millis);
+        assertTrue(sequence.getViolation() == null, () -> "log sequence violated, " + sequence.getViolation() + sequence.describe()); //$NON-NLS-1$
+        assertTrue(sequence.isComplete(), () -> "log sequence incomplete after " + millis + " ms" + sequence.describe()); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    
+    /**
+     * Assert that no log event matching given check arrives within given time; fails as soon as such a log event arrives
+     * 
+     * @param session
+     * @param check
+     * @param millis
+     *            milliseconds to watch the log
+     */
+    public static void assertNoLogEvent(NukkitTestSession session, LogEventCheck check, int millis)
+    {
+        final LogEvent event = session.waitForNewLog(check, millis);
+        assertTrue(event == null, () -> "unexpected log event: " + event.getMessage()); //$NON-NLS-1$
+    }
+    
+    /**
+     * Assert that log events matching given check do not arrive more often than given rate within given time; fails as soon as the rate is exceeded
+     * 
+     * @param session
+     * @param check
+     * @param maxPerSecond
+     *            the maximum number of matching log events within any second
+     * @param millis
+     *            milliseconds to watch the log
+     */
+    public static void assertLogRate(NukkitTestSession session, LogEventCheck check, int maxPerSecond, int millis)
+    {
+        final LogEvent event = session.waitForNewLog(new LogRateCheck(check, maxPerSecond), millis);
+        assertTrue(event == null, () -> "more than " + maxPerSecond + " log events per second, last: " + event.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    
+    /**
+     * Assert that the 99th percentile of the tick durations within a trailing window is below given duration; the failure message lists the worst ticks
+     * 
+     * @param session
+     * @param millis
+     *            the exclusive upper bound of the 99th percentile
+     * @param windowMillis
+     *            the length of the trailing window in milliseconds
+     */
+    public static void assertTickP99Below(NukkitTestSession session, double millis, int windowMillis)
+    {
+        final long now = System.nanoTime();
+        final TickWindow.Selection ticks = session.selectTicks(now, windowMillis);
+        assertTrue(ticks.size() > 0, () -> "no ticks within the last " + windowMillis + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+        final double p99 = ticks.percentileMillis(0.99);
+        assertTrue(p99 < millis, () -> "tick p99 " + p99 + " ms not below " + millis + " ms; " + ticks.describeWorst(TickWindow.WORST_TICKS, now)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+    
+    /**
+     * Assert that the average ticks per second within a trailing window reach given rate; the failure message lists the worst ticks
+     * 
+     * @param session
+     * @param tps
+     *            the minimum average ticks per second
+     * @param windowMillis
+     *            the length of the trailing window in milliseconds
+     */
+    public static void assertAverageTpsAtLeast(NukkitTestSession session, double tps, int windowMillis)
+    {
+        final long now = System.nanoTime();
+        final TickWindow.Selection ticks = session.selectTicks(now, windowMillis);
+        assertTrue(ticks.size() > 1, () -> "less than two ticks within the last " + windowMillis + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+        final double average = ticks.averageTps();
+        assertTrue(average >= tps, () -> "average tps " + average + " below " + tps + "; " + ticks.describeWorst(TickWindow.WORST_TICKS, now)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+    
 }
@@ -22,6 +22,7 @@ import static org.junit.gen5.api.Assumptions.assumeTrue;
 import java.util.function.Supplier;
 
 import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
 
 /**
  * Assumptions for nukkit
@@ -108,4 +109,70 @@ public class NukkitAssumptions
         assumeTrue(session.checkLog(check), message);
     }
     
+    /**
+     * assume that no log event matching given check arrives within given time; aborts as soon as such a log event arrives
+     * 
+     * @param session
+     * @param check
+     * @param millis
+     *            milliseconds to watch the log
+     */
+    public static void assumeNoLogEvent(NukkitTestSession session, LogEventCheck check, int millis)
+    {
+        final LogEvent event = session.waitForNewLog(check, millis);
+        assumeTrue(event == null, () -> "unexpected log event: " + event.getMessage()); //$NON-NLS-1$
+    }
+    
+    /**
+     * assume that log events matching given check do not arrive more often than given rate within given time; aborts as soon as the rate is exceeded
+     * 
+     * @param session
+     * @param check
+     * @param maxPerSecond
+     *            the maximum number of matching log events within any second
+     * @param millis
+     *            milliseconds to watch the log
+     */
+    public static void assumeLogRate(NukkitTestSession session, LogEventCheck check, int maxPerSecond, int millis)
+    {
+        final LogEvent event = session.waitForNewLog(new LogRateCheck(check, maxPerSecond), millis);
+        assumeTrue(event == null, () -> "more than " + maxPerSecond + " log events per second, last: " + event.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    
+    /**
+     * assume that the 99th percentile of the tick durations within a trailing window is below given duration; the abort message lists the worst ticks
+     * 
+     * @param session
+     * @param millis
+     *            the exclusive upper bound of the 99th percentile
+     * @param windowMillis
+     *            the length of the trailing window in milliseconds
+     */
+    public static void assumeTickP99Below(NukkitTestSession session, double millis, int windowMillis)
+    {
+        final long now = System.nanoTime();
+        final TickWindow.Selection ticks = session.selectTicks(now, windowMillis);
+        assumeTrue(ticks.size() > 0, () -> "no ticks within the last " + windowMillis + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+        final double p99 = ticks.percentileMillis(0.99);
+        assumeTrue(p99 < millis, () -> "tick p99 " + p99 + " ms not below " + millis + " ms; " + ticks.describeWorst(TickWindow.WORST_TICKS, now)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+    
+    /**
+     * assume that the average ticks per second within a trailing window reach given rate; the abort message lists the worst ticks
+     * 
+     * @param session
+     * @param tps
+     *            the minimum average ticks per second
+     * @param windowMillis
+     *            the length of the trailing window in milliseconds
+     */
+    public static void assumeAverageTpsAtLeast(NukkitTestSession session, double tps, int windowMillis)
+    {
+        final long now = System.nanoTime();
+        final TickWindow.Selection ticks = session.selectTicks(now, windowMillis);
+        assumeTrue(ticks.size() > 1, () -> "less than two ticks within the last " + windowMillis + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+        final double average = ticks.averageTps();
+        assumeTrue(average >= tps, () -> "average tps " + average + " below " + tps + "; " + ticks.describeWorst(TickWindow.WORST_TICKS, now)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+    
 }
@@ -17,11 +17,22 @@
  */
 package eu.xworlds.nukkit.test;
 
+import java.io.File;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
+import org.junit.gen5.api.extension.AfterAllExtensionPoint;
 import org.junit.gen5.api.extension.AfterEachExtensionPoint;
 import org.junit.gen5.api.extension.BeforeEachExtensionPoint;
+import org.junit.gen5.api.extension.ContainerExtensionContext;
 import org.junit.gen5.api.extension.ExtensionContext;
 import org.junit.gen5.api.extension.ExtensionContext.Namespace;
 import org.junit.gen5.api.extension.ExtensionContext.Store;
@@ -33,34 +44,71 @@ import org.junit.gen5.api.extension.TestExtensionContext;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
-import cn.nukkit.Server;
-import cn.nukkit.command.CommandReader;
-import cn.nukkit.scheduler.ServerScheduler;
 import eu.xworlds.nukkit.test.api.NukkitInject;
+import eu.xworlds.nukkit.test.internal.IsolatedServerController;
+import eu.xworlds.nukkit.test.internal.ServerHooksTransformer;
+import eu.xworlds.nukkit.test.internal.fork.WorkerPool;
+import eu.xworlds.nukkit.test.sample.ClassLoadingStats;
 import eu.xworlds.nukkit.test.sample.PowermockExtension;
 import eu.xworlds.nukkit.test.sample.PowermockState;
-import jline.console.ConsoleReader;
 
 /**
  * JUnit5 Extension for nukkit
  * 
+ * <p>
+ * If the system property {@code nukkit.test.forked} is set to {@code true} all sessions run within worker vms; the extension starts the worker pool
+ * before the first test instance is created.
+ * </p>
+ * 
+ * <p>
+ * If the system property {@code nukkit.test.reports} names a directory, the extension writes a report with the class loading statistics and the phases
+ * and tick statistics of the used sessions into this directory after each test.
+ * </p>
+ * 
+ * <p>
+ * The idle sessions of the {@link NukkitSessionPool} are stopped as soon as all tests of the test class finished.
+ * </p>
+ * 
  * @author mepeisen
  */
-public class NukkitExtension implements InstancePostProcessor, MethodParameterResolver, AfterEachExtensionPoint, BeforeEachExtensionPoint
+public class NukkitExtension implements InstancePostProcessor, MethodParameterResolver, AfterEachExtensionPoint, BeforeEachExtensionPoint, AfterAllExtensionPoint
 {
     
     /** the extension namespace */
-    private static final Namespace NS = Namespace.of(NukkitExtension.class);
+    private static final Namespace                     NS             = Namespace.of(NukkitExtension.class);
+    
+    /** the store key for the pooled session */
+    private static final String                        POOL_KEY       = NukkitSessionPool.class.getName();
+    
+    /** the system property holding the report directory */
+    private static final String                        REPORTS        = "nukkit.test.reports"; //$NON-NLS-1$
+    
+    /** the class loaders holding session pools by test class name; guarded by itself */
+    private static final Map<String, Set<ClassLoader>> POOLED_LOADERS = new HashMap<>();
     
     @Override
     public void postProcessTestInstance(TestExtensionContext context) throws Exception
     {
-        final PowermockState powermock = PowermockExtension.getState(context);
-        powermock.getClassesToPrepare().add(Server.class);
-        powermock.getClassesToPrepare().add(ConsoleReader.class);
-        powermock.getClassesToPrepare().add(CommandReader.class);
-        powermock.getClassesToPrepare().add(ServerScheduler.class);
+        preparePowermock(PowermockExtension.getState(context));
+        
+        if (Boolean.getBoolean("nukkit.test.forked")) //$NON-NLS-1$
+        {
+            WorkerPool.getInstance().prewarm();
+        }
+    }
+    
+    /**
+     * Adds the server classes to the powermock state
+     * 
+     * @param powermock
+     */
+    private static void preparePowermock(PowermockState powermock)
+    {
+        // only the construction sites of console reader and scheduler are rewritten; no need to prepare the server classes for whenNew
+        powermock.getClassFileTransformers().add(ServerHooksTransformer.class);
         powermock.getPackagesToIgnore().add("org.mockito.*");
+        // shared with isolated sessions
+        Collections.addAll(powermock.getPackagesToIgnore(), IsolatedServerController.SHARED_CLASSES);
     }
     
     /**
@@ -69,7 +117,80 @@ public class NukkitExtension implements InstancePostProcessor, MethodParameterRe
     @Override
     public void afterEach(TestExtensionContext context) throws Exception
     {
-        // currently empty
+        try
+        {
+            final String reports = System.getProperty(REPORTS);
+            if (reports != null)
+            {
+                writeReport(context, new File(reports));
+            }
+        }
+        finally
+        {
+            final Object pooled = context.getStore(NS).remove(POOL_KEY);
+            if (pooled != null)
+            {
+                // give it back to the pool living in the test class loader
+                final Class<?> poolClazz = pooled.getClass().getClassLoader().loadClass(NukkitSessionPool.class.getName());
+                final Method releaseMethod = poolClazz.getDeclaredMethod("release", pooled.getClass()); //$NON-NLS-1$
+                releaseMethod.invoke(null, pooled);
+            }
+        }
+    }
+    
+    /**
+     * @see org.junit.gen5.api.extension.AfterAllExtensionPoint#afterAll(org.junit.gen5.api.extension.ContainerExtensionContext)
+     */
+    @Override
+    public void afterAll(ContainerExtensionContext context) throws Exception
+    {
+        final Set<ClassLoader> loaders;
+        synchronized (POOLED_LOADERS)
+        {
+            loaders = POOLED_LOADERS.remove(context.getTestClass().getName());
+        }
+        if (loaders != null)
+        {
+            // the pools live in the test class loaders; stop the idle sessions before the class loaders are dropped
+            for (final ClassLoader loader : loaders)
+            {
+                final Class<?> poolClazz = loader.loadClass(NukkitSessionPool.class.getName());
+                poolClazz.getDeclaredMethod("shutdown").invoke(null); //$NON-NLS-1$
+            }
+        }
+    }
+    
+    /**
+     * Writes the class loading statistics and the reports of the sessions used by the test into the report directory
+     * 
+     * @param context
+     * @param dir
+     *            the report directory
+     * @throws Exception
+     */
+    private static void writeReport(TestExtensionContext context, File dir) throws Exception
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("test=").append(context.getTestClass().getName()).append('#').append(context.getTestMethod().getName()).append('\n'); //$NON-NLS-1$
+        final ClassLoadingStats stats = PowermockExtension.getState(context).getClassLoadingStats();
+        if (stats != null)
+        {
+            builder.append("classloading=").append(stats).append('\n'); //$NON-NLS-1$
+            for (final String slow : stats.getSlowest())
+            {
+                builder.append("classloading.slowest=").append(slow).append('\n'); //$NON-NLS-1$
+            }
+        }
+        
+        // the sessions live in the test class loader
+        final Class<?> sessionClazz = context.getTestInstance().getClass().getClassLoader().loadClass(NukkitTestSession.class.getName());
+        final Method drainMethod = sessionClazz.getDeclaredMethod("drainReports"); //$NON-NLS-1$
+        drainMethod.setAccessible(true);
+        builder.append(drainMethod.invoke(null));
+        
+        dir.mkdirs();
+        final File file = new File(dir, context.getTestClass().getName() + '#' + context.getTestMethod().getName() + ".txt"); //$NON-NLS-1$
+        Files.write(file.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
     }
     
     /**
@@ -89,6 +210,15 @@ public class NukkitExtension implements InstancePostProcessor, MethodParameterRe
     public Object resolve(Parameter param, MethodInvocationContext methodInvocationContext, ExtensionContext extensionContext) throws ParameterResolutionException
     {
         final Store mocks = extensionContext.getStore(NS);
+        if (isPooled(param))
+        {
+            final Class<?> testClazz = methodInvocationContext.getInstance().getClass();
+            synchronized (POOLED_LOADERS)
+            {
+                POOLED_LOADERS.computeIfAbsent(testClazz.getName(), key -> new HashSet<>()).add(testClazz.getClassLoader());
+            }
+            return mocks.getOrComputeIfAbsent(POOL_KEY, key -> acquirePooled(testClazz.getClassLoader()));
+        }
         return getMockWithoutCast(extensionContext, param.getType(), mocks, methodInvocationContext.getInstance().getClass().getClassLoader());
     }
     
@@ -103,6 +233,55 @@ public class NukkitExtension implements InstancePostProcessor, MethodParameterRe
         return false;
     }
     
+    /**
+     * Checks if the parameter requests a pooled session
+     * 
+     * @param param
+     * @return {@code true} for pooled sessions
+     */
+    private boolean isPooled(Parameter param)
+    {
+        if (!param.getType().getName().equals(NukkitTestSession.class.getName()))
+        {
+            return false;
+        }
+        for (final Annotation annot : param.getAnnotations())
+        {
+            if (annot.annotationType().getName().equals(NukkitInject.class.getName()))
+            {
+                // the annotation may be loaded by the mock class loader; use reflection
+                try
+                {
+                    return Boolean.TRUE.equals(annot.annotationType().getMethod("pooled").invoke(annot)); //$NON-NLS-1$
+                }
+                catch (Exception e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Acquires a running session from the session pool of given class loader
+     * 
+     * @param loader
+     * @return running session
+     */
+    private Object acquirePooled(ClassLoader loader)
+    {
+        try
+        {
+            final Class<?> poolClazz = loader.loadClass(NukkitSessionPool.class.getName());
+            return poolClazz.getDeclaredMethod("acquire").invoke(null); //$NON-NLS-1$
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+    
     /**
      * Calculates the mocking class
      * 
@@ -0,0 +1,460 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Typed configuration for the nukkit test server.
+ * 
+ * <p>
+ * The config is written as {@code nukkit.yml} and {@code server.properties} into the data folder before the server is created. Having a {@code nukkit.yml}
+ * lets nukkit skip the language selection wizard and directly start loading.
+ * </p>
+ * 
+ * <p>
+ * The defaults match the nukkit defaults except for the server port. A server port of {@code 0} (the default) selects a free port while writing the config.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class NukkitServerConfig
+{
+    
+    /** the nukkit.yml content */
+    private final Map<String, Object> yml        = new LinkedHashMap<>();
+    
+    /** the server.properties content */
+    private final Map<String, Object> properties = new LinkedHashMap<>();
+    
+    /**
+     * Constructor
+     */
+    public NukkitServerConfig()
+    {
+        this.setYml("settings.language", "eng"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setYml("settings.force-language", Boolean.FALSE); //$NON-NLS-1$
+        this.setYml("settings.shutdown-message", "Server closed"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setYml("settings.query-plugins", Boolean.TRUE); //$NON-NLS-1$
+        this.setYml("settings.deprecated-verbose", Boolean.TRUE); //$NON-NLS-1$
+        this.setYml("settings.async-workers", "auto"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setYml("network.batch-threshold", Integer.valueOf(256)); //$NON-NLS-1$
+        this.setYml("network.compression-level", Integer.valueOf(7)); //$NON-NLS-1$
+        this.setYml("network.async-compression", Boolean.FALSE); //$NON-NLS-1$
+        this.setYml("debug.level", Integer.valueOf(1)); //$NON-NLS-1$
+        this.setYml("debug.commands", Boolean.FALSE); //$NON-NLS-1$
+        this.setYml("level-settings.default-format", "mcregion"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setYml("level-settings.auto-tick-rate", Boolean.TRUE); //$NON-NLS-1$
+        this.setYml("level-settings.auto-tick-rate-limit", Integer.valueOf(20)); //$NON-NLS-1$
+        this.setYml("level-settings.base-tick-rate", Integer.valueOf(1)); //$NON-NLS-1$
+        this.setYml("level-settings.always-tick-players", Boolean.FALSE); //$NON-NLS-1$
+        this.setYml("chunk-sending.per-tick", Integer.valueOf(4)); //$NON-NLS-1$
+        this.setYml("chunk-sending.max-chunks", Integer.valueOf(192)); //$NON-NLS-1$
+        this.setYml("chunk-sending.spawn-threshold", Integer.valueOf(56)); //$NON-NLS-1$
+        this.setYml("chunk-sending.cache-chunks", Boolean.FALSE); //$NON-NLS-1$
+        this.setYml("chunk-ticking.per-tick", Integer.valueOf(40)); //$NON-NLS-1$
+        this.setYml("chunk-ticking.tick-radius", Integer.valueOf(3)); //$NON-NLS-1$
+        this.setYml("chunk-ticking.light-updates", Boolean.FALSE); //$NON-NLS-1$
+        this.setYml("chunk-ticking.clear-tick-list", Boolean.FALSE); //$NON-NLS-1$
+        this.setYml("chunk-generation.queue-size", Integer.valueOf(8)); //$NON-NLS-1$
+        this.setYml("chunk-generation.population-queue-size", Integer.valueOf(8)); //$NON-NLS-1$
+        this.setYml("ticks-per.animal-spawns", Integer.valueOf(400)); //$NON-NLS-1$
+        this.setYml("ticks-per.monster-spawns", Integer.valueOf(1)); //$NON-NLS-1$
+        this.setYml("ticks-per.autosave", Integer.valueOf(6000)); //$NON-NLS-1$
+        this.setYml("ticks-per.cache-cleanup", Integer.valueOf(900)); //$NON-NLS-1$
+        this.setYml("spawn-limits.monsters", Integer.valueOf(70)); //$NON-NLS-1$
+        this.setYml("spawn-limits.animals", Integer.valueOf(15)); //$NON-NLS-1$
+        this.setYml("spawn-limits.water-animals", Integer.valueOf(5)); //$NON-NLS-1$
+        this.setYml("spawn-limits.ambient", Integer.valueOf(15)); //$NON-NLS-1$
+        this.setYml("player.save-player-data", Boolean.TRUE); //$NON-NLS-1$
+        this.setYml("aliases", new LinkedHashMap<String, Object>()); //$NON-NLS-1$
+        this.setYml("worlds", new LinkedHashMap<String, Object>()); //$NON-NLS-1$
+        
+        this.setProperty("motd", "Nukkit Test Server"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setProperty("server-port", Integer.valueOf(0)); //$NON-NLS-1$
+        this.setProperty("server-ip", "0.0.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setProperty("view-distance", Integer.valueOf(10)); //$NON-NLS-1$
+        this.setProperty("white-list", Boolean.FALSE); //$NON-NLS-1$
+        this.setProperty("announce-player-achievements", Boolean.TRUE); //$NON-NLS-1$
+        this.setProperty("spawn-protection", Integer.valueOf(16)); //$NON-NLS-1$
+        this.setProperty("max-players", Integer.valueOf(20)); //$NON-NLS-1$
+        this.setProperty("allow-flight", Boolean.FALSE); //$NON-NLS-1$
+        this.setProperty("spawn-animals", Boolean.TRUE); //$NON-NLS-1$
+        this.setProperty("spawn-mobs", Boolean.TRUE); //$NON-NLS-1$
+        this.setProperty("gamemode", Integer.valueOf(0)); //$NON-NLS-1$
+        this.setProperty("force-gamemode", Boolean.FALSE); //$NON-NLS-1$
+        this.setProperty("hardcore", Boolean.FALSE); //$NON-NLS-1$
+        this.setProperty("pvp", Boolean.TRUE); //$NON-NLS-1$
+        this.setProperty("difficulty", Integer.valueOf(1)); //$NON-NLS-1$
+        this.setProperty("generator-settings", ""); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setProperty("level-name", "world"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setProperty("level-seed", ""); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setProperty("level-type", "DEFAULT"); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setProperty("enable-query", Boolean.FALSE); //$NON-NLS-1$
+        this.setProperty("enable-rcon", Boolean.FALSE); //$NON-NLS-1$
+        this.setProperty("rcon.password", ""); //$NON-NLS-1$ //$NON-NLS-2$
+        this.setProperty("auto-save", Boolean.TRUE); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the server language (settings.language)
+     * 
+     * @param language
+     *            three letter language code, f.e. "eng"
+     * @return this config
+     */
+    public NukkitServerConfig setLanguage(String language)
+    {
+        return this.setYml("settings.language", language); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the debug level (debug.level)
+     * 
+     * @param level
+     *            debug level; values above 1 enable debug logging
+     * @return this config
+     */
+    public NukkitServerConfig setDebugLevel(int level)
+    {
+        return this.setYml("debug.level", Integer.valueOf(level)); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the number of async workers (settings.async-workers)
+     * 
+     * @param workers
+     *            number of workers
+     * @return this config
+     */
+    public NukkitServerConfig setAsyncWorkers(int workers)
+    {
+        return this.setYml("settings.async-workers", Integer.valueOf(workers)); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the auto save interval in ticks (ticks-per.autosave)
+     * 
+     * @param ticks
+     * @return this config
+     */
+    public NukkitServerConfig setAutoSaveTicks(int ticks)
+    {
+        return this.setYml("ticks-per.autosave", Integer.valueOf(ticks)); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the message of the day (motd)
+     * 
+     * @param motd
+     * @return this config
+     */
+    public NukkitServerConfig setMotd(String motd)
+    {
+        return this.setProperty("motd", motd); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the server port (server-port)
+     * 
+     * @param port
+     *            the udp port; {@code 0} to select a free port
+     * @return this config
+     */
+    public NukkitServerConfig setServerPort(int port)
+    {
+        return this.setProperty("server-port", Integer.valueOf(port)); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the server ip (server-ip)
+     * 
+     * @param ip
+     * @return this config
+     */
+    public NukkitServerConfig setServerIp(String ip)
+    {
+        return this.setProperty("server-ip", ip); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the maximum number of players (max-players)
+     * 
+     * @param maxPlayers
+     * @return this config
+     */
+    public NukkitServerConfig setMaxPlayers(int maxPlayers)
+    {
+        return this.setProperty("max-players", Integer.valueOf(maxPlayers)); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the view distance (view-distance)
+     * 
+     * @param viewDistance
+     * @return this config
+     */
+    public NukkitServerConfig setViewDistance(int viewDistance)
+    {
+        return this.setProperty("view-distance", Integer.valueOf(viewDistance)); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the default game mode (gamemode)
+     * 
+     * @param gamemode
+     * @return this config
+     */
+    public NukkitServerConfig setGamemode(int gamemode)
+    {
+        return this.setProperty("gamemode", Integer.valueOf(gamemode)); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the difficulty (difficulty)
+     * 
+     * @param difficulty
+     * @return this config
+     */
+    public NukkitServerConfig setDifficulty(int difficulty)
+    {
+        return this.setProperty("difficulty", Integer.valueOf(difficulty)); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the default level name (level-name)
+     * 
+     * @param levelName
+     * @return this config
+     */
+    public NukkitServerConfig setLevelName(String levelName)
+    {
+        return this.setProperty("level-name", levelName); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the default level seed (level-seed)
+     * 
+     * @param seed
+     * @return this config
+     */
+    public NukkitServerConfig setLevelSeed(String seed)
+    {
+        return this.setProperty("level-seed", seed); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the default level type (level-type)
+     * 
+     * @param levelType
+     *            generator name, f.e. "DEFAULT" or "FLAT"
+     * @return this config
+     */
+    public NukkitServerConfig setLevelType(String levelType)
+    {
+        return this.setProperty("level-type", levelType); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the white list flag (white-list)
+     * 
+     * @param whiteList
+     * @return this config
+     */
+    public NukkitServerConfig setWhiteList(boolean whiteList)
+    {
+        return this.setProperty("white-list", Boolean.valueOf(whiteList)); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets the auto save flag (auto-save)
+     * 
+     * @param autoSave
+     * @return this config
+     */
+    public NukkitServerConfig setAutoSave(boolean autoSave)
+    {
+        return this.setProperty("auto-save", Boolean.valueOf(autoSave)); //$NON-NLS-1$
+    }
+    
+    /**
+     * Sets a value within nukkit.yml
+     * 
+     * @param path
+     *            the dot separated path, f.e. "settings.language"
+     * @param value
+     *            the value; either a string, a number, a boolean or a map
+     * @return this config
+     */
+    @SuppressWarnings("unchecked")
+    public NukkitServerConfig setYml(String path, Object value)
+    {
+        final String[] segments = path.split("\\."); //$NON-NLS-1$
+        Map<String, Object> map = this.yml;
+        for (int i = 0; i < segments.length - 1; i++)
+        {
+            map = (Map<String, Object>) map.computeIfAbsent(segments[i], key -> new LinkedHashMap<String, Object>());
+        }
+        map.put(segments[segments.length - 1], value);
+        return this;
+    }
+    
+    /**
+     * Sets a value within server.properties
+     * 
+     * @param key
+     * @param value
+     *            the value; either a string, a number or a boolean
+     * @return this config
+     */
+    public NukkitServerConfig setProperty(String key, Object value)
+    {
+        this.properties.put(key, value);
+        return this;
+    }
+    
+    /**
+     * Returns a fingerprint of this config; configs with equal values have equal fingerprints
+     * 
+     * @return fingerprint (hex string)
+     */
+    public String fingerprint()
+    {
+        try
+        {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+            digest.update(this.yml.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(this.properties.toString().getBytes(StandardCharsets.UTF_8));
+            final StringBuilder result = new StringBuilder();
+            for (final byte b : digest.digest())
+            {
+                result.append(String.format("%02x", Integer.valueOf(b & 0xFF))); //$NON-NLS-1$
+            }
+            return result.toString();
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Writes nukkit.yml and server.properties into given data folder
+     * 
+     * @param dataFolder
+     */
+    public void write(File dataFolder)
+    {
+        try
+        {
+            dataFolder.mkdirs();
+            try (final Writer writer = Files.newBufferedWriter(new File(dataFolder, "nukkit.yml").toPath(), StandardCharsets.UTF_8)) //$NON-NLS-1$
+            {
+                writeYml(writer, this.yml, ""); //$NON-NLS-1$
+            }
+            try (final Writer writer = Files.newBufferedWriter(new File(dataFolder, "server.properties").toPath(), StandardCharsets.UTF_8)) //$NON-NLS-1$
+            {
+                writer.write("#Properties Config file\r\n"); //$NON-NLS-1$
+                for (final Map.Entry<String, Object> entry : this.properties.entrySet())
+                {
+                    Object value = entry.getValue();
+                    if ("server-port".equals(entry.getKey()) && Integer.valueOf(0).equals(value)) //$NON-NLS-1$
+                    {
+                        value = Integer.valueOf(freePort());
+                    }
+                    else if (value instanceof Boolean)
+                    {
+                        value = ((Boolean) value).booleanValue() ? "on" : "off"; //$NON-NLS-1$ //$NON-NLS-2$
+                    }
+                    writer.write(entry.getKey() + "=" + value + "\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Writes a yml map
+     * 
+     * @param writer
+     * @param map
+     * @param indent
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    private static void writeYml(Writer writer, Map<String, Object> map, String indent) throws IOException
+    {
+        for (final Map.Entry<String, Object> entry : map.entrySet())
+        {
+            final Object value = entry.getValue();
+            writer.write(indent + entry.getKey() + ":"); //$NON-NLS-1$
+            if (value instanceof Map)
+            {
+                final Map<String, Object> child = (Map<String, Object>) value;
+                if (child.isEmpty())
+                {
+                    writer.write(" {}\n"); //$NON-NLS-1$
+                }
+                else
+                {
+                    writer.write("\n"); //$NON-NLS-1$
+                    writeYml(writer, child, indent + "  "); //$NON-NLS-1$
+                }
+            }
+            else if (value instanceof String)
+            {
+                writer.write(" \"" + ((String) value).replace("\\", "\\\\").replace("\"", "\\\"") + "\"\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+            }
+            else
+            {
+                writer.write(" " + value + "\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+    
+    /**
+     * Returns a free udp port
+     * 
+     * @return free port
+     */
+    private static int freePort()
+    {
+        try (final DatagramSocket socket = new DatagramSocket(0))
+        {
+            return socket.getLocalPort();
+        }
+        catch (SocketException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+}
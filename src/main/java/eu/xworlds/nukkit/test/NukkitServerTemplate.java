@@ -0,0 +1,403 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static eu.xworlds.nukkit.test.Criterias.waitStarted;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A template server folder holding configs and pre-generated worlds.
+ * 
+ * <p>
+ * The template is built once by booting and stopping a server within the template folder. The folder is kept on disk and reused by later vms as long as the
+ * config fingerprint does not change. Test sessions materialize the template into their own server folder instead of starting with an empty folder.
+ * </p>
+ * 
+ * <p>
+ * Materializing tries a copy-on-write clone of the whole folder first ({@code cp --reflink} on linux, {@code cp -c} on mac os). If the file system does not
+ * support cloning, files matching the shared patterns (by default plugin jars) are hard linked and all other files are copied via
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}. Shared files must never be modified by the server.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class NukkitServerTemplate
+{
+    
+    /** marker file written after the template was built */
+    private static final String         MARKER       = ".template-complete"; //$NON-NLS-1$
+    
+    /** the log file of the template server; not materialized */
+    private static final String         LOG_FILE     = "nukkit.log";         //$NON-NLS-1$
+    
+    /** milliseconds to wait for the template server */
+    private static final int            BOOT_MILLIS  = 30000;
+    
+    /** the default template */
+    private static NukkitServerTemplate defaultTemplate;
+    
+    /** the template folder */
+    private final File                  folder;
+    
+    /** the config used to build the template */
+    private final NukkitServerConfig    config;
+    
+    /** patterns for files that are hard linked instead of being copied */
+    private final List<PathMatcher>     sharedFiles  = new ArrayList<>();
+    
+    /** {@code true} to try copy-on-write clones */
+    private boolean                     cloning      = true;
+    
+    /**
+     * Constructor
+     * 
+     * @param folder
+     *            the template folder
+     * @param config
+     *            the config used to build the template
+     */
+    public NukkitServerTemplate(File folder, NukkitServerConfig config)
+    {
+        this.folder = folder;
+        this.config = config;
+        this.addSharedPattern("**.jar"); //$NON-NLS-1$
+    }
+    
+    /**
+     * Returns the default template using the default config.
+     * 
+     * <p>
+     * The folder is taken from system property {@code nukkit.test.template}; defaults to a folder within {@code NUKKIT_TEST_PATH} or the temp directory.
+     * </p>
+     * 
+     * @return default template
+     */
+    public static synchronized NukkitServerTemplate defaultTemplate()
+    {
+        if (defaultTemplate == null)
+        {
+            final NukkitServerConfig config = new NukkitServerConfig();
+            String path = System.getProperty("nukkit.test.template"); //$NON-NLS-1$
+            if (path == null)
+            {
+                String parent = System.getenv("NUKKIT_TEST_PATH"); //$NON-NLS-1$
+                if (parent == null)
+                {
+                    parent = System.getProperty("java.io.tmpdir"); //$NON-NLS-1$
+                }
+                path = parent + File.separator + "nukkit-template-" + config.fingerprint().substring(0, 12); //$NON-NLS-1$
+            }
+            defaultTemplate = new NukkitServerTemplate(new File(path), config);
+        }
+        return defaultTemplate;
+    }
+    
+    /**
+     * Adds a glob pattern (relative to the template folder) for files that are hard linked instead of being copied
+     * 
+     * @param glob
+     * @return this template
+     */
+    public NukkitServerTemplate addSharedPattern(String glob)
+    {
+        this.sharedFiles.add(FileSystems.getDefault().getPathMatcher("glob:" + glob)); //$NON-NLS-1$
+        return this;
+    }
+    
+    /**
+     * Enables or disables copy-on-write clones
+     * 
+     * @param cloning
+     * @return this template
+     */
+    public NukkitServerTemplate setCloning(boolean cloning)
+    {
+        this.cloning = cloning;
+        return this;
+    }
+    
+    /**
+     * Returns the template folder
+     * 
+     * @return template folder
+     */
+    public File getFolder()
+    {
+        return this.folder;
+    }
+    
+    /**
+     * Returns the config used to build the template
+     * 
+     * @return config
+     */
+    public NukkitServerConfig getConfig()
+    {
+        return this.config;
+    }
+    
+    /**
+     * Builds the template if it was not built before
+     * 
+     * @return this template
+     */
+    public synchronized NukkitServerTemplate prepare()
+    {
+        final File marker = new File(this.folder, MARKER);
+        final String fingerprint = this.config.fingerprint();
+        try
+        {
+            if (marker.exists() && fingerprint.equals(new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8)))
+            {
+                return this;
+            }
+            
+            delete(this.folder.toPath());
+            this.folder.mkdirs();
+            final NukkitTestSession session = new NukkitTestSession();
+            session.setServerFolder(this.folder.getAbsolutePath());
+            session.setServerConfig(this.config);
+            session.startWith(waitStarted());
+            session.stop().waitShutdownComplete(BOOT_MILLIS);
+            
+            Files.write(marker.toPath(), fingerprint.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Materializes the template into given server folder; builds the template if needed
+     * 
+     * @param target
+     *            the server folder
+     */
+    public void materialize(File target)
+    {
+        this.prepare();
+        target.mkdirs();
+        if (this.cloning && this.tryClone(target))
+        {
+            return;
+        }
+        
+        final Path source = this.folder.toPath();
+        final Path dest = target.toPath();
+        try
+        {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+                {
+                    Files.createDirectories(dest.resolve(source.relativize(dir).toString()));
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+                {
+                    final Path relative = source.relativize(file);
+                    if (!isTemplateFile(relative))
+                    {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    final Path to = dest.resolve(relative.toString());
+                    Files.deleteIfExists(to);
+                    if (NukkitServerTemplate.this.isShared(relative))
+                    {
+                        try
+                        {
+                            Files.createLink(to, file);
+                            return FileVisitResult.CONTINUE;
+                        }
+                        catch (IOException | UnsupportedOperationException ex)
+                        {
+                            // different file store; fall back to copy
+                        }
+                    }
+                    copy(file, to, attrs.size());
+                    return FileVisitResult.CONTINUE;
+                }
+                
+            });
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Tries to clone the template via copy-on-write
+     * 
+     * @param target
+     * @return {@code true} on success
+     */
+    private boolean tryClone(File target)
+    {
+        final String os = System.getProperty("os.name", "").toLowerCase(); //$NON-NLS-1$ //$NON-NLS-2$
+        final String flag;
+        if (os.contains("linux")) //$NON-NLS-1$
+        {
+            flag = "--reflink=always"; //$NON-NLS-1$
+        }
+        else if (os.contains("mac")) //$NON-NLS-1$
+        {
+            flag = "-c"; //$NON-NLS-1$
+        }
+        else
+        {
+            return false;
+        }
+        try
+        {
+            final Process process = new ProcessBuilder("cp", "-R", flag, this.folder.getAbsolutePath() + File.separator + ".", target.getAbsolutePath()) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            if (!process.waitFor(BOOT_MILLIS, TimeUnit.MILLISECONDS))
+            {
+                process.destroyForcibly();
+                return false;
+            }
+            if (process.exitValue() != 0)
+            {
+                return false;
+            }
+            Files.deleteIfExists(new File(target, MARKER).toPath());
+            Files.deleteIfExists(new File(target, LOG_FILE).toPath());
+            return true;
+        }
+        catch (IOException ex)
+        {
+            return false;
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    /**
+     * Checks if given file is part of the template
+     * 
+     * @param relative
+     * @return {@code true} if the file is materialized
+     */
+    static boolean isTemplateFile(Path relative)
+    {
+        final String name = relative.toString();
+        return !MARKER.equals(name) && !LOG_FILE.equals(name);
+    }
+    
+    /**
+     * Checks if given file is shared via hard link
+     * 
+     * @param relative
+     * @return {@code true} for shared files
+     */
+    boolean isShared(Path relative)
+    {
+        for (final PathMatcher matcher : this.sharedFiles)
+        {
+            if (matcher.matches(relative))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Copies a file via channel transfer
+     * 
+     * @param from
+     * @param to
+     * @param size
+     * @throws IOException
+     */
+    static void copy(Path from, Path to, long size) throws IOException
+    {
+        try (final FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+                final FileChannel out = FileChannel.open(to, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            long pos = 0;
+            while (pos < size)
+            {
+                final long count = in.transferTo(pos, size - pos, out);
+                if (count <= 0)
+                {
+                    break;
+                }
+                pos += count;
+            }
+        }
+    }
+    
+    /**
+     * Deletes a folder recursively
+     * 
+     * @param path
+     * @throws IOException
+     */
+    static void delete(Path path) throws IOException
+    {
+        if (!Files.exists(path))
+        {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException
+            {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+            
+        });
+    }
+    
+}
@@ -0,0 +1,206 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static eu.xworlds.nukkit.test.Criterias.defaultServerConfig;
+import static eu.xworlds.nukkit.test.Criterias.waitStarted;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of running nukkit test sessions.
+ * 
+ * <p>
+ * Booting a nukkit server is expensive. Sessions released to this pool keep their server running and are handed to the next test after being reset (see
+ * {@link NukkitTestSession#reset(int)}). Because the nukkit server is a singleton the pool is held per class loader; it only pays off for tests sharing the
+ * same class loader.
+ * </p>
+ * 
+ * <p>
+ * The number of idle sessions is limited by the system property {@code nukkit.test.pool.size} (defaults to 1). Idle sessions are stopped by the {@link NukkitExtension} as soon as the test class
+ * finished and at the latest on vm exit. Setting
+ * the system property {@code nukkit.test.pool.isolated} to {@code true} boots isolated sessions (see {@link NukkitTestSession#setIsolated(boolean)}); they
+ * are not limited to one running server per class loader.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class NukkitSessionPool
+{
+    
+    /** the maximum number of idle sessions */
+    private static final int                      MAX_IDLE        = Integer.getInteger("nukkit.test.pool.size", 1).intValue(); //$NON-NLS-1$
+    
+    /** {@code true} to boot isolated sessions */
+    private static final boolean                  ISOLATED        = Boolean.getBoolean("nukkit.test.pool.isolated"); //$NON-NLS-1$
+    
+    /** milliseconds to wait for the server startup */
+    private static final int                      START_MILLIS    = 10000;
+    
+    /** milliseconds to wait for a server reset */
+    private static final int                      RESET_MILLIS    = 5000;
+    
+    /** milliseconds to wait for a server shutdown */
+    private static final int                      SHUTDOWN_MILLIS = 5000;
+    
+    /** the idle sessions */
+    private static final Deque<NukkitTestSession> IDLE            = new ArrayDeque<>();
+    
+    /** the logger reporting dropped sessions */
+    private static final Logger                   LOGGER          = Logger.getLogger(NukkitSessionPool.class.getName());
+    
+    /** the shutdown hook stopping the idle sessions on vm exit; registered while sessions are idle, guarded by IDLE */
+    private static Thread                         hook;
+    
+    /**
+     * Hidden constructor
+     */
+    private NukkitSessionPool()
+    {
+        // empty
+    }
+    
+    /**
+     * Returns a running session; either an idle session after reset or a newly started session.
+     * 
+     * @return running test session
+     */
+    public static NukkitTestSession acquire()
+    {
+        while (true)
+        {
+            final NukkitTestSession session;
+            synchronized (IDLE)
+            {
+                session = IDLE.poll();
+            }
+            if (session == null)
+            {
+                break;
+            }
+            if (session.isRunning())
+            {
+                try
+                {
+                    return session.reset(RESET_MILLIS);
+                }
+                catch (Throwable ex)
+                {
+                    // broken session; it already left the idle sessions, so stop it and boot a fresh one
+                    LOGGER.log(Level.WARNING, "Dropping pooled session that failed to reset", ex); //$NON-NLS-1$
+                    stopQuietly(session);
+                }
+            }
+        }
+        
+        final NukkitTestSession session = new NukkitTestSession().setIsolated(ISOLATED);
+        session.startWith(defaultServerConfig(), waitStarted());
+        return session.waitMainLoop(START_MILLIS);
+    }
+    
+    /**
+     * Releases given session after a test. Running sessions are kept for later use; stopped sessions are dropped.
+     * 
+     * @param session
+     */
+    public static void release(NukkitTestSession session)
+    {
+        if (session == null || !session.isRunning())
+        {
+            return;
+        }
+        synchronized (IDLE)
+        {
+            if (IDLE.size() < MAX_IDLE)
+            {
+                IDLE.push(session);
+                if (hook == null)
+                {
+                    hook = new Thread(NukkitSessionPool::shutdown, "nukkit-session-pool-shutdown"); //$NON-NLS-1$
+                    Runtime.getRuntime().addShutdownHook(hook);
+                }
+                return;
+            }
+        }
+        stopQuietly(session);
+    }
+    
+    /**
+     * Stops all idle sessions
+     */
+    public static void shutdown()
+    {
+        while (true)
+        {
+            final NukkitTestSession session;
+            synchronized (IDLE)
+            {
+                session = IDLE.poll();
+                if (session == null)
+                {
+                    removeHook();
+                    return;
+                }
+            }
+            stopQuietly(session);
+        }
+    }
+    
+    /**
+     * Removes the shutdown hook; the hook references this class and would keep the test class loader alive until vm exit
+     */
+    private static void removeHook()
+    {
+        if (hook != null && hook != Thread.currentThread())
+        {
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            }
+            catch (IllegalStateException ex)
+            {
+                // vm shutdown in progress; the hook is running anyway
+            }
+        }
+        hook = null;
+    }
+    
+    /**
+     * Stops given session and waits for the shutdown; failures are logged because the session is dropped anyway
+     * 
+     * @param session
+     */
+    private static void stopQuietly(NukkitTestSession session)
+    {
+        try
+        {
+            if (session.isRunning())
+            {
+                session.stop().waitShutdownComplete(SHUTDOWN_MILLIS);
+            }
+        }
+        catch (Throwable ex)
+        {
+            LOGGER.log(Level.WARNING, "Failed to stop dropped session", ex); //$NON-NLS-1$
+        }
+    }
+    
+}
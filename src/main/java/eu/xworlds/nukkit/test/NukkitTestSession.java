@@ -20,33 +20,34 @@ package eu.xworlds.nukkit.test;
 import static eu.xworlds.nukkit.test.NukkitAssertions.assertLogEvent;
 import static org.junit.gen5.api.Assertions.assertFalse;
 import static org.junit.gen5.api.Assertions.assertTrue;
-import static org.mockito.Matchers.anyString;
-import static org.powermock.api.mockito.PowerMockito.doAnswer;
-import static org.powermock.api.mockito.PowerMockito.mock;
-import static org.powermock.api.mockito.PowerMockito.spy;
-import static org.powermock.api.mockito.PowerMockito.whenNew;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
-import org.mockito.invocation.InvocationOnMock;
-import org.mockito.stubbing.Answer;
-
-import com.google.common.base.Charsets;
-
 import cn.nukkit.Server;
-import cn.nukkit.scheduler.ServerScheduler;
+import cn.nukkit.command.CommandSender;
 import cn.nukkit.utils.LogLevel;
-import cn.nukkit.utils.MainLogger;
 import cn.nukkit.utils.TextFormat;
-import jline.console.ConsoleReader;
+import eu.xworlds.nukkit.test.internal.IsolatedServerController;
+import eu.xworlds.nukkit.test.internal.LocalServerController;
+import eu.xworlds.nukkit.test.internal.ServerBridge;
+import eu.xworlds.nukkit.test.internal.ServerController;
+import eu.xworlds.nukkit.test.internal.fork.ForkedServerController;
 
 /**
  * A sample test session to handle a nukkit test server.
@@ -55,13 +56,37 @@ import jline.console.ConsoleReader;
  * If no server path is set it will use the environment variable {@code NUKKIT_TEST_PATH}.
  * </p>
  * 
+ * <p>
+ * Isolated sessions (see {@link #setIsolated(boolean)}) load the nukkit server within their own class loader. Multiple isolated sessions can run
+ * concurrently within one vm. The server of an isolated session is not accessible by {@link #getServer()}.
+ * </p>
+ * 
+ * <p>
+ * Forked sessions (see {@link #setForked(boolean)}) run the nukkit server within a pre-warmed worker vm. Setting the system property
+ * {@code nukkit.test.forked} to {@code true} forks all sessions by default. The server of a forked session is not accessible by {@link #getServer()}.
+ * </p>
+ * 
+ * <p>
+ * The log events are kept within a bounded buffer (see {@link #setLogBuffer(int, LogOverflow)}). Use a {@link LogCursor} to read only the log
+ * events that arrived since the last read.
+ * </p>
+ * 
  * @author mepeisen
  */
 public final class NukkitTestSession
 {
     
-    /** the thread of the nukkit server */
-    private Thread     serverThread;
+    /** milliseconds to wait for the main thread dispatching commands */
+    private static final int DISPATCH_MILLIS = 10000;
+    
+    /** milliseconds to wait for a single requested tick */
+    private static final int TICK_MILLIS     = 1000;
+    
+    /** {@code true} if the sessions are reported after each test; the system property names the report directory of {@link NukkitExtension} */
+    private static final boolean                REPORTS  = System.getProperty("nukkit.test.reports") != null; //$NON-NLS-1$
+    
+    /** the sessions started or reset since the last report; see {@link #drainReports()} */
+    private static final Set<NukkitTestSession> REPORTED = ConcurrentHashMap.newKeySet();
     
     /** the server folder */
     private String     serverFolder;
@@ -75,30 +100,66 @@ public final class NukkitTestSession
     /** the plugin folder */
     private String     pluginFolder;
     
+    /** the server config to be written before startup */
+    private NukkitServerConfig serverConfig;
+    
+    /** the template to be materialized into the server folder */
+    private NukkitServerTemplate template;
+    
     /** {@code true} if the files are deleted on server shutdown */
     private boolean    deletingOnFinish;
     
     /** {@code true} if the files are deleted on vm exit */
     private boolean    deletingOnVmExit;
     
+    /** {@code true} if the server is loaded within its own class loader */
+    private boolean    isolated;
+    
+    /** {@code true} if the server is running within a worker vm */
+    private boolean    forked    = Boolean.getBoolean("nukkit.test.forked"); //$NON-NLS-1$
+    
+    /** {@code true} to forward the log messages to the log file and console of the server */
+    private boolean    logForwarding = true;
+    
+    /** the filter for captured log messages */
+    private LogCaptureFilter captureFilter;
+    
+    /** the clock of the main loop */
+    private TickMode   tickMode  = TickMode.REALTIME;
+    
+    /** the filter applied by the bridge; set after the startup messages arrived */
+    volatile LogCaptureFilter activeFilter;
+    
     /** the log events that were caught by intercepting main logger */
-    List<LogEvent>     logEvents        = new ArrayList<>();
+    LogEventStore      logEvents = new LogEventStore(LogEventStore.DEFAULT_CAPACITY, LogOverflow.SPILL_TO_DISK, this::createSpillFile, null);
+    
+    /** the durations of the ticks */
+    final TickHistogram ticks    = new TickHistogram();
+    
+    /** the most recent ticks */
+    final TickWindow   recentTicks = new TickWindow(TickWindow.DEFAULT_CAPACITY);
     
-    /** the console spy for injecting commands */
-    // ConsoleReader consoleSpy;
+    /** the nano times of the session phases */
+    final Map<SessionPhase, Long> phases = Collections.synchronizedMap(new EnumMap<>(SessionPhase.class));
     
-    /** injected console commands */
-    LinkedList<String> injectedCommands = new LinkedList<>();
+    /** the watchers evaluated on each new log event */
+    List<LogWatcher>   watchers  = new CopyOnWriteArrayList<>();
     
-    /** the scheduler spy */
-    ServerScheduler    schedulerSpy;
+    /** the ids of submitted commands */
+    private final AtomicLong              nextCommand = new AtomicLong();
+    
+    /** the submitted commands waiting for their end marker */
+    final Map<Long, SubmittedCommand>     commands    = new ConcurrentHashMap<>();
+    
+    /** the submitted command being executed */
+    volatile SubmittedCommand             currentCommand;
+    
+    /** the controller of the nukkit server */
+    ServerController   controller;
     
     /** the flag for indicated a running nukkit server */
     boolean            finishedStart;
     
-    /** the main logger */
-    MainLogger         logger;
-    
     /** the flag to indicate a stopped nukkit server */
     boolean            finishedStop;
     
@@ -117,7 +178,27 @@ public final class NukkitTestSession
      */
     public boolean isRunning()
     {
-        return Server.getInstance() != null && Server.getInstance().isRunning();
+        return this.controller != null && this.controller.isRunning();
+    }
+    
+    /**
+     * Checks if the nukkit server is loaded within its own class loader
+     * 
+     * @return {@code true} for isolated sessions
+     */
+    public boolean isIsolated()
+    {
+        return this.isolated;
+    }
+    
+    /**
+     * Checks if the nukkit server is running within a worker vm
+     * 
+     * @return {@code true} for forked sessions
+     */
+    public boolean isForked()
+    {
+        return this.forked;
     }
     
     /**
@@ -143,6 +224,12 @@ public final class NukkitTestSession
         this.finishedStop = false;
         
         assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
+        this.phases.clear();
+        this.recordPhase(SessionPhase.START, System.nanoTime());
+        if (REPORTS)
+        {
+            REPORTED.add(this);
+        }
         if (criteria != null)
         {
             for (final NukkitServerCriteria c : criteria)
@@ -154,116 +241,54 @@ public final class NukkitTestSession
             }
         }
         
-        this.createMainLogger();
         final String filePath = this.createFilePath();
         final String dataPath = this.createDataPath();
         final String pluginPath = this.createPluginPath();
+        if (this.template != null)
+        {
+            this.template.materialize(new File(filePath));
+        }
         this.applyConfig(filePath, dataPath, pluginPath);
-        this.serverThread = new Thread(new Runnable() {
-            
-            @SuppressWarnings("unused")
-            @Override
-            public void run()
-            {
-                // mock console reader
-                try
-                {
-                    final ConsoleReader reader = new ConsoleReader(new InputStream() {
-                        
-                        /** the buffer */
-                        private int[] buffer = new int[0];
-                        /** the pos in buffer */
-                        private int   pos;
-                        
-                        @Override
-                        public int read() throws IOException
-                        {
-                            while (this.buffer.length > this.pos)
-                            {
-                                return this.buffer[this.pos++];
-                            }
-                            while (true)
-                            {
-                                synchronized (NukkitTestSession.this.injectedCommands)
-                                {
-                                    if (!NukkitTestSession.this.injectedCommands.isEmpty())
-                                    {
-                                        final String cmd = NukkitTestSession.this.injectedCommands.poll() + "\r\n"; //$NON-NLS-1$
-                                        System.out.print(cmd);
-                                        final byte[] bytes = cmd.getBytes(Charsets.UTF_8);
-                                        this.buffer = new int[bytes.length];
-                                        this.pos = 0;
-                                        for (int i = 0; i < this.buffer.length; i++)
-                                        {
-                                            this.buffer[i] = bytes[i] & 0xFF;
-                                        }
-                                        return this.buffer[this.pos++];
-                                    }
-                                    if (!Server.getInstance().isRunning())
-                                    {
-                                        return -1;
-                                    }
-                                    try
-                                    {
-                                        NukkitTestSession.this.injectedCommands.wait(500);
-                                    }
-                                    catch (InterruptedException ex)
-                                    {
-                                        // silently ignore
-                                    }
-                                }
-                            }
-                        }
-                        
-                    }, System.out);
-                    whenNew(ConsoleReader.class).withAnyArguments().thenReturn(reader);
-                    
-                    final ServerScheduler scheduler = new ServerScheduler();
-                    NukkitTestSession.this.schedulerSpy = spy(scheduler);
-                    mock(ServerScheduler.class);
-                    whenNew(ServerScheduler.class).withNoArguments().thenReturn(NukkitTestSession.this.schedulerSpy);
-                    
-                    doAnswer(new Answer<Void>() {
-                        
-                        @Override
-                        public Void answer(InvocationOnMock invocation) throws Throwable
-                        {
-                            scheduler.mainThreadHeartbeat(1);
-                            synchronized (NukkitTestSession.this)
-                            {
-                                NukkitTestSession.this.finishedStart = true;
-                                NukkitTestSession.this.notifyAll();
-                            }
-                            return null;
-                        }
-                    }).when(NukkitTestSession.this.schedulerSpy).mainThreadHeartbeat(1);
-                }
-                catch (Exception ex)
-                {
-                    ex.printStackTrace();
-                    // should never happen
-                }
-                
-                new Server(NukkitTestSession.this.logger, filePath, dataPath, pluginPath);
-                synchronized (NukkitTestSession.this)
-                {
-                    NukkitTestSession.this.finishedStop = true;
-                    NukkitTestSession.this.notifyAll();
-                }
-            }
-            
-        });
-        this.serverThread.start();
+        this.recordPhase(SessionPhase.FOLDERS, System.nanoTime());
+        this.activeFilter = null;
+        this.ticks.clear();
+        this.recentTicks.clear();
+        if (this.captureFilter != null)
+        {
+            this.captureFilter.markInUse();
+        }
+        if (this.forked)
+        {
+            this.controller = new ForkedServerController();
+        }
+        else
+        {
+            this.controller = this.isolated ? new IsolatedServerController() : new LocalServerController();
+        }
+        this.controller.setTickMode(this.tickMode);
+        this.controller.start(new Bridge(), filePath, dataPath, pluginPath, this.logForwarding);
         if (this.isConfigured())
         {
             // wait for initialization phase
-            assertLogEvent(this, (event) -> event.getMessage().startsWith("Loading"), "missing Loading log message", 1000); //$NON-NLS-1$ //$NON-NLS-2$
+            final LogEvent loading = this.getLog(this.awaitLog(LogEventCheck.prefix("Loading")), 1000); //$NON-NLS-1$
+            assertTrue(loading != null, "missing Loading log message"); //$NON-NLS-1$
+            this.recordPhase(SessionPhase.LOADING, loading.getNanoTime());
         }
         else
         {
             // wait for the language question
             assertLogEvent(this, (event) -> event.getMessage().startsWith(TextFormat.GREEN + "Welcome!"), "missing welcome log message", 1000); //$NON-NLS-1$ //$NON-NLS-2$
         }
+        if (this.forked && this.captureFilter != null)
+        {
+            // filter within the worker vm; rejected messages do not cross the connection
+            ((ForkedServerController) this.controller).setCaptureFilter(this.captureFilter.getMinimumLevel(), this.captureFilter.getAllowedPrefixes(),
+                    this.captureFilter.getDeniedPrefixes(), this.captureFilter.getMaxMessageLength());
+        }
+        else
+        {
+            this.activeFilter = this.captureFilter;
+        }
         
         if (criteria != null)
         {
@@ -271,7 +296,7 @@ public final class NukkitTestSession
             {
                 if (c instanceof NukkitServerAfterStartupCriteria)
                 {
-                    ((NukkitServerAfterStartupCriteria) c).afterStartup(this, Server.getInstance());
+                    ((NukkitServerAfterStartupCriteria) c).afterStartup(this, this.isolated || this.forked ? null : this.getServer());
                 }
             }
         }
@@ -291,8 +316,10 @@ public final class NukkitTestSession
      */
     private void applyConfig(String filePath, String dataPath, String pluginPath)
     {
-        // TODO Auto-generated method stub
-        
+        if (this.serverConfig != null)
+        {
+            this.serverConfig.write(new File(dataPath));
+        }
     }
     
     /**
@@ -401,223 +428,23 @@ public final class NukkitTestSession
     }
     
     /**
-     * inject a private static field
+     * Creates the file receiving log events overflowing the log buffer
      * 
-     * @param clazz
-     * @param field
-     * @param value
+     * @return spill file
      */
-    static void injectPrivateStaticField(Class<?> clazz, String field, Object value)
+    private File createSpillFile()
     {
-        try
-        {
-            final Field f = clazz.getDeclaredField(field);
-            final Field modifiersField = Field.class.getDeclaredField("modifiers"); //$NON-NLS-1$
-            modifiersField.setAccessible(true);
-            modifiersField.setInt(f, f.getModifiers() & ~Modifier.FINAL);
-            f.setAccessible(true);
-            f.set(null, value);
-        }
-        catch (Exception ex)
-        {
-            ex.printStackTrace();
-            throw new IllegalStateException(ex);
-        }
+        return new File(this.createFilePath(), "log-spill.dat"); //$NON-NLS-1$
     }
     
     /**
-     * Returns the main logger instance
+     * Creates the file receiving the journaled log events
      * 
-     * @return main logger
+     * @return journal file
      */
-    private MainLogger createMainLogger()
+    private File createJournalFile()
     {
-        if (this.logger == null)
-        {
-            final MainLogger orig = new MainLogger(this.createFilePath() + File.separator + "nukkit.log"); //$NON-NLS-1$
-            this.logger = spy(orig);
-            // inject spy into static instance
-            NukkitTestSession.injectPrivateStaticField(MainLogger.class, "logger", this.logger); //$NON-NLS-1$
-            
-            // mock methods
-            
-            doAnswer(new Answer<Void>() {
-                @Override
-                public Void answer(InvocationOnMock invocation) throws Throwable
-                {
-                    final String msg = invocation.getArgumentAt(0, String.class);
-                    synchronized (NukkitTestSession.this.logEvents)
-                    {
-                        NukkitTestSession.this.logEvents.notifyAll();
-                        NukkitTestSession.this.logEvents.add(new LogEvent(LogLevel.ALERT, msg));
-                    }
-                    if (NukkitTestSession.this.getServer().isRunning())
-                    {
-                        orig.alert(msg);
-                    }
-                    else
-                    {
-                        System.out.println(msg);
-                    }
-                    return null;
-                }
-            }).when(this.logger).alert(anyString());
-            
-            doAnswer(new Answer<Void>() {
-                @Override
-                public Void answer(InvocationOnMock invocation) throws Throwable
-                {
-                    final String msg = invocation.getArgumentAt(0, String.class);
-                    synchronized (NukkitTestSession.this.logEvents)
-                    {
-                        NukkitTestSession.this.logEvents.notifyAll();
-                        NukkitTestSession.this.logEvents.add(new LogEvent(LogLevel.CRITICAL, msg));
-                    }
-                    if (NukkitTestSession.this.getServer().isRunning())
-                    {
-                        orig.critical(msg);
-                    }
-                    else
-                    {
-                        System.out.println(msg);
-                    }
-                    return null;
-                }
-            }).when(this.logger).critical(anyString());
-            
-            doAnswer(new Answer<Void>() {
-                @Override
-                public Void answer(InvocationOnMock invocation) throws Throwable
-                {
-                    final String msg = invocation.getArgumentAt(0, String.class);
-                    synchronized (NukkitTestSession.this.logEvents)
-                    {
-                        NukkitTestSession.this.logEvents.notifyAll();
-                        NukkitTestSession.this.logEvents.add(new LogEvent(LogLevel.DEBUG, msg));
-                    }
-                    if (NukkitTestSession.this.getServer().isRunning())
-                    {
-                        orig.debug(msg);
-                    }
-                    else
-                    {
-                        System.out.println(msg);
-                    }
-                    return null;
-                }
-            }).when(this.logger).debug(anyString());
-            
-            doAnswer(new Answer<Void>() {
-                @Override
-                public Void answer(InvocationOnMock invocation) throws Throwable
-                {
-                    final String msg = invocation.getArgumentAt(0, String.class);
-                    synchronized (NukkitTestSession.this.logEvents)
-                    {
-                        NukkitTestSession.this.logEvents.notifyAll();
-                        NukkitTestSession.this.logEvents.add(new LogEvent(LogLevel.EMERGENCY, msg));
-                    }
-                    if (NukkitTestSession.this.getServer().isRunning())
-                    {
-                        orig.emergency(msg);
-                    }
-                    else
-                    {
-                        System.out.println(msg);
-                    }
-                    return null;
-                }
-            }).when(this.logger).emergency(anyString());
-            
-            doAnswer(new Answer<Void>() {
-                @Override
-                public Void answer(InvocationOnMock invocation) throws Throwable
-                {
-                    final String msg = invocation.getArgumentAt(0, String.class);
-                    synchronized (NukkitTestSession.this.logEvents)
-                    {
-                        NukkitTestSession.this.logEvents.notifyAll();
-                        NukkitTestSession.this.logEvents.add(new LogEvent(LogLevel.ERROR, msg));
-                    }
-                    if (NukkitTestSession.this.getServer().isRunning())
-                    {
-                        orig.error(msg);
-                    }
-                    else
-                    {
-                        System.out.println(msg);
-                    }
-                    return null;
-                }
-            }).when(this.logger).error(anyString());
-            
-            doAnswer(new Answer<Void>() {
-                @Override
-                public Void answer(InvocationOnMock invocation) throws Throwable
-                {
-                    final String msg = invocation.getArgumentAt(0, String.class);
-                    synchronized (NukkitTestSession.this.logEvents)
-                    {
-                        NukkitTestSession.this.logEvents.notifyAll();
-                        NukkitTestSession.this.logEvents.add(new LogEvent(LogLevel.INFO, msg));
-                    }
-                    if (NukkitTestSession.this.getServer().isRunning())
-                    {
-                        orig.info(msg);
-                    }
-                    else
-                    {
-                        System.out.println(msg);
-                    }
-                    return null;
-                }
-            }).when(this.logger).info(anyString());
-            
-            doAnswer(new Answer<Void>() {
-                @Override
-                public Void answer(InvocationOnMock invocation) throws Throwable
-                {
-                    final String msg = invocation.getArgumentAt(0, String.class);
-                    synchronized (NukkitTestSession.this.logEvents)
-                    {
-                        NukkitTestSession.this.logEvents.notifyAll();
-                        NukkitTestSession.this.logEvents.add(new LogEvent(LogLevel.NOTICE, msg));
-                    }
-                    if (NukkitTestSession.this.getServer().isRunning())
-                    {
-                        orig.notice(msg);
-                    }
-                    else
-                    {
-                        System.out.println(msg);
-                    }
-                    return null;
-                }
-            }).when(this.logger).notice(anyString());
-            
-            doAnswer(new Answer<Void>() {
-                @Override
-                public Void answer(InvocationOnMock invocation) throws Throwable
-                {
-                    final String msg = invocation.getArgumentAt(0, String.class);
-                    synchronized (NukkitTestSession.this.logEvents)
-                    {
-                        NukkitTestSession.this.logEvents.notifyAll();
-                        NukkitTestSession.this.logEvents.add(new LogEvent(LogLevel.WARNING, msg));
-                    }
-                    if (NukkitTestSession.this.getServer().isRunning())
-                    {
-                        orig.warning(msg);
-                    }
-                    else
-                    {
-                        System.out.println(msg);
-                    }
-                    return null;
-                }
-            }).when(this.logger).warning(anyString());
-        }
-        return this.logger;
+        return new File(this.createFilePath(), "log-journal.dat"); //$NON-NLS-1$
     }
     
     /**
@@ -628,7 +455,66 @@ public final class NukkitTestSession
     public NukkitTestSession stop()
     {
         assertTrue(this.isRunning(), "Server not started"); //$NON-NLS-1$
-        Server.getInstance().shutdown();
+        this.tickMode = TickMode.REALTIME;
+        this.recordPhase(SessionPhase.SHUTDOWN, System.nanoTime());
+        this.controller.shutdown();
+        return this;
+    }
+    
+    /**
+     * Resets a running server so that it can be reused by another test.
+     * 
+     * <p>
+     * Clears the log events and the pending console commands, disables all plugins, cancels all scheduler tasks and unloads and reloads all worlds without saving them.
+     * </p>
+     * 
+     * @param millis
+     *            milliseconds to wait for the main thread to perform the reset
+     * @return this test session instance
+     */
+    public NukkitTestSession reset(int millis)
+    {
+        assertTrue(this.isRunning(), "Server not started"); //$NON-NLS-1$
+        if (REPORTS)
+        {
+            REPORTED.add(this);
+        }
+        
+        this.tickMode = TickMode.REALTIME;
+        this.controller.clearConsole();
+        this.cancelCommands();
+        this.controller.reset(millis);
+        
+        this.clearLogEvents();
+        this.resetTickStats();
+        return this;
+    }
+    
+    /**
+     * Sets the isolation flag; isolated sessions load the nukkit server within their own class loader
+     * 
+     * @param isolated
+     * @return this test session instance
+     */
+    public NukkitTestSession setIsolated(boolean isolated)
+    {
+        assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
+        
+        this.isolated = isolated;
+        return this;
+    }
+    
+    /**
+     * Sets the fork flag; forked sessions run the nukkit server within a worker vm
+     * 
+     * @param forked
+     * @return this test session instance
+     */
+    public NukkitTestSession setForked(boolean forked)
+    {
+        assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
+        
+        this.forked = forked;
         return this;
     }
     
@@ -689,171 +575,678 @@ public final class NukkitTestSession
     }
     
     /**
-     * Sets the deleting on server finish flag
+     * Sets the server config to be written before startup; lets the server skip the language selection
      * 
-     * @param deletingOnFinish
-     *            the deletingOnVmFinish to set
+     * @param config
      * @return this test session instance
      */
-    public NukkitTestSession setDeletingOnFinish(boolean deletingOnFinish)
+    public NukkitTestSession setServerConfig(NukkitServerConfig config)
     {
         assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
         
-        this.deletingOnFinish = deletingOnFinish;
+        this.serverConfig = config;
         return this;
     }
     
     /**
-     * Sets the deleting on vm exit flag
+     * Returns the server config to be written before startup
      * 
-     * @param deletingOnVmExit
-     *            the deletingOnVmExit to set
+     * @return server config or {@code null} if the server is started without config
+     */
+    public NukkitServerConfig getServerConfig()
+    {
+        return this.serverConfig;
+    }
+    
+    /**
+     * Sets the template to be materialized into the server folder before startup
+     * 
+     * @param template
      * @return this test session instance
      */
-    public NukkitTestSession setDeletingOnVmExit(boolean deletingOnVmExit)
+    public NukkitTestSession setTemplate(NukkitServerTemplate template)
     {
         assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
         
-        this.deletingOnVmExit = deletingOnVmExit;
+        this.template = template;
         return this;
     }
     
     /**
-     * Returns the log events fetched from nukkit server till start or last call of {@link #clearLogEvents}
+     * Sets the log buffer; all log events present so far are discarded
      * 
-     * @return log events
+     * @param capacity
+     *            the number of log events kept in memory; rounded up to a power of two
+     * @param overflow
+     *            the policy for log events exceeding the capacity
+     * @return this test session instance
      */
-    public LogEvent[] getLogEvents()
+    public NukkitTestSession setLogBuffer(int capacity, LogOverflow overflow)
     {
-        synchronized (this.logEvents)
-        {
-            return this.logEvents.toArray(new LogEvent[0]);
-        }
+        assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
+        
+        this.logEvents.clear();
+        this.logEvents = new LogEventStore(capacity, overflow, this::createSpillFile, this.logEvents.getJournal());
+        return this;
     }
     
     /**
-     * Clears all log events
+     * Sets the log journal flag; all log events present so far are discarded.
+     * 
+     * <p>
+     * A journaled session appends each captured log event to a memory mapped file within the server folder. Log events no longer kept within the log
+     * buffer are read from the journal; use a small log buffer for long running sessions.
+     * </p>
+     * 
+     * @param journal
+     * @return this test session instance
      */
-    public void clearLogEvents()
+    public NukkitTestSession setLogJournal(boolean journal)
     {
-        synchronized (this.logEvents)
-        {
-            this.logEvents.clear();
-        }
+        assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
+        
+        this.logEvents.clear();
+        this.logEvents = new LogEventStore(this.logEvents.getCapacity(), this.logEvents.getOverflow(), this::createSpillFile,
+                journal ? new LogJournal(this::createJournalFile) : null);
+        return this;
     }
     
     /**
-     * Helper class for caught log events
+     * Sets the log forwarding flag; without forwarding the log messages are only captured by this session and neither written to the log file nor to
+     * the console
+     * 
+     * @param logForwarding
+     * @return this test session instance
      */
-    public final static class LogEvent
+    public NukkitTestSession setLogForwarding(boolean logForwarding)
     {
-        /** the log level */
-        private final LogLevel level;
-        
-        /** the message */
-        private final String   message;
-        
-        /**
-         * @param level
-         * @param msg
-         */
-        public LogEvent(LogLevel level, String msg)
-        {
-            this.level = level;
-            this.message = msg;
-        }
+        assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
         
-        /**
-         * @return the level
-         */
-        public LogLevel getLevel()
-        {
-            return this.level;
-        }
+        this.logForwarding = logForwarding;
+        return this;
+    }
+    
+    /**
+     * Sets the filter for captured log messages
+     * 
+     * @param filter
+     *            the filter or {@code null} to capture all messages
+     * @return this test session instance
+     */
+    public NukkitTestSession setCaptureFilter(LogCaptureFilter filter)
+    {
+        assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
         
-        /**
-         * @return the message
-         */
-        public String getMessage()
-        {
-            return this.message;
-        }
+        this.captureFilter = filter;
+        return this;
     }
     
     /**
-     * Waits for given log message to arrive within given amout of millis
+     * Returns the filter for captured log messages
      * 
-     * @param check
-     * @param millis
-     * @return {@code true} if the log message was present
+     * @return filter or {@code null} if all messages are captured
      */
-    public boolean waitForLog(LogEventCheck check, int millis)
+    public LogCaptureFilter getCaptureFilter()
     {
-        final long start = System.currentTimeMillis();
-        final long max = start + millis;
-        if (checkLog(check))
-            return true;
-        while (System.currentTimeMillis() < max)
-        {
-            long count = Math.min(max - System.currentTimeMillis(), 100);
-            synchronized (this.logEvents)
-            {
-                try
-                {
-                    this.logEvents.wait(count);
-                }
-                catch (InterruptedException ex)
-                {
-                    // silently ignore
-                }
-            }
-            if (checkLog(check))
-                return true;
-        }
-        return false;
+        return this.captureFilter;
     }
     
     /**
-     * Checks if given log message is present
+     * Sets the clock of the main loop; may be changed while the server is running.
      * 
-     * @param check
-     * @return {@code true} if the log message was present
+     * <p>
+     * In {@link TickMode#STEP} the main loop does not tick (and does not process console commands) until ticks are requested by {@link #tick(int)}.
+     * Stopping or resetting the server switches back to {@link TickMode#REALTIME}.
+     * </p>
+     * 
+     * @param mode
+     * @return this test session instance
      */
-    public boolean checkLog(LogEventCheck check)
+    public NukkitTestSession setTickMode(TickMode mode)
     {
-        LogEvent[] events;
-        synchronized (this.logEvents)
-        {
-            events = this.logEvents.toArray(new LogEvent[this.logEvents.size()]);
-        }
-        for (final LogEvent event : events)
+        this.tickMode = mode;
+        if (this.isRunning())
         {
-            if (check.check(event))
-                return true;
+            this.controller.setTickMode(mode);
         }
-        return false;
+        return this;
     }
     
     /**
-     * Returns the nukkit server
+     * Returns the clock of the main loop
      * 
-     * @return nukkit server
+     * @return tick mode
      */
-    public Server getServer()
+    public TickMode getTickMode()
     {
-        return Server.getInstance();
+        return this.tickMode;
     }
     
     /**
-     * Waits for entering the main loop; waits for finished startup
+     * Returns the statistics of the ticks since startup or since the last {@link #resetTickStats()}
      * 
-     * @param millis
-     *            milliseconds to wait
-     * @return this test session
+     * @return tick statistics
      */
-    public NukkitTestSession waitMainLoop(int millis)
+    public TickStats getTickStats()
     {
-        synchronized (this)
+        return this.ticks.snapshot();
+    }
+    
+    /**
+     * Removes the recorded ticks, e.g. to measure the next phase of a test
+     */
+    public void resetTickStats()
+    {
+        this.ticks.clear();
+        this.recentTicks.clear();
+    }
+    
+    /**
+     * Returns the phases of the last startup and shutdown
+     * 
+     * @return the {@link System#nanoTime()} at the end of each phase reached so far, in phase order
+     */
+    public Map<SessionPhase, Long> getPhases()
+    {
+        synchronized (this.phases)
+        {
+            return new EnumMap<>(this.phases);
+        }
+    }
+    
+    /**
+     * Returns a report of this session: the duration of the phases since {@link SessionPhase#START}, the tick statistics and the dropped log events
+     * 
+     * @return report; one {@code key=value} line per entry
+     */
+    public String getReport()
+    {
+        final StringBuilder builder = new StringBuilder();
+        final Map<SessionPhase, Long> reached = this.getPhases();
+        final Long start = reached.get(SessionPhase.START);
+        for (final Map.Entry<SessionPhase, Long> entry : reached.entrySet())
+        {
+            final double millis = start == null ? 0 : (entry.getValue().longValue() - start.longValue()) / 1000000d;
+            builder.append("phase.").append(entry.getKey().name()).append('=').append(String.format("%.2f ms", Double.valueOf(millis))).append('\n'); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        builder.append("ticks=").append(this.getTickStats()).append('\n'); //$NON-NLS-1$
+        builder.append("droppedLogEvents=").append(this.getDroppedLogEvents()).append('\n'); //$NON-NLS-1$
+        return builder.toString();
+    }
+    
+    /**
+     * Returns the reports of all sessions started or reset since the last invocation; invoked by {@link NukkitExtension} after each test
+     * 
+     * @return reports, one section per session
+     */
+    static String drainReports()
+    {
+        final StringBuilder builder = new StringBuilder();
+        int index = 0;
+        for (final NukkitTestSession session : REPORTED)
+        {
+            REPORTED.remove(session);
+            builder.append("[session ").append(++index).append("]\n").append(session.getReport()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * Records the end of a phase
+     * 
+     * @param phase
+     * @param nanoTime
+     */
+    void recordPhase(SessionPhase phase, long nanoTime)
+    {
+        this.phases.put(phase, Long.valueOf(nanoTime));
+    }
+    
+    /**
+     * Selects the ticks within a trailing time window
+     * 
+     * @param nowNanoTime
+     *            the end of the window
+     * @param windowMillis
+     *            the length of the window
+     * @return selected ticks
+     */
+    TickWindow.Selection selectTicks(long nowNanoTime, int windowMillis)
+    {
+        return this.recentTicks.select(nowNanoTime - TimeUnit.MILLISECONDS.toNanos(windowMillis));
+    }
+    
+    /**
+     * Runs exactly given number of ticks and waits for them; requires {@link TickMode#STEP}
+     * 
+     * @param ticks
+     *            the number of ticks
+     * @return this test session instance
+     */
+    public NukkitTestSession tick(int ticks)
+    {
+        assertTrue(this.isRunning(), "Server not started"); //$NON-NLS-1$
+        assertTrue(this.tickMode == TickMode.STEP, "Server not in step mode"); //$NON-NLS-1$
+        
+        this.controller.tick(ticks, DISPATCH_MILLIS + ticks * TICK_MILLIS);
+        return this;
+    }
+    
+    /**
+     * Sets the deleting on server finish flag
+     * 
+     * @param deletingOnFinish
+     *            the deletingOnVmFinish to set
+     * @return this test session instance
+     */
+    public NukkitTestSession setDeletingOnFinish(boolean deletingOnFinish)
+    {
+        assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
+        
+        this.deletingOnFinish = deletingOnFinish;
+        return this;
+    }
+    
+    /**
+     * Sets the deleting on vm exit flag
+     * 
+     * @param deletingOnVmExit
+     *            the deletingOnVmExit to set
+     * @return this test session instance
+     */
+    public NukkitTestSession setDeletingOnVmExit(boolean deletingOnVmExit)
+    {
+        assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
+        
+        this.deletingOnVmExit = deletingOnVmExit;
+        return this;
+    }
+    
+    /**
+     * Returns the log events fetched from nukkit server till start or last call of {@link #clearLogEvents}
+     * 
+     * @return log events
+     */
+    public LogEvent[] getLogEvents()
+    {
+        final List<LogEvent> events = this.logEvents.read(0);
+        return events.toArray(new LogEvent[events.size()]);
+    }
+    
+    /**
+     * Returns the log events of given sequence range; see {@link LogEvent#getSequence()}
+     * 
+     * @param fromSequence
+     *            first sequence number (inclusive)
+     * @param toSequence
+     *            last sequence number (exclusive)
+     * @return log events
+     */
+    public LogEvent[] getLogEvents(long fromSequence, long toSequence)
+    {
+        final List<LogEvent> events = this.logEvents.read(fromSequence, toSequence);
+        return events.toArray(new LogEvent[events.size()]);
+    }
+    
+    /**
+     * Returns the log events captured within given time range; see {@link LogEvent#getNanoTime()}
+     * 
+     * @param fromNanoTime
+     *            first capture time (inclusive)
+     * @param toNanoTime
+     *            last capture time (exclusive)
+     * @return log events
+     */
+    public LogEvent[] getLogEventsByTime(long fromNanoTime, long toNanoTime)
+    {
+        final List<LogEvent> events = this.logEvents.readTime(fromNanoTime, toNanoTime);
+        return events.toArray(new LogEvent[events.size()]);
+    }
+    
+    /**
+     * Clears all log events
+     */
+    public void clearLogEvents()
+    {
+        this.logEvents.clear();
+    }
+    
+    /**
+     * Returns the number of log events dropped because of log buffer overflow
+     * 
+     * @return number of dropped log events
+     */
+    public long getDroppedLogEvents()
+    {
+        return this.logEvents.getDropped();
+    }
+    
+    /**
+     * Creates a cursor positioned at the oldest present log event
+     * 
+     * @return log cursor
+     */
+    public LogCursor createLogCursor()
+    {
+        return new LogCursor(this.logEvents.getTail());
+    }
+    
+    /**
+     * Creates a cursor positioned behind the newest log event; the cursor only reads log events arriving later
+     * 
+     * @return log cursor
+     */
+    public LogCursor createLogCursorAtEnd()
+    {
+        return new LogCursor(this.logEvents.getHead());
+    }
+    
+    /**
+     * Returns the log events arrived since the last read of given cursor and advances the cursor
+     * 
+     * @param cursor
+     * @return log events
+     */
+    public LogEvent[] readLog(LogCursor cursor)
+    {
+        final List<LogEvent> events = this.logEvents.read(cursor.getPosition());
+        if (!events.isEmpty())
+        {
+            cursor.setPosition(events.get(events.size() - 1).getSequence() + 1);
+        }
+        return events.toArray(new LogEvent[events.size()]);
+    }
+    
+    /**
+     * Helper class for caught log events
+     */
+    public final static class LogEvent
+    {
+        /** the log level */
+        private final LogLevel level;
+        
+        /** the message */
+        private final String   message;
+        
+        /** the sequence number */
+        private final long     sequence;
+        
+        /** the nano time the message was logged */
+        private final long     nanoTime;
+        
+        /** the name of the logging thread */
+        private final String   threadName;
+        
+        /** the server tick */
+        private final int      tick;
+        
+        /**
+         * @param level
+         * @param msg
+         */
+        public LogEvent(LogLevel level, String msg)
+        {
+            this(level, msg, -1, System.nanoTime(), Thread.currentThread().getName(), -1);
+        }
+        
+        /**
+         * @param level
+         * @param msg
+         * @param sequence
+         * @param nanoTime
+         * @param threadName
+         * @param tick
+         */
+        public LogEvent(LogLevel level, String msg, long sequence, long nanoTime, String threadName, int tick)
+        {
+            this.level = level;
+            this.message = msg;
+            this.sequence = sequence;
+            this.nanoTime = nanoTime;
+            this.threadName = threadName;
+            this.tick = tick;
+        }
+        
+        /**
+         * @return the {@link System#nanoTime()} at the time the message was logged; comparable to {@link System#nanoTime()} of the test vm as long as
+         *         the server runs on the same host
+         */
+        public long getNanoTime()
+        {
+            return this.nanoTime;
+        }
+        
+        /**
+         * @return the name of the logging thread
+         */
+        public String getThreadName()
+        {
+            return this.threadName;
+        }
+        
+        /**
+         * @return the server tick at the time the message was logged; {@code -1} if unknown
+         */
+        public int getTick()
+        {
+            return this.tick;
+        }
+        
+        /**
+         * Returns the nano seconds between given event and this event
+         * 
+         * @param other
+         *            an earlier event
+         * @return nano seconds
+         */
+        public long nanosSince(LogEvent other)
+        {
+            return this.nanoTime - other.nanoTime;
+        }
+        
+        /**
+         * Returns the server ticks between given event and this event
+         * 
+         * @param other
+         *            an earlier event
+         * @return server ticks or {@code -1} if a tick is unknown
+         */
+        public int ticksSince(LogEvent other)
+        {
+            return this.tick < 0 || other.tick < 0 ? -1 : this.tick - other.tick;
+        }
+        
+        /**
+         * @return the sequence number within the session log; {@code -1} for events not taken from a session log
+         */
+        public long getSequence()
+        {
+            return this.sequence;
+        }
+        
+        /**
+         * @return the level
+         */
+        public LogLevel getLevel()
+        {
+            return this.level;
+        }
+        
+        /**
+         * @return the message
+         */
+        public String getMessage()
+        {
+            return this.message;
+        }
+    }
+    
+    /**
+     * Waits for given log message to arrive within given amout of millis
+     * 
+     * @param check
+     * @param millis
+     * @return {@code true} if the log message was present
+     */
+    public boolean waitForLog(LogEventCheck check, int millis)
+    {
+        return this.getLog(this.awaitLog(check), millis) != null;
+    }
+    
+    /**
+     * Waits for a new log event matching given check; log events present before invoking this method are ignored
+     * 
+     * @param check
+     * @param millis
+     * @return the matching log event or {@code null} if no such log event arrived within given time
+     */
+    public LogEvent waitForNewLog(LogEventCheck check, int millis)
+    {
+        return this.getLog(this.awaitNewLog(check), millis);
+    }
+    
+    /**
+     * Waits for a log event future
+     * 
+     * @param future
+     * @param millis
+     * @return the log event or {@code null} on timeout
+     */
+    private LogEvent getLog(CompletableFuture<LogEvent> future, int millis)
+    {
+        try
+        {
+            return future.get(millis, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException ex)
+        {
+            return null;
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IllegalStateException(ex.getCause());
+        }
+        finally
+        {
+            // unregisters the watcher
+            future.cancel(false);
+        }
+    }
+    
+    /**
+     * Returns a future completing with the first log event matching given check; either a present log event or a new one.
+     * 
+     * <p>
+     * The check is evaluated on the calling thread for the present log events and on the thread logging new events afterwards; it is never invoked
+     * concurrently and receives each log event once in sequence order. Cancel the future to stop watching.
+     * </p>
+     * 
+     * @param check
+     * @return future receiving the matching log event
+     */
+    public CompletableFuture<LogEvent> awaitLog(LogEventCheck check)
+    {
+        final LogWatcher watcher = this.watch(check, true);
+        watcher.replay(this.logEvents);
+        return watcher.getFuture();
+    }
+    
+    /**
+     * Returns a future completing with the first new log event matching given check; log events present before invoking this method are ignored.
+     * 
+     * <p>
+     * The check is evaluated on the thread logging new events. Cancel the future to stop watching.
+     * </p>
+     * 
+     * @param check
+     * @return future receiving the matching log event
+     */
+    public CompletableFuture<LogEvent> awaitNewLog(LogEventCheck check)
+    {
+        return this.watch(check, false).getFuture();
+    }
+    
+    /**
+     * Registers a new watcher
+     * 
+     * @param check
+     * @param replay
+     *            {@code true} if the caller replays the present events
+     * @return watcher
+     */
+    private LogWatcher watch(LogEventCheck check, boolean replay)
+    {
+        final LogWatcher watcher = new LogWatcher(check, replay);
+        watcher.getFuture().whenComplete((event, ex) -> this.watchers.remove(watcher));
+        // register before scanning so that no event is missed between scan and registration
+        this.watchers.add(watcher);
+        return watcher;
+    }
+    
+    /**
+     * Checks if given log message is present
+     * 
+     * @param check
+     * @return {@code true} if the log message was present
+     */
+    public boolean checkLog(LogEventCheck check)
+    {
+        return this.checkLog(check, new LogCursor(0));
+    }
+    
+    /**
+     * Checks if given log message is present; only checks the log events arrived since the last read of given cursor.
+     * 
+     * <p>
+     * The cursor is advanced behind the matching log event or behind the last checked log event.
+     * </p>
+     * 
+     * @param check
+     * @param cursor
+     * @return {@code true} if the log message was present
+     */
+    public boolean checkLog(LogEventCheck check, LogCursor cursor)
+    {
+        final boolean[] found = new boolean[1];
+        cursor.setPosition(this.logEvents.scan(cursor.getPosition(), (event) -> found[0] = check.check(event)));
+        return found[0];
+    }
+    
+    /**
+     * Returns the nukkit server
+     * 
+     * @return nukkit server
+     * @throws IllegalStateException
+     *             if this session is isolated or forked; the server class belongs to another class loader or vm
+     */
+    public Server getServer()
+    {
+        if (this.isolated)
+        {
+            throw new IllegalStateException("The server of an isolated session cannot be accessed from the test class loader"); //$NON-NLS-1$
+        }
+        if (this.forked)
+        {
+            throw new IllegalStateException("The server of a forked session runs within another vm"); //$NON-NLS-1$
+        }
+        return this.controller == null ? null : (Server) this.controller.getServer();
+    }
+    
+    /**
+     * Waits for entering the main loop; waits for finished startup
+     * 
+     * @param millis
+     *            milliseconds to wait
+     * @return this test session
+     */
+    public NukkitTestSession waitMainLoop(int millis)
+    {
+        synchronized (this)
         {
             if (!this.finishedStart)
             {
@@ -921,12 +1314,267 @@ public final class NukkitTestSession
     {
         assertTrue(this.isRunning(), "Server not started"); //$NON-NLS-1$
         
-        synchronized (this.injectedCommands)
+        this.controller.sendConsoleString(msg.get());
+        return this;
+    }
+    
+    /**
+     * Submits a console command and collects its output.
+     * 
+     * <p>
+     * The command is delimited by markers logged before and after its execution; the future completes as soon as the end marker arrives and receives
+     * the log events captured in between. Commands may be pipelined: submit many commands and await the futures afterwards. Log messages of other
+     * threads logged while the command executes are part of the output too.
+     * </p>
+     * 
+     * @param command
+     *            the console command
+     * @return future receiving the output of the command
+     */
+    public CompletableFuture<List<LogEvent>> submitCommand(String command)
+    {
+        assertTrue(this.isRunning(), "Server not started"); //$NON-NLS-1$
+        
+        final long id = this.nextCommand.incrementAndGet();
+        final SubmittedCommand submitted = new SubmittedCommand();
+        this.commands.put(Long.valueOf(id), submitted);
+        // a single send; each send is a round trip to forked servers
+        this.controller.sendConsoleString(ServerBridge.MARKER_COMMAND_NAME + ' ' + id + " begin\r\n" + command + "\r\n" //$NON-NLS-1$ //$NON-NLS-2$
+                + ServerBridge.MARKER_COMMAND_NAME + ' ' + id + " end"); //$NON-NLS-1$
+        return submitted.getFuture();
+    }
+    
+    /**
+     * Submits console commands and collects their output; see {@link #submitCommand(String)}
+     * 
+     * @param commands
+     *            the console commands
+     * @return futures receiving the output of each command
+     */
+    public List<CompletableFuture<List<LogEvent>>> submitCommands(List<String> commands)
+    {
+        final List<CompletableFuture<List<LogEvent>>> result = new ArrayList<>(commands.size());
+        for (final String command : commands)
+        {
+            result.add(this.submitCommand(command));
+        }
+        return result;
+    }
+    
+    /**
+     * Dispatches a command on the main thread; bypasses the console reader
+     * 
+     * @param sender
+     *            the command sender
+     * @param commandLine
+     *            the command line
+     * @return {@code false} for unknown commands
+     * @throws IllegalStateException
+     *             if this session is isolated or forked; use {@link #dispatchConsoleCommands(String...)}
+     */
+    public boolean dispatchCommand(CommandSender sender, String commandLine)
+    {
+        return this.dispatchCommands(sender, commandLine)[0];
+    }
+    
+    /**
+     * Dispatches commands within a single tick of the main thread; bypasses the console reader
+     * 
+     * @param sender
+     *            the command sender
+     * @param commandLines
+     *            the command lines
+     * @return the result of each command; {@code false} for unknown commands
+     * @throws IllegalStateException
+     *             if this session is isolated or forked; use {@link #dispatchConsoleCommands(String...)}
+     */
+    public boolean[] dispatchCommands(CommandSender sender, String... commandLines)
+    {
+        assertTrue(this.isRunning(), "Server not started"); //$NON-NLS-1$
+        
+        return LocalServerController.dispatchCommands(this.getServer(), sender, commandLines, DISPATCH_MILLIS);
+    }
+    
+    /**
+     * Dispatches commands as console within a single tick of the main thread; bypasses the console reader. Works for isolated and forked sessions too.
+     * 
+     * @param commandLines
+     *            the command lines
+     * @return the result of each command; {@code false} for unknown commands
+     */
+    public boolean[] dispatchConsoleCommands(String... commandLines)
+    {
+        assertTrue(this.isRunning(), "Server not started"); //$NON-NLS-1$
+        
+        return this.controller.dispatchCommands(commandLines, DISPATCH_MILLIS);
+    }
+    
+    /**
+     * Cancels all submitted commands waiting for their output
+     */
+    private void cancelCommands()
+    {
+        this.currentCommand = null;
+        for (final Long id : new ArrayList<>(this.commands.keySet()))
         {
-            this.injectedCommands.add(msg.get());
-            this.injectedCommands.notifyAll();
+            final SubmittedCommand command = this.commands.remove(id);
+            if (command != null)
+            {
+                command.getFuture().completeExceptionally(new CancellationException("Console was cleared or server stopped")); //$NON-NLS-1$
+            }
         }
-        return this;
+    }
+    
+    /**
+     * Handles a command marker
+     * 
+     * @param marker
+     *            the marker message without prefix
+     */
+    void onCommandMarker(String marker)
+    {
+        final int space = marker.indexOf(' ');
+        if (space < 0)
+        {
+            return;
+        }
+        final Long id;
+        try
+        {
+            id = Long.valueOf(marker.substring(0, space));
+        }
+        catch (NumberFormatException ex)
+        {
+            return;
+        }
+        if (marker.endsWith(" begin")) //$NON-NLS-1$
+        {
+            this.currentCommand = this.commands.get(id);
+        }
+        else
+        {
+            final SubmittedCommand command = this.commands.remove(id);
+            if (command != null)
+            {
+                if (this.currentCommand == command)
+                {
+                    this.currentCommand = null;
+                }
+                command.complete();
+            }
+        }
+    }
+    
+    /**
+     * Sends given string to console and measures the time till the response arrives
+     * 
+     * @param command
+     *            the console command
+     * @param response
+     *            the check for the response log event
+     * @param millis
+     *            milliseconds to wait for the response
+     * @return nano seconds from sending the command till logging the response or {@code -1} if the response did not arrive
+     */
+    public long measureCommandLatency(String command, LogEventCheck response, int millis)
+    {
+        assertTrue(this.isRunning(), "Server not started"); //$NON-NLS-1$
+        
+        final CompletableFuture<LogEvent> future = this.awaitNewLog(response);
+        final long sent = System.nanoTime();
+        this.controller.sendConsoleString(command);
+        final LogEvent event = this.getLog(future, millis);
+        return event == null ? -1 : event.getNanoTime() - sent;
+    }
+    
+    /**
+     * Bridge receiving the server callbacks
+     */
+    private final class Bridge implements ServerBridge
+    {
+        
+        /**
+         * Constructor
+         */
+        Bridge()
+        {
+            // empty
+        }
+        
+        @Override
+        public void log(LogLevel level, String message, long nanoTime, String threadName, int tick)
+        {
+            if (message != null && message.startsWith(ServerBridge.MARKER_LOG_PREFIX))
+            {
+                // never filtered and never captured
+                NukkitTestSession.this.onCommandMarker(message.substring(ServerBridge.MARKER_LOG_PREFIX.length()));
+                return;
+            }
+            final LogCaptureFilter filter = NukkitTestSession.this.activeFilter;
+            final String msg = filter == null ? message : filter.filter(level, message);
+            if (msg == null)
+            {
+                return;
+            }
+            final LogEvent event = NukkitTestSession.this.logEvents.append(level, msg, nanoTime, threadName, tick);
+            final SubmittedCommand command = NukkitTestSession.this.currentCommand;
+            if (command != null)
+            {
+                command.add(event);
+            }
+            for (final LogWatcher watcher : NukkitTestSession.this.watchers)
+            {
+                watcher.offer(event);
+            }
+        }
+        
+        @Override
+        public void filtered(long droppedByLevel, long droppedByPrefix, long truncated)
+        {
+            final LogCaptureFilter filter = NukkitTestSession.this.captureFilter;
+            if (filter != null)
+            {
+                filter.addCounters(droppedByLevel, droppedByPrefix, truncated);
+            }
+        }
+        
+        @Override
+        public void ticked(int tick, long nanoTime, long durationNanos)
+        {
+            NukkitTestSession.this.ticks.record(nanoTime, durationNanos);
+            NukkitTestSession.this.recentTicks.record(tick, nanoTime, durationNanos);
+        }
+        
+        @Override
+        public void phase(String phase, long nanoTime)
+        {
+            NukkitTestSession.this.recordPhase(SessionPhase.valueOf(phase), nanoTime);
+        }
+        
+        @Override
+        public void started()
+        {
+            NukkitTestSession.this.recordPhase(SessionPhase.MAIN_LOOP, System.nanoTime());
+            synchronized (NukkitTestSession.this)
+            {
+                NukkitTestSession.this.finishedStart = true;
+                NukkitTestSession.this.notifyAll();
+            }
+        }
+        
+        @Override
+        public void stopped()
+        {
+            NukkitTestSession.this.recordPhase(SessionPhase.STOPPED, System.nanoTime());
+            NukkitTestSession.this.cancelCommands();
+            NukkitTestSession.this.logEvents.close();
+            synchronized (NukkitTestSession.this)
+            {
+                NukkitTestSession.this.finishedStop = true;
+                NukkitTestSession.this.notifyAll();
+            }
+        }
+        
     }
     
 }
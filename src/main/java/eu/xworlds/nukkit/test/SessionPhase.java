@@ -0,0 +1,52 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+/**
+ * The phases of a nukkit test session; see {@link NukkitTestSession#getPhases()}.
+ * 
+ * @author mepeisen
+ */
+public enum SessionPhase
+{
+    
+    /** the session starts the server */
+    START,
+    
+    /** the server folders and config were created */
+    FOLDERS,
+    
+    /** the main logger was created */
+    LOGGER,
+    
+    /** the server thread was started */
+    THREAD,
+    
+    /** the server logged its first loading message */
+    LOADING,
+    
+    /** the first heartbeat of the main loop arrived */
+    MAIN_LOOP,
+    
+    /** the session requested the shutdown */
+    SHUTDOWN,
+    
+    /** the server was shut down */
+    STOPPED
+    
+}
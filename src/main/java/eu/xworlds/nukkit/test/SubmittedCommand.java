@@ -0,0 +1,68 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * A console command submitted by {@link NukkitTestSession#submitCommand(String)} collecting its output.
+ * 
+ * @author mepeisen
+ */
+final class SubmittedCommand
+{
+    
+    /** the future receiving the output */
+    private final CompletableFuture<List<LogEvent>> future = new CompletableFuture<>();
+    
+    /** the output; synchronized */
+    private final List<LogEvent>                    output = new ArrayList<>();
+    
+    /**
+     * Returns the future receiving the output
+     * 
+     * @return future
+     */
+    CompletableFuture<List<LogEvent>> getFuture()
+    {
+        return this.future;
+    }
+    
+    /**
+     * Adds a log event to the output
+     * 
+     * @param event
+     */
+    synchronized void add(LogEvent event)
+    {
+        this.output.add(event);
+    }
+    
+    /**
+     * Completes the command
+     */
+    synchronized void complete()
+    {
+        this.future.complete(new ArrayList<>(this.output));
+    }
+    
+}
@@ -0,0 +1,181 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of tick durations with a relative precision of one percent.
+ * 
+ * <p>
+ * The durations are counted within log linear buckets: each power of two is divided into {@value #SUB_COUNT} linear sub buckets. Recording is constant
+ * time and does not allocate, so the histogram keeps every tick of long running sessions.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+final class TickHistogram
+{
+    
+    /** the duration of a tick at 20 ticks per second */
+    static final long        TICK_NANOS = 50000000L;
+    
+    /** the number of bits for the sub buckets */
+    private static final int SUB_BITS   = 7;
+    
+    /** the number of sub buckets per power of two */
+    private static final int SUB_COUNT  = 1 << SUB_BITS;
+    
+    /** the counts per bucket; guarded by this */
+    private final long[]     counts     = new long[(64 - SUB_BITS) * SUB_COUNT];
+    
+    /** the number of recorded ticks; guarded by this */
+    private long             count;
+    
+    /** the sum of all recorded durations; guarded by this */
+    private long             total;
+    
+    /** the longest recorded duration; guarded by this */
+    private long             max;
+    
+    /** the number of ticks exceeding {@link #TICK_NANOS}; guarded by this */
+    private long             slow;
+    
+    /** the nano time the first recorded tick began; guarded by this */
+    private long             firstStart;
+    
+    /** the nano time the last recorded tick began; guarded by this */
+    private long             lastStart;
+    
+    /**
+     * Records a tick
+     * 
+     * @param nanoTime
+     *            the nano time the tick began
+     * @param nanos
+     *            the tick duration
+     */
+    synchronized void record(long nanoTime, long nanos)
+    {
+        if (this.count == 0)
+        {
+            this.firstStart = nanoTime;
+        }
+        this.lastStart = nanoTime;
+        final long value = Math.max(0, nanos);
+        this.counts[indexOf(value)]++;
+        this.count++;
+        this.total += value;
+        if (value > this.max)
+        {
+            this.max = value;
+        }
+        if (value > TICK_NANOS)
+        {
+            this.slow++;
+        }
+    }
+    
+    /**
+     * Removes all recorded ticks
+     */
+    synchronized void clear()
+    {
+        Arrays.fill(this.counts, 0);
+        this.count = 0;
+        this.total = 0;
+        this.max = 0;
+        this.slow = 0;
+        this.firstStart = 0;
+        this.lastStart = 0;
+    }
+    
+    /**
+     * Returns the statistics of the recorded ticks
+     * 
+     * @return tick statistics
+     */
+    synchronized TickStats snapshot()
+    {
+        return new TickStats(this.count, this.total, this.percentile(0.5), this.percentile(0.99), this.percentile(0.999), this.max, this.slow,
+                this.lastStart - this.firstStart);
+    }
+    
+    /**
+     * Returns the duration given fraction of the ticks do not exceed
+     * 
+     * @param fraction
+     *            the fraction between 0 and 1
+     * @return duration in nano seconds
+     */
+    private long percentile(double fraction)
+    {
+        if (this.count == 0)
+        {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(fraction * this.count));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++)
+        {
+            seen += this.counts[i];
+            if (seen >= target)
+            {
+                return Math.min(highestEquivalent(i), this.max);
+            }
+        }
+        return this.max;
+    }
+    
+    /**
+     * Returns the bucket of given value
+     * 
+     * @param value
+     *            non negative value
+     * @return bucket index
+     */
+    static int indexOf(long value)
+    {
+        final int exp = 63 - Long.numberOfLeadingZeros(value);
+        if (exp < SUB_BITS)
+        {
+            return (int) value;
+        }
+        final int shift = exp - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+    
+    /**
+     * Returns the highest value counted within given bucket
+     * 
+     * @param index
+     *            bucket index
+     * @return highest value
+     */
+    static long highestEquivalent(int index)
+    {
+        final int group = index >>> SUB_BITS;
+        final long offset = index & (SUB_COUNT - 1);
+        if (group == 0)
+        {
+            return offset;
+        }
+        return ((SUB_COUNT + offset + 1) << (group - 1)) - 1;
+    }
+    
+}
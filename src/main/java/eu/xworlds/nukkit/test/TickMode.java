@@ -0,0 +1,37 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+/**
+ * The clock driving the main loop of a nukkit test server.
+ * 
+ * @author mepeisen
+ */
+public enum TickMode
+{
+    
+    /** nukkit runs 20 ticks per second */
+    REALTIME,
+    
+    /** the main loop only ticks on demand, see {@link NukkitTestSession#tick(int)} */
+    STEP,
+    
+    /** the main loop ticks as fast as possible; no sleep between two ticks */
+    FAST_FORWARD
+    
+}
@@ -0,0 +1,173 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+/**
+ * Statistics of the tick durations of a nukkit test server, see {@link NukkitTestSession#getTickStats()}.
+ * 
+ * <p>
+ * A tick duration is the processing time of a tick in every {@link TickMode}; neither the sleep of the main loop till the next tick nor the time a
+ * stepping main loop waits for requested ticks is counted. Ticks longer than 50 milliseconds delay the next tick and indicate lag. The average ticks per
+ * second are measured between the begin times of the ticks instead, so they include the sleep and reflect the actual clock of the main loop.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class TickStats
+{
+    
+    /** nano seconds per millisecond */
+    private static final double NANOS_PER_MILLI = 1000000d;
+    
+    /** the number of ticks */
+    private final long          count;
+    
+    /** the sum of all tick durations */
+    private final long          total;
+    
+    /** the median tick duration */
+    private final long          p50;
+    
+    /** the 99th percentile */
+    private final long          p99;
+    
+    /** the 99.9th percentile */
+    private final long          p999;
+    
+    /** the longest tick duration */
+    private final long          max;
+    
+    /** the number of ticks longer than 50 milliseconds */
+    private final long          slow;
+    
+    /** the nano seconds between the begin of the first and the last tick */
+    private final long          span;
+    
+    /**
+     * Constructor
+     * 
+     * @param count
+     * @param total
+     * @param p50
+     * @param p99
+     * @param p999
+     * @param max
+     * @param slow
+     * @param span
+     */
+    TickStats(long count, long total, long p50, long p99, long p999, long max, long slow, long span)
+    {
+        this.count = count;
+        this.total = total;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+        this.slow = slow;
+        this.span = span;
+    }
+    
+    /**
+     * Returns the number of recorded ticks
+     * 
+     * @return tick count
+     */
+    public long getCount()
+    {
+        return this.count;
+    }
+    
+    /**
+     * Returns the mean tick duration
+     * 
+     * @return milliseconds; {@code 0} if no tick was recorded
+     */
+    public double getMeanMillis()
+    {
+        return this.count == 0 ? 0 : this.total / NANOS_PER_MILLI / this.count;
+    }
+    
+    /**
+     * Returns the median tick duration
+     * 
+     * @return milliseconds
+     */
+    public double getP50Millis()
+    {
+        return this.p50 / NANOS_PER_MILLI;
+    }
+    
+    /**
+     * Returns the duration 99 percent of the ticks do not exceed
+     * 
+     * @return milliseconds
+     */
+    public double getP99Millis()
+    {
+        return this.p99 / NANOS_PER_MILLI;
+    }
+    
+    /**
+     * Returns the duration 99.9 percent of the ticks do not exceed
+     * 
+     * @return milliseconds
+     */
+    public double getP999Millis()
+    {
+        return this.p999 / NANOS_PER_MILLI;
+    }
+    
+    /**
+     * Returns the longest tick duration
+     * 
+     * @return milliseconds
+     */
+    public double getMaxMillis()
+    {
+        return this.max / NANOS_PER_MILLI;
+    }
+    
+    /**
+     * Returns the number of ticks longer than 50 milliseconds
+     * 
+     * @return slow tick count
+     */
+    public long getSlowTicks()
+    {
+        return this.slow;
+    }
+    
+    /**
+     * Returns the average ticks per second measured between the begin of the first and the last tick
+     * 
+     * @return ticks per second; {@code 0} if less than two ticks were recorded
+     */
+    public double getAverageTps()
+    {
+        return this.count < 2 || this.span <= 0 ? 0 : (this.count - 1) * 1000d * NANOS_PER_MILLI / this.span;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return String.format("%d ticks, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms, %d over 50 ms", //$NON-NLS-1$
+                Long.valueOf(this.count), Double.valueOf(this.getMeanMillis()), Double.valueOf(this.getP50Millis()), Double.valueOf(this.getP99Millis()),
+                Double.valueOf(this.getP999Millis()), Double.valueOf(this.getMaxMillis()), Long.valueOf(this.slow));
+    }
+    
+}
@@ -0,0 +1,217 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import java.util.Arrays;
+
+/**
+ * The most recent ticks of a nukkit test server with their timestamps; used to evaluate the tick performance within a trailing time window.
+ * 
+ * @author mepeisen
+ */
+final class TickWindow
+{
+    
+    /** the number of ticks kept; about one hour at 20 ticks per second */
+    static final int     DEFAULT_CAPACITY = 1 << 16;
+    
+    /** the number of ticks reported by failing assertions */
+    static final int     WORST_TICKS      = 5;
+    
+    /** the server ticks; guarded by this */
+    private final int[]  ticks;
+    
+    /** the nano times the ticks began; guarded by this */
+    private final long[] starts;
+    
+    /** the tick durations; guarded by this */
+    private final long[] durations;
+    
+    /** the number of recorded ticks; guarded by this */
+    private long         written;
+    
+    /**
+     * Constructor
+     * 
+     * @param capacity
+     *            the number of ticks kept
+     */
+    TickWindow(int capacity)
+    {
+        this.ticks = new int[capacity];
+        this.starts = new long[capacity];
+        this.durations = new long[capacity];
+    }
+    
+    /**
+     * Records a tick; overwrites the oldest tick if the window is full
+     * 
+     * @param tick
+     * @param nanoTime
+     * @param durationNanos
+     */
+    synchronized void record(int tick, long nanoTime, long durationNanos)
+    {
+        final int slot = (int) (this.written % this.ticks.length);
+        this.ticks[slot] = tick;
+        this.starts[slot] = nanoTime;
+        this.durations[slot] = durationNanos;
+        this.written++;
+    }
+    
+    /**
+     * Removes all recorded ticks
+     */
+    synchronized void clear()
+    {
+        this.written = 0;
+    }
+    
+    /**
+     * Selects the ticks that began at or after given time
+     * 
+     * @param fromNanoTime
+     * @return selected ticks in order
+     */
+    synchronized Selection select(long fromNanoTime)
+    {
+        final long oldest = Math.max(0, this.written - this.ticks.length);
+        long first = this.written;
+        while (first > oldest && this.starts[(int) ((first - 1) % this.ticks.length)] >= fromNanoTime)
+        {
+            first--;
+        }
+        final int size = (int) (this.written - first);
+        final Selection result = new Selection(size);
+        for (int i = 0; i < size; i++)
+        {
+            final int slot = (int) ((first + i) % this.ticks.length);
+            result.ticks[i] = this.ticks[slot];
+            result.starts[i] = this.starts[slot];
+            result.durations[i] = this.durations[slot];
+        }
+        return result;
+    }
+    
+    /**
+     * Ticks selected from a tick window
+     */
+    static final class Selection
+    {
+        
+        /** nano seconds per millisecond */
+        private static final double NANOS_PER_MILLI = 1000000d;
+        
+        /** the server ticks */
+        final int[]                 ticks;
+        
+        /** the nano times the ticks began */
+        final long[]                starts;
+        
+        /** the tick durations */
+        final long[]                durations;
+        
+        /**
+         * Constructor
+         * 
+         * @param size
+         */
+        Selection(int size)
+        {
+            this.ticks = new int[size];
+            this.starts = new long[size];
+            this.durations = new long[size];
+        }
+        
+        /**
+         * Returns the number of selected ticks
+         * 
+         * @return tick count
+         */
+        int size()
+        {
+            return this.ticks.length;
+        }
+        
+        /**
+         * Returns the duration given fraction of the selected ticks do not exceed
+         * 
+         * @param fraction
+         *            the fraction between 0 and 1
+         * @return milliseconds; {@code 0} if no tick was selected
+         */
+        double percentileMillis(double fraction)
+        {
+            if (this.durations.length == 0)
+            {
+                return 0;
+            }
+            final long[] sorted = this.durations.clone();
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / NANOS_PER_MILLI;
+        }
+        
+        /**
+         * Returns the average ticks per second measured between the begin of the first and the last selected tick; the tick durations are processing
+         * times without the sleep of the main loop, so they are not used
+         * 
+         * @return ticks per second; {@code 0} if less than two ticks were selected
+         */
+        double averageTps()
+        {
+            final int size = this.starts.length;
+            if (size < 2)
+            {
+                return 0;
+            }
+            final long span = this.starts[size - 1] - this.starts[0];
+            return span <= 0 ? 0 : (size - 1) * 1000d * NANOS_PER_MILLI / span;
+        }
+        
+        /**
+         * Describes the longest ticks
+         * 
+         * @param count
+         *            the maximum number of ticks to describe
+         * @param nowNanoTime
+         *            the reference for the timestamps
+         * @return description
+         */
+        String describeWorst(int count, long nowNanoTime)
+        {
+            final Integer[] order = new Integer[this.durations.length];
+            for (int i = 0; i < order.length; i++)
+            {
+                order[i] = Integer.valueOf(i);
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(this.durations[b.intValue()], this.durations[a.intValue()]));
+            final StringBuilder builder = new StringBuilder("worst ticks:"); //$NON-NLS-1$
+            for (int i = 0; i < Math.min(count, order.length); i++)
+            {
+                final int index = order[i].intValue();
+                builder.append(String.format(" tick %d (%.2f ms, %.0f ms ago)", //$NON-NLS-1$
+                        Integer.valueOf(this.ticks[index]), Double.valueOf(this.durations[index] / NANOS_PER_MILLI),
+                        Double.valueOf((nowNanoTime - this.starts[index]) / NANOS_PER_MILLI)));
+            }
+            return builder.toString();
+        }
+        
+    }
+    
+}
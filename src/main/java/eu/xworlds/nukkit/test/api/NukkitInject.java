@@ -32,6 +32,11 @@ import java.lang.annotation.Target;
 public @interface NukkitInject
 {
     
-    // marker
+    /**
+     * {@code true} to inject a running {@code NukkitTestSession} taken from the session pool; the session is released to the pool after the test.
+     * 
+     * @return {@code true} for pooled sessions
+     */
+    boolean pooled() default false;
     
 }
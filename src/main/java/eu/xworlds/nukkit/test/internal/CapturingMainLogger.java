@@ -0,0 +1,147 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal;
+
+import cn.nukkit.Server;
+import cn.nukkit.utils.LogLevel;
+import cn.nukkit.utils.MainLogger;
+
+/**
+ * Main logger capturing each message into the session bridge.
+ * 
+ * <p>
+ * All log levels share a single capture path recording level, message, {@link System#nanoTime()}, the logging thread and the server tick. Forwarding to the log file
+ * and console of the real main logger is optional.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+final class CapturingMainLogger extends MainLogger
+{
+    
+    /** the controller owning the server */
+    private final LocalServerController controller;
+    
+    /** {@code true} to forward messages to the real main logger */
+    private final boolean               forwarding;
+    
+    /**
+     * Constructor
+     * 
+     * @param logFile
+     *            the log file
+     * @param controller
+     *            the controller owning the server
+     * @param forwarding
+     *            {@code true} to forward messages to the real main logger
+     */
+    CapturingMainLogger(String logFile, LocalServerController controller, boolean forwarding)
+    {
+        super(logFile);
+        this.controller = controller;
+        this.forwarding = forwarding;
+    }
+    
+    /**
+     * Captures a message
+     * 
+     * @param level
+     * @param message
+     * @return {@code true} if the message has to be forwarded to the real main logger
+     */
+    private boolean capture(LogLevel level, String message)
+    {
+        final Server server = Server.getInstance();
+        this.controller.bridge.log(level, message, System.nanoTime(), Thread.currentThread().getName(), server == null ? -1 : server.getTick());
+        // the real main logger queues the messages logged before the server is running
+        return this.forwarding;
+    }
+    
+    @Override
+    public void emergency(String message)
+    {
+        if (this.capture(LogLevel.EMERGENCY, message))
+        {
+            super.emergency(message);
+        }
+    }
+    
+    @Override
+    public void alert(String message)
+    {
+        if (this.capture(LogLevel.ALERT, message))
+        {
+            super.alert(message);
+        }
+    }
+    
+    @Override
+    public void critical(String message)
+    {
+        if (this.capture(LogLevel.CRITICAL, message))
+        {
+            super.critical(message);
+        }
+    }
+    
+    @Override
+    public void error(String message)
+    {
+        if (this.capture(LogLevel.ERROR, message))
+        {
+            super.error(message);
+        }
+    }
+    
+    @Override
+    public void warning(String message)
+    {
+        if (this.capture(LogLevel.WARNING, message))
+        {
+            super.warning(message);
+        }
+    }
+    
+    @Override
+    public void notice(String message)
+    {
+        if (this.capture(LogLevel.NOTICE, message))
+        {
+            super.notice(message);
+        }
+    }
+    
+    @Override
+    public void info(String message)
+    {
+        if (this.capture(LogLevel.INFO, message))
+        {
+            super.info(message);
+        }
+    }
+    
+    @Override
+    public void debug(String message)
+    {
+        if (this.capture(LogLevel.DEBUG, message))
+        {
+            super.debug(message);
+        }
+    }
+    
+}
@@ -0,0 +1,161 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Console input of a nukkit server fed by the test session.
+ * 
+ * <p>
+ * Commands are encoded once on {@link #send(String)} and queued within a lock-free queue. The reading console thread copies them in bulk and parks
+ * while the queue is empty; sending a command unparks it immediately. The stream ends on {@link #close()} or if the reading thread is interrupted.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+final class ConsolePipe extends InputStream
+{
+    
+    /** the line separator appended to each command */
+    private static final byte[]                 CRLF    = { '\r', '\n' };
+    
+    /** the queued commands */
+    private final ConcurrentLinkedQueue<byte[]> queue   = new ConcurrentLinkedQueue<>();
+    
+    /** the command being read; reading thread only */
+    private byte[]                              current = CRLF;
+    
+    /** the read position within the current command; reading thread only */
+    private int                                 pos     = CRLF.length;
+    
+    /** {@code true} if the line separator of the current command is pending; reading thread only */
+    private boolean                             lineEnd;
+    
+    /** the reading thread */
+    private volatile Thread                     reader;
+    
+    /** {@code true} if the pipe was closed */
+    private volatile boolean                    closed;
+    
+    /**
+     * Queues a command
+     * 
+     * @param command
+     */
+    void send(String command)
+    {
+        this.queue.add(command.getBytes(StandardCharsets.UTF_8));
+        LockSupport.unpark(this.reader);
+    }
+    
+    /**
+     * Removes all queued commands
+     */
+    void clear()
+    {
+        this.queue.clear();
+    }
+    
+    @Override
+    public int read()
+    {
+        if (!this.fill())
+        {
+            return -1;
+        }
+        return this.current[this.pos++] & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len)
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!this.fill())
+        {
+            return -1;
+        }
+        final int count = Math.min(len, this.current.length - this.pos);
+        System.arraycopy(this.current, this.pos, b, off, count);
+        this.pos += count;
+        return count;
+    }
+    
+    @Override
+    public int available()
+    {
+        return this.current.length - this.pos;
+    }
+    
+    /**
+     * Ensures there are bytes to read; blocks till a command arrives
+     * 
+     * @return {@code false} if the stream ended
+     */
+    private boolean fill()
+    {
+        while (this.pos >= this.current.length)
+        {
+            if (this.lineEnd)
+            {
+                this.lineEnd = false;
+                this.current = CRLF;
+                this.pos = 0;
+                break;
+            }
+            final byte[] next = this.queue.poll();
+            if (next != null)
+            {
+                this.current = next;
+                this.pos = 0;
+                this.lineEnd = true;
+                continue;
+            }
+            if (this.closed)
+            {
+                return false;
+            }
+            // publish before checking the queue again; send unparks after queueing
+            this.reader = Thread.currentThread();
+            if (this.queue.isEmpty() && !this.closed)
+            {
+                LockSupport.park(this);
+            }
+            if (Thread.interrupted())
+            {
+                this.closed = true;
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public void close()
+    {
+        this.closed = true;
+        LockSupport.unpark(this.reader);
+    }
+    
+}
@@ -0,0 +1,155 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.TickMode;
+import eu.xworlds.nukkit.test.sample.PowermockExtension;
+
+/**
+ * Controls a nukkit server living in its own class loader.
+ * 
+ * <p>
+ * Each isolated controller creates a new mock class loader and loads a {@link LocalServerController} from it. Nukkit classes (including the static server
+ * and main logger instances) are loaded once per controller, so multiple servers can run concurrently within one vm. Only the controller interfaces,
+ * {@link LogLevel} and {@link TickMode} are shared with the test class loader (see {@link #SHARED_CLASSES}).
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class IsolatedServerController implements ServerController
+{
+    
+    /** the classes and packages that are loaded by the parent class loader; must be ignored by all mock class loaders */
+    public static final String[]   SHARED_CLASSES     = {
+        ServerController.class.getName(),
+        ServerBridge.class.getName(),
+        LogLevel.class.getName(),
+        TickMode.class.getName(),
+        "eu.xworlds.nukkit.test.internal.fork.*" //$NON-NLS-1$
+    };
+    
+    /** the classes to prepare within the isolated class loader; the server classes only need the {@link ServerHooksTransformer} */
+    private static final String[]  CLASSES_TO_PREPARE = {};
+    
+    /** the isolated class loader */
+    private final ClassLoader      loader;
+    
+    /** the controller within the isolated class loader */
+    private final ServerController delegate;
+    
+    /**
+     * Constructor
+     */
+    public IsolatedServerController()
+    {
+        final String[] ignore = new String[SHARED_CLASSES.length + 1];
+        System.arraycopy(SHARED_CLASSES, 0, ignore, 0, SHARED_CLASSES.length);
+        ignore[SHARED_CLASSES.length] = "org.mockito.*"; //$NON-NLS-1$
+        this.loader = PowermockExtension.createIsolatedClassLoader(CLASSES_TO_PREPARE, ignore, new ServerHooksTransformer());
+        try
+        {
+            this.delegate = (ServerController) this.loader.loadClass(LocalServerController.class.getName()).newInstance();
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Returns the isolated class loader
+     * 
+     * @return class loader
+     */
+    public ClassLoader getClassLoader()
+    {
+        return this.loader;
+    }
+    
+    @Override
+    public void start(ServerBridge bridge, String filePath, String dataPath, String pluginPath, boolean forwardLog)
+    {
+        final Thread thread = Thread.currentThread();
+        final ClassLoader orig = thread.getContextClassLoader();
+        thread.setContextClassLoader(this.loader);
+        try
+        {
+            this.delegate.start(bridge, filePath, dataPath, pluginPath, forwardLog);
+        }
+        finally
+        {
+            thread.setContextClassLoader(orig);
+        }
+    }
+    
+    @Override
+    public boolean isRunning()
+    {
+        return this.delegate.isRunning();
+    }
+    
+    @Override
+    public Object getServer()
+    {
+        return this.delegate.getServer();
+    }
+    
+    @Override
+    public void shutdown()
+    {
+        this.delegate.shutdown();
+    }
+    
+    @Override
+    public void sendConsoleString(String command)
+    {
+        this.delegate.sendConsoleString(command);
+    }
+    
+    @Override
+    public boolean[] dispatchCommands(String[] commandLines, int millis)
+    {
+        return this.delegate.dispatchCommands(commandLines, millis);
+    }
+    
+    @Override
+    public void setTickMode(TickMode mode)
+    {
+        this.delegate.setTickMode(mode);
+    }
+    
+    @Override
+    public void tick(int ticks, int millis)
+    {
+        this.delegate.tick(ticks, millis);
+    }
+    
+    @Override
+    public void clearConsole()
+    {
+        this.delegate.clearConsole();
+    }
+    
+    @Override
+    public void reset(int millis)
+    {
+        this.delegate.reset(millis);
+    }
+    
+}
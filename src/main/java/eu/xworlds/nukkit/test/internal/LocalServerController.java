@@ -0,0 +1,317 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal;
+
+import static org.junit.gen5.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import cn.nukkit.Server;
+import cn.nukkit.command.CommandSender;
+import cn.nukkit.level.Level;
+import cn.nukkit.utils.MainLogger;
+import eu.xworlds.nukkit.test.SessionPhase;
+import eu.xworlds.nukkit.test.TickMode;
+import jline.console.ConsoleReader;
+
+/**
+ * Controls a nukkit server living in the class loader of this class.
+ * 
+ * <p>
+ * Nukkit holds the server and the main logger in static fields. Only one server per class loader can be running.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class LocalServerController implements ServerController
+{
+    
+    /** the thread of the nukkit server */
+    private Thread           serverThread;
+    
+    /** the session bridge */
+    ServerBridge             bridge;
+    
+    /** the console input */
+    final ConsolePipe        console = new ConsolePipe();
+    
+    /** the scheduler controlling the main loop clock */
+    TestServerScheduler      scheduler;
+    
+    /** the tick mode to be applied on startup */
+    TickMode                 tickMode = TickMode.REALTIME;
+    
+    /** the main logger */
+    MainLogger               logger;
+    
+    /**
+     * Constructor
+     */
+    public LocalServerController()
+    {
+        // empty
+    }
+    
+    @Override
+    public void start(ServerBridge sessionBridge, String filePath, String dataPath, String pluginPath, boolean forwardLog)
+    {
+        assertFalse(this.isRunning(), "Server already started"); //$NON-NLS-1$
+        
+        this.bridge = sessionBridge;
+        this.createMainLogger(filePath, forwardLog);
+        this.bridge.phase(SessionPhase.LOGGER.name(), System.nanoTime());
+        this.serverThread = new Thread(new Runnable() {
+            
+            @SuppressWarnings("unused")
+            @Override
+            public void run()
+            {
+                // mock console reader
+                try
+                {
+                    final ConsoleReader reader = new ConsoleReader(LocalServerController.this.console, System.out);
+                    
+                    final TestServerScheduler scheduler = new TestServerScheduler(LocalServerController.this);
+                    scheduler.setTickMode(LocalServerController.this.tickMode);
+                    LocalServerController.this.scheduler = scheduler;
+                    
+                    ServerHooks.setConsoleReader(() -> reader);
+                    ServerHooks.setScheduler(() -> scheduler);
+                    ServerHooks.setTickListener(scheduler);
+                }
+                catch (Exception ex)
+                {
+                    ex.printStackTrace();
+                    // should never happen
+                }
+                
+                new Server(LocalServerController.this.logger, filePath, dataPath, pluginPath);
+                LocalServerController.this.console.close();
+                LocalServerController.this.bridge.stopped();
+            }
+            
+        });
+        this.serverThread.setContextClassLoader(LocalServerController.class.getClassLoader());
+        this.serverThread.start();
+        this.bridge.phase(SessionPhase.THREAD.name(), System.nanoTime());
+    }
+    
+    @Override
+    public boolean isRunning()
+    {
+        return Server.getInstance() != null && Server.getInstance().isRunning();
+    }
+    
+    @Override
+    public Object getServer()
+    {
+        return Server.getInstance();
+    }
+    
+    @Override
+    public void shutdown()
+    {
+        // release a stepping main loop
+        this.setTickMode(TickMode.REALTIME);
+        Server.getInstance().shutdown();
+    }
+    
+    @Override
+    public void setTickMode(TickMode mode)
+    {
+        this.tickMode = mode;
+        final TestServerScheduler current = this.scheduler;
+        if (current != null)
+        {
+            current.setTickMode(mode);
+        }
+    }
+    
+    @Override
+    public void tick(int ticks, int millis)
+    {
+        this.scheduler.tick(ticks, millis);
+    }
+    
+    @Override
+    public void sendConsoleString(String command)
+    {
+        this.console.send(command);
+    }
+    
+    @Override
+    public boolean[] dispatchCommands(String[] commandLines, int millis)
+    {
+        final Server server = Server.getInstance();
+        return dispatchCommands(server, server.getConsoleSender(), commandLines, millis);
+    }
+    
+    /**
+     * Dispatches commands within a single tick of the main thread; bypasses the console reader
+     * 
+     * @param server
+     *            the nukkit server
+     * @param sender
+     *            the command sender
+     * @param commandLines
+     *            the command lines
+     * @param millis
+     *            milliseconds to wait for the main thread
+     * @return the result of each command; {@code false} for unknown commands
+     */
+    public static boolean[] dispatchCommands(Server server, CommandSender sender, String[] commandLines, int millis)
+    {
+        final CompletableFuture<boolean[]> future = new CompletableFuture<>();
+        server.getScheduler().scheduleTask(() -> {
+            try
+            {
+                final boolean[] results = new boolean[commandLines.length];
+                for (int i = 0; i < commandLines.length; i++)
+                {
+                    results[i] = server.dispatchCommand(sender, commandLines[i]);
+                }
+                future.complete(results);
+            }
+            catch (Throwable ex)
+            {
+                future.completeExceptionally(ex);
+            }
+        });
+        
+        try
+        {
+            return future.get(millis, TimeUnit.MILLISECONDS);
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException("Nukkit did not dispatch the commands within " + millis + " milliseconds", ex); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+    
+    @Override
+    public void clearConsole()
+    {
+        this.console.clear();
+    }
+    
+    @Override
+    public void reset(int millis)
+    {
+        this.setTickMode(TickMode.REALTIME);
+        final Server server = Server.getInstance();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        server.getScheduler().scheduleTask(() -> {
+            try
+            {
+                resetOnMainThread(server);
+                future.complete(null);
+            }
+            catch (Throwable ex)
+            {
+                future.completeExceptionally(ex);
+            }
+        });
+        
+        try
+        {
+            future.get(millis, TimeUnit.MILLISECONDS);
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException("Nukkit did not reset within " + millis + " milliseconds", ex); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+    
+    /**
+     * Resets the server state; must be invoked from within the main thread
+     * 
+     * @param server
+     */
+    private static void resetOnMainThread(Server server)
+    {
+        server.getPluginManager().disablePlugins();
+        server.getScheduler().cancelAllTasks();
+        
+        final Level defaultLevel = server.getDefaultLevel();
+        for (final Level level : new ArrayList<>(server.getLevels().values()))
+        {
+            final String name = level.getFolderName();
+            final boolean isDefault = level == defaultLevel;
+            // do not persist the changes made by the previous test
+            level.setAutoSave(false);
+            server.unloadLevel(level, true);
+            server.loadLevel(name);
+            if (isDefault)
+            {
+                server.setDefaultLevel(server.getLevelByName(name));
+            }
+        }
+    }
+    
+    /**
+     * inject a private static field
+     * 
+     * @param clazz
+     * @param field
+     * @param value
+     */
+    static void injectPrivateStaticField(Class<?> clazz, String field, Object value)
+    {
+        try
+        {
+            final Field f = clazz.getDeclaredField(field);
+            final Field modifiersField = Field.class.getDeclaredField("modifiers"); //$NON-NLS-1$
+            modifiersField.setAccessible(true);
+            modifiersField.setInt(f, f.getModifiers() & ~Modifier.FINAL);
+            f.setAccessible(true);
+            f.set(null, value);
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Returns the main logger instance
+     * 
+     * @param filePath
+     *            file path
+     * @param forwarding
+     *            {@code true} to forward the log messages to the log file and console
+     * @return main logger
+     */
+    private MainLogger createMainLogger(String filePath, boolean forwarding)
+    {
+        if (this.logger == null)
+        {
+            // nukkit refuses to create a second main logger
+            LocalServerController.injectPrivateStaticField(MainLogger.class, "logger", null); //$NON-NLS-1$
+            this.logger = new CapturingMainLogger(filePath + File.separator + "nukkit.log", this, forwarding); //$NON-NLS-1$
+            LocalServerController.injectPrivateStaticField(MainLogger.class, "logger", this.logger); //$NON-NLS-1$
+        }
+        return this.logger;
+    }
+    
+}
@@ -0,0 +1,50 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal;
+
+import cn.nukkit.Server;
+import cn.nukkit.command.Command;
+import cn.nukkit.command.CommandSender;
+
+/**
+ * Console command logging the markers that delimit the output of a submitted command (see {@link ServerBridge#MARKER_LOG_PREFIX}).
+ * 
+ * @author mepeisen
+ */
+final class MarkerCommand extends Command
+{
+    
+    /**
+     * Constructor
+     */
+    MarkerCommand()
+    {
+        super(ServerBridge.MARKER_COMMAND_NAME, "Delimits the output of commands submitted by the test session"); //$NON-NLS-1$
+    }
+    
+    @Override
+    public boolean execute(CommandSender sender, String commandLabel, String[] args)
+    {
+        if (args.length == 2)
+        {
+            Server.getInstance().getLogger().info(ServerBridge.MARKER_LOG_PREFIX + args[0] + ' ' + args[1]);
+        }
+        return true;
+    }
+    
+}
@@ -0,0 +1,99 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal;
+
+import cn.nukkit.utils.LogLevel;
+
+/**
+ * Callbacks from a nukkit server to the test session.
+ * 
+ * <p>
+ * The bridge is shared between class loaders (see {@link IsolatedServerController}); it must only use jdk types and {@link LogLevel}.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public interface ServerBridge
+{
+    
+    /** the name of the console command logging command markers; arguments are the command id and {@code begin} or {@code end} */
+    String MARKER_COMMAND_NAME = "nukkittestmarker"; //$NON-NLS-1$
+    
+    /** the prefix of the log messages marking the begin and end of a submitted command; followed by the command id, a space and the phase */
+    String MARKER_LOG_PREFIX   = "[nukkit-test] command "; //$NON-NLS-1$
+    
+    /**
+     * Invoked for every message the server logs
+     * 
+     * @param level
+     * @param message
+     * @param nanoTime
+     *            the {@link System#nanoTime()} of the vm running the server at the time the message was logged
+     * @param threadName
+     *            the name of the logging thread
+     * @param tick
+     *            the server tick at the time the message was logged; {@code -1} if there is no server instance
+     */
+    void log(LogLevel level, String message, long nanoTime, String threadName, int tick);
+    
+    /**
+     * Invoked by a server applying the capture filter itself with the counters of the messages it did not send to the session since the last
+     * invocation
+     * 
+     * @param droppedByLevel
+     *            messages rejected by level
+     * @param droppedByPrefix
+     *            messages rejected by prefix
+     * @param truncated
+     *            truncated messages
+     */
+    void filtered(long droppedByLevel, long droppedByPrefix, long truncated);
+    
+    /**
+     * Invoked for every finished tick of the main loop
+     * 
+     * @param tick
+     *            the server tick
+     * @param nanoTime
+     *            the {@link System#nanoTime()} of the vm running the server at the begin of the tick
+     * @param durationNanos
+     *            the processing time of the tick; excludes the sleep till the next tick and the time a stepping main loop waits for requested ticks
+     */
+    void ticked(int tick, long nanoTime, long durationNanos);
+    
+    /**
+     * Invoked as soon as the controller finished a startup phase
+     * 
+     * @param phase
+     *            the name of a {@code SessionPhase}
+     * @param nanoTime
+     *            the {@link System#nanoTime()} of the vm running the server at the end of the phase
+     */
+    void phase(String phase, long nanoTime);
+    
+    /**
+     * Invoked as soon as the server entered the main loop
+     */
+    void started();
+    
+    /**
+     * Invoked after the server was shut down
+     */
+    void stopped();
+    
+}
@@ -0,0 +1,118 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal;
+
+import eu.xworlds.nukkit.test.TickMode;
+
+/**
+ * Controls the nukkit server of a test session.
+ * 
+ * <p>
+ * The controller is shared between class loaders (see {@link IsolatedServerController}); it must only use jdk types and {@link TickMode}.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public interface ServerController
+{
+    
+    /**
+     * Starts the nukkit server within a new thread
+     * 
+     * @param bridge
+     *            the bridge to notify the session
+     * @param filePath
+     *            file path
+     * @param dataPath
+     *            data path
+     * @param pluginPath
+     *            plugin path
+     * @param forwardLog
+     *            {@code true} to forward the log messages to the log file and console of the server
+     */
+    void start(ServerBridge bridge, String filePath, String dataPath, String pluginPath, boolean forwardLog);
+    
+    /**
+     * Checks if the nukkit server is running
+     * 
+     * @return {@code true} if the server is running
+     */
+    boolean isRunning();
+    
+    /**
+     * Returns the nukkit server; the server class belongs to the class loader of the controller
+     * 
+     * @return nukkit server
+     */
+    Object getServer();
+    
+    /**
+     * Shuts the nukkit server down
+     */
+    void shutdown();
+    
+    /**
+     * Sends given string to console
+     * 
+     * @param command
+     *            the command; several commands may be separated by {@code \r\n}
+     */
+    void sendConsoleString(String command);
+    
+    /**
+     * Dispatches commands as console within a single tick of the main thread; bypasses the console reader
+     * 
+     * @param commandLines
+     *            the command lines
+     * @param millis
+     *            milliseconds to wait for the main thread
+     * @return the result of each command; {@code false} for unknown commands
+     */
+    boolean[] dispatchCommands(String[] commandLines, int millis);
+    
+    /**
+     * Sets the clock of the main loop; may be invoked before startup
+     * 
+     * @param mode
+     */
+    void setTickMode(TickMode mode);
+    
+    /**
+     * Runs given number of ticks and waits for them; requires {@link TickMode#STEP}
+     * 
+     * @param ticks
+     *            the number of ticks
+     * @param millis
+     *            milliseconds to wait for the ticks
+     */
+    void tick(int ticks, int millis);
+    
+    /**
+     * Removes all pending console strings
+     */
+    void clearConsole();
+    
+    /**
+     * Resets the server so that it can be reused by another test (see {@code NukkitTestSession#reset(int)})
+     * 
+     * @param millis
+     *            milliseconds to wait for the main thread to perform the reset
+     */
+    void reset(int millis);
+    
+}
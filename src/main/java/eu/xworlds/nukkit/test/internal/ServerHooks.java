@@ -0,0 +1,138 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import cn.nukkit.scheduler.ServerScheduler;
+import jline.console.ConsoleReader;
+
+/**
+ * Injection points for the objects a nukkit server creates during startup.
+ * 
+ * <p>
+ * The {@link ServerHooksTransformer} rewrites the construction sites {@code new ConsoleReader(...)} within {@code CommandReader} and
+ * {@code new ServerScheduler()} within {@code Server} to ask these hooks first. Each supplier is used once; without a supplier the original constructor
+ * runs. The hooks are static per class loader, so isolated servers do not share them.
+ * </p>
+ * 
+ * <p>
+ * The transformer additionally brackets {@code Server.tick()} with {@link #tickBegin()} and {@link #tickEnd()}, so that the scheduler measures the
+ * processing time of a tick without the sleep of the main loop between two ticks.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class ServerHooks
+{
+    
+    /** the supplier for the next console reader */
+    private static final AtomicReference<Supplier<ConsoleReader>>   CONSOLE_READER = new AtomicReference<>();
+    
+    /** the supplier for the next server scheduler */
+    private static final AtomicReference<Supplier<ServerScheduler>> SCHEDULER      = new AtomicReference<>();
+    
+    /** the scheduler measuring the ticks of the server */
+    private static final AtomicReference<TestServerScheduler>       TICKS          = new AtomicReference<>();
+    
+    /**
+     * Hidden constructor
+     */
+    private ServerHooks()
+    {
+        // empty
+    }
+    
+    /**
+     * Sets the supplier for the console reader of the next server
+     * 
+     * @param supplier
+     */
+    public static void setConsoleReader(Supplier<ConsoleReader> supplier)
+    {
+        CONSOLE_READER.set(supplier);
+    }
+    
+    /**
+     * Sets the supplier for the scheduler of the next server
+     * 
+     * @param supplier
+     */
+    public static void setScheduler(Supplier<ServerScheduler> supplier)
+    {
+        SCHEDULER.set(supplier);
+    }
+    
+    /**
+     * Sets the scheduler measuring the ticks of the next server
+     * 
+     * @param scheduler
+     */
+    static void setTickListener(TestServerScheduler scheduler)
+    {
+        TICKS.set(scheduler);
+    }
+    
+    /**
+     * Returns the console reader for a new server; invoked by the rewritten {@code CommandReader}
+     * 
+     * @return console reader or {@code null} to construct the original one
+     */
+    public static ConsoleReader newConsoleReader()
+    {
+        final Supplier<ConsoleReader> supplier = CONSOLE_READER.getAndSet(null);
+        return supplier == null ? null : supplier.get();
+    }
+    
+    /**
+     * Returns the scheduler for a new server; invoked by the rewritten {@code Server}
+     * 
+     * @return scheduler or {@code null} to construct the original one
+     */
+    public static ServerScheduler newScheduler()
+    {
+        final Supplier<ServerScheduler> supplier = SCHEDULER.getAndSet(null);
+        return supplier == null ? null : supplier.get();
+    }
+    
+    /**
+     * Notifies the scheduler about the begin of a tick; invoked by the rewritten {@code Server} on the main thread
+     */
+    public static void tickBegin()
+    {
+        final TestServerScheduler scheduler = TICKS.get();
+        if (scheduler != null)
+        {
+            scheduler.tickBegin();
+        }
+    }
+    
+    /**
+     * Notifies the scheduler about the end of a tick; invoked by the rewritten {@code Server} on the main thread, even if the tick failed
+     */
+    public static void tickEnd()
+    {
+        final TestServerScheduler scheduler = TICKS.get();
+        if (scheduler != null)
+        {
+            scheduler.tickEnd();
+        }
+    }
+    
+}
@@ -0,0 +1,130 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal;
+
+import java.io.ByteArrayInputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.security.ProtectionDomain;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+import javassist.expr.ExprEditor;
+import javassist.expr.NewExpr;
+
+/**
+ * Rewrites the construction sites served by {@link ServerHooks} and brackets the tick method of the server with the tick hooks; all other code of the
+ * server classes stays untouched.
+ * 
+ * <p>
+ * Used by the mock class loaders instead of preparing {@code Server} and {@code CommandReader} for {@code whenNew}, which would add an interception
+ * check to every constructor call within these classes.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class ServerHooksTransformer implements ClassFileTransformer
+{
+    
+    /** the internal name of the class creating the console reader */
+    private static final String COMMAND_READER = "cn/nukkit/command/CommandReader"; //$NON-NLS-1$
+    
+    /** the internal name of the class creating the scheduler */
+    private static final String SERVER         = "cn/nukkit/Server"; //$NON-NLS-1$
+    
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer)
+            throws IllegalClassFormatException
+    {
+        if (COMMAND_READER.equals(className))
+        {
+            return rewrite(loader, classfileBuffer, "jline.console.ConsoleReader", "newConsoleReader", false); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (SERVER.equals(className))
+        {
+            return rewrite(loader, classfileBuffer, "cn.nukkit.scheduler.ServerScheduler", "newScheduler", true); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return null;
+    }
+    
+    /**
+     * Replaces the construction of given type by a call to a {@link ServerHooks} method; the original constructor runs if the hook returns {@code null}
+     * 
+     * @param loader
+     *            the class loader defining the class
+     * @param classfileBuffer
+     *            the original class bytes
+     * @param type
+     *            the constructed type
+     * @param hook
+     *            the hook method
+     * @param tickHooks
+     *            {@code true} to invoke {@link ServerHooks#tickBegin()} and {@link ServerHooks#tickEnd()} around the {@code tick()} method of the class
+     * @return the rewritten class bytes or {@code null} if the class does not construct given type
+     * @throws IllegalClassFormatException
+     */
+    private static byte[] rewrite(ClassLoader loader, byte[] classfileBuffer, String type, String hook, boolean tickHooks)
+            throws IllegalClassFormatException
+    {
+        try
+        {
+            final ClassPool pool = new ClassPool(true);
+            pool.appendClassPath(new LoaderClassPath(loader));
+            final CtClass clazz = pool.makeClass(new ByteArrayInputStream(classfileBuffer));
+            final boolean[] rewritten = new boolean[1];
+            clazz.instrument(new ExprEditor() {
+                
+                @Override
+                public void edit(NewExpr expr) throws CannotCompileException
+                {
+                    if (type.equals(expr.getClassName()))
+                    {
+                        expr.replace("{ $_ = " + ServerHooks.class.getName() + "." + hook + "(); if ($_ == null) { $_ = $proceed($$); } }"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                        rewritten[0] = true;
+                    }
+                }
+            });
+            if (tickHooks)
+            {
+                try
+                {
+                    final CtMethod tick = clazz.getDeclaredMethod("tick", new CtClass[0]); //$NON-NLS-1$
+                    tick.insertBefore(ServerHooks.class.getName() + ".tickBegin();"); //$NON-NLS-1$
+                    tick.insertAfter(ServerHooks.class.getName() + ".tickEnd();", true); //$NON-NLS-1$
+                    rewritten[0] = true;
+                }
+                catch (NotFoundException ex)
+                {
+                    // nukkit without a tick method; the ticks are not measured
+                }
+            }
+            return rewritten[0] ? clazz.toBytecode() : null;
+        }
+        catch (Exception ex)
+        {
+            final IllegalClassFormatException result = new IllegalClassFormatException(ex.getMessage());
+            result.initCause(ex);
+            throw result;
+        }
+    }
+    
+}
@@ -0,0 +1,242 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal;
+
+import java.lang.reflect.Field;
+
+import cn.nukkit.Server;
+import cn.nukkit.scheduler.ServerScheduler;
+import eu.xworlds.nukkit.test.TickMode;
+
+/**
+ * Scheduler of a nukkit test server controlling the main loop clock.
+ * 
+ * <p>
+ * Nukkit invokes {@link #mainThreadHeartbeat(int)} once per tick on the main thread. The first heartbeat notifies the session about the finished
+ * startup. In {@link TickMode#STEP} the heartbeat blocks the main thread till ticks are requested by {@link #tick(int, int)}. In
+ * {@link TickMode#FAST_FORWARD} the next tick time of the server is moved to the past after each heartbeat so that nukkit does not sleep.
+ * </p>
+ * 
+ * <p>
+ * The ticks are measured from {@link #tickBegin()} to {@link #tickEnd()} (see {@link ServerHooks}), so the sleep of the main loop between two ticks is not
+ * counted. The time the heartbeat spends waiting for requested ticks or notifying the session is subtracted. Ticks nukkit skips before the heartbeat
+ * because the next tick time is not reached are not reported.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+final class TestServerScheduler extends ServerScheduler
+{
+    
+    /** the server field holding the time of the next tick */
+    private static final Field          NEXT_TICK = nextTickField();
+    
+    /** the controller owning the server */
+    private final LocalServerController controller;
+    
+    /** {@code true} if the first heartbeat arrived */
+    private boolean                     started;
+    
+    /** the tick being measured */
+    private int                         lastTick;
+    
+    /** the nano time the measured tick began */
+    private long                        lastStart;
+    
+    /** the nano time the current tick began; {@code 0} without tick hooks */
+    private long                        tickBegin;
+    
+    /** the nano seconds the heartbeat of the measured tick did not process the tick */
+    private long                        waited;
+    
+    /** {@code true} if the current tick passed the heartbeat and is reported at its end */
+    private boolean                     measuring;
+    
+    /** the tick mode; guarded by this */
+    private TickMode                    mode      = TickMode.REALTIME;
+    
+    /** the number of ticks allowed to run in step mode; guarded by this */
+    private long                        permits;
+    
+    /** the number of finished heartbeats; guarded by this */
+    private long                        executed;
+    
+    /**
+     * Constructor
+     * 
+     * @param controller
+     *            the controller owning the server
+     */
+    TestServerScheduler(LocalServerController controller)
+    {
+        this.controller = controller;
+    }
+    
+    /**
+     * Returns the server field holding the time of the next tick
+     * 
+     * @return field
+     */
+    private static Field nextTickField()
+    {
+        try
+        {
+            final Field field = Server.class.getDeclaredField("nextTick"); //$NON-NLS-1$
+            field.setAccessible(true);
+            return field;
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Sets the tick mode; leaving the step mode releases the main thread
+     * 
+     * @param tickMode
+     */
+    synchronized void setTickMode(TickMode tickMode)
+    {
+        this.mode = tickMode;
+        this.permits = 0;
+        this.notifyAll();
+    }
+    
+    /**
+     * Runs given number of ticks and waits for them; requires the step mode
+     * 
+     * @param ticks
+     *            the number of ticks
+     * @param millis
+     *            milliseconds to wait for the ticks
+     */
+    synchronized void tick(int ticks, int millis)
+    {
+        if (this.mode != TickMode.STEP)
+        {
+            throw new IllegalStateException("Ticks can only be requested in step mode"); //$NON-NLS-1$
+        }
+        final long target = this.executed + this.permits + ticks;
+        this.permits += ticks;
+        this.notifyAll();
+        final long deadline = System.currentTimeMillis() + millis;
+        while (this.executed < target && this.mode == TickMode.STEP)
+        {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+            {
+                throw new IllegalStateException("Nukkit did not run " + ticks + " ticks within " + millis + " milliseconds"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+            try
+            {
+                this.wait(remaining);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Invoked as soon as the main loop enters a tick
+     */
+    void tickBegin()
+    {
+        this.tickBegin = System.nanoTime();
+    }
+    
+    /**
+     * Invoked as soon as the main loop leaves a tick; reports the tick if it passed the heartbeat
+     */
+    void tickEnd()
+    {
+        if (this.measuring)
+        {
+            this.measuring = false;
+            this.controller.bridge.ticked(this.lastTick, this.lastStart, System.nanoTime() - this.lastStart - this.waited);
+        }
+    }
+    
+    @Override
+    public void mainThreadHeartbeat(int currentTick)
+    {
+        final long heartbeat = System.nanoTime();
+        if (!this.started)
+        {
+            this.started = true;
+            Server.getInstance().getCommandMap().register("nukkittest", new MarkerCommand()); //$NON-NLS-1$
+            this.controller.bridge.started();
+        }
+        
+        final TickMode current;
+        synchronized (this)
+        {
+            while (this.mode == TickMode.STEP && this.permits == 0)
+            {
+                try
+                {
+                    this.wait();
+                }
+                catch (InterruptedException ex)
+                {
+                    // nukkit shuts down
+                    break;
+                }
+            }
+            if (this.mode == TickMode.STEP && this.permits > 0)
+            {
+                this.permits--;
+            }
+            current = this.mode;
+        }
+        this.lastTick = currentTick;
+        this.lastStart = this.tickBegin == 0 ? heartbeat : this.tickBegin;
+        this.waited = System.nanoTime() - heartbeat;
+        this.measuring = true;
+        
+        try
+        {
+            super.mainThreadHeartbeat(currentTick);
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                this.executed++;
+                this.notifyAll();
+            }
+        }
+        
+        if (current != TickMode.REALTIME)
+        {
+            // skip the sleep till the next tick; nukkit resets an outdated next tick time to the current tick time
+            try
+            {
+                NEXT_TICK.setLong(Server.getInstance(), 0L);
+            }
+            catch (IllegalAccessException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,146 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal.fork;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.TickMode;
+import eu.xworlds.nukkit.test.internal.ServerBridge;
+import eu.xworlds.nukkit.test.internal.ServerController;
+
+/**
+ * Controls a nukkit server running within a worker vm taken from the {@link WorkerPool}.
+ * 
+ * @author mepeisen
+ */
+public final class ForkedServerController implements ServerController
+{
+    
+    /** the worker running the server */
+    private final WorkerPool.Worker worker;
+    
+    /** the lease of the worker; expires as soon as the server stopped and the worker returned to the pool */
+    private final int               lease;
+    
+    /**
+     * Constructor
+     */
+    public ForkedServerController()
+    {
+        this.worker = WorkerPool.getInstance().acquire();
+        this.lease = this.worker.getLease();
+    }
+    
+    @Override
+    public void start(ServerBridge bridge, String filePath, String dataPath, String pluginPath, boolean forwardLog)
+    {
+        this.worker.start(this.lease, bridge, filePath, dataPath, pluginPath, forwardLog);
+    }
+    
+    @Override
+    public boolean isRunning()
+    {
+        return this.worker.isRunning(this.lease);
+    }
+    
+    @Override
+    public Object getServer()
+    {
+        // lives in another vm
+        return null;
+    }
+    
+    @Override
+    public void shutdown()
+    {
+        this.worker.call(this.lease, WorkerProtocol.SHUTDOWN, 0, null);
+    }
+    
+    @Override
+    public void sendConsoleString(String command)
+    {
+        this.worker.call(this.lease, WorkerProtocol.CONSOLE, 0, out -> WorkerProtocol.writeString(out, command));
+    }
+    
+    @Override
+    public boolean[] dispatchCommands(String[] commandLines, int millis)
+    {
+        return this.worker.callForResults(this.lease, WorkerProtocol.DISPATCH, millis, out -> {
+            out.writeInt(millis);
+            out.writeInt(commandLines.length);
+            for (final String commandLine : commandLines)
+            {
+                WorkerProtocol.writeString(out, commandLine);
+            }
+        });
+    }
+    
+    @Override
+    public void setTickMode(TickMode mode)
+    {
+        this.worker.call(this.lease, WorkerProtocol.TICK_MODE, 0, out -> out.writeByte(mode.ordinal()));
+    }
+    
+    @Override
+    public void tick(int ticks, int millis)
+    {
+        this.worker.call(this.lease, WorkerProtocol.TICK, millis, out -> {
+            out.writeInt(ticks);
+            out.writeInt(millis);
+        });
+    }
+    
+    /**
+     * Lets the worker filter the log messages before sending them; the counters of rejected messages are reported to
+     * {@link ServerBridge#filtered(long, long, long)}
+     * 
+     * @param minimumLevel
+     * @param allowedPrefixes
+     * @param deniedPrefixes
+     * @param maxLength
+     */
+    public void setCaptureFilter(LogLevel minimumLevel, String[] allowedPrefixes, String[] deniedPrefixes, int maxLength)
+    {
+        this.worker.call(this.lease, WorkerProtocol.CAPTURE_FILTER, 0, out -> {
+            out.writeByte(minimumLevel.ordinal());
+            out.writeInt(maxLength);
+            out.writeInt(allowedPrefixes.length);
+            for (final String prefix : allowedPrefixes)
+            {
+                WorkerProtocol.writeString(out, prefix);
+            }
+            out.writeInt(deniedPrefixes.length);
+            for (final String prefix : deniedPrefixes)
+            {
+                WorkerProtocol.writeString(out, prefix);
+            }
+        });
+    }
+    
+    @Override
+    public void clearConsole()
+    {
+        this.worker.call(this.lease, WorkerProtocol.CLEAR_CONSOLE, 0, null);
+    }
+    
+    @Override
+    public void reset(int millis)
+    {
+        this.worker.call(this.lease, WorkerProtocol.RESET, millis, out -> out.writeInt(millis));
+    }
+    
+}
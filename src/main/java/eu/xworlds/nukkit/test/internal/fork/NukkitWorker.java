@@ -0,0 +1,538 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal.fork;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.LogCaptureFilter;
+import eu.xworlds.nukkit.test.TickMode;
+import eu.xworlds.nukkit.test.internal.IsolatedServerController;
+import eu.xworlds.nukkit.test.internal.ServerBridge;
+import eu.xworlds.nukkit.test.internal.ServerController;
+
+/**
+ * Main class of a worker vm started by the {@link WorkerPool}.
+ * 
+ * <p>
+ * The worker connects to the pool and runs one server at a time within an isolated class loader. The class loader for the next session is prepared
+ * ahead of time so that the transformed server classes are ready when the next session starts.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class NukkitWorker implements ServerBridge
+{
+    
+    /** the input stream */
+    private final DataInputStream                                in;
+    
+    /** the output stream; synchronized */
+    private final DataOutputStream                               out;
+    
+    /** the controller of the current session */
+    private volatile ServerController                            controller;
+    
+    /** the controller for the next session; shared by the background preparation and the next start */
+    private volatile CompletableFuture<IsolatedServerController> prepared;
+    
+    /** the first failure writing to the pool; the worker exits once the pool is gone */
+    private final AtomicReference<IOException>                   lost     = new AtomicReference<>();
+    
+    /** the tick mode for the next session */
+    private TickMode                                             tickMode = TickMode.REALTIME;
+    
+    /** the capture filter of the current session or {@code null} */
+    private volatile LogCaptureFilter                            filter;
+    
+    /** the counters of the capture filter already sent to the pool; synchronized by the output stream */
+    private final long[]                                         filtered = new long[3];
+    
+    /**
+     * Constructor
+     * 
+     * @param in
+     * @param out
+     */
+    private NukkitWorker(DataInputStream in, DataOutputStream out)
+    {
+        this.in = in;
+        this.out = out;
+    }
+    
+    /**
+     * Main method
+     * 
+     * @param args
+     *            the pool port and the worker id
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException
+    {
+        final int port = Integer.parseInt(args[0]);
+        final int id = Integer.parseInt(args[1]);
+        try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port))
+        {
+            socket.setTcpNoDelay(true);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(id);
+            // lets the pool rebase the nano times of the events to its own clock
+            out.writeLong(System.nanoTime());
+            out.flush();
+            new NukkitWorker(new DataInputStream(new BufferedInputStream(socket.getInputStream())), out).run();
+        }
+        finally
+        {
+            // the server threads are no daemons
+            System.exit(0);
+        }
+    }
+    
+    /**
+     * Prepares the controller for the next session
+     * 
+     * @return controller
+     */
+    private static IsolatedServerController prepare()
+    {
+        final IsolatedServerController next = new IsolatedServerController();
+        try
+        {
+            // transform the server class ahead of time
+            Class.forName("cn.nukkit.Server", false, next.getClassLoader()); //$NON-NLS-1$
+        }
+        catch (ClassNotFoundException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        return next;
+    }
+    
+    /**
+     * Starts preparing the controller for the next session in background
+     */
+    private void prepareNext()
+    {
+        final CompletableFuture<IsolatedServerController> next = new CompletableFuture<>();
+        this.prepared = next;
+        final Thread thread = new Thread(() -> {
+            try
+            {
+                next.complete(prepare());
+            }
+            catch (Throwable ex)
+            {
+                next.completeExceptionally(ex);
+            }
+        }, "nukkit-worker-prepare"); //$NON-NLS-1$
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Returns the prepared controller; waits for a pending background preparation or prepares it now
+     * 
+     * @return controller
+     */
+    private IsolatedServerController takePrepared()
+    {
+        final CompletableFuture<IsolatedServerController> next = this.prepared;
+        this.prepared = null;
+        if (next == null)
+        {
+            return prepare();
+        }
+        // join rethrows the preparation failure wrapped in a CompletionException
+        return next.join();
+    }
+    
+    /**
+     * Remembers the first failure writing to the pool and closes the connection so that the request loop ends
+     * 
+     * @param ex
+     */
+    private void connectionLost(IOException ex)
+    {
+        if (this.lost.compareAndSet(null, ex))
+        {
+            try
+            {
+                this.in.close();
+            }
+            catch (IOException e)
+            {
+                ex.addSuppressed(e);
+            }
+        }
+    }
+    
+    /**
+     * Processes the requests till exit was requested
+     * 
+     * @throws IOException
+     */
+    private void run() throws IOException
+    {
+        this.prepared = CompletableFuture.completedFuture(prepare());
+        while (true)
+        {
+            final byte op;
+            final int id;
+            try
+            {
+                op = this.in.readByte();
+                id = this.in.readInt();
+            }
+            catch (IOException ex)
+            {
+                final IOException cause = this.lost.get();
+                if (cause != null)
+                {
+                    cause.addSuppressed(ex);
+                    throw cause;
+                }
+                throw ex;
+            }
+            try
+            {
+                boolean result = false;
+                switch (op)
+                {
+                    case WorkerProtocol.START:
+                    {
+                        final String filePath = WorkerProtocol.readString(this.in);
+                        final String dataPath = WorkerProtocol.readString(this.in);
+                        final String pluginPath = WorkerProtocol.readString(this.in);
+                        final boolean forwardLog = this.in.readBoolean();
+                        this.controller = this.takePrepared();
+                        synchronized (this.out)
+                        {
+                            this.filter = null;
+                            Arrays.fill(this.filtered, 0);
+                        }
+                        this.controller.setTickMode(this.tickMode);
+                        this.tickMode = TickMode.REALTIME;
+                        this.controller.start(this, filePath, dataPath, pluginPath, forwardLog);
+                        break;
+                    }
+                    case WorkerProtocol.IS_RUNNING:
+                        result = this.controller != null && this.controller.isRunning();
+                        break;
+                    case WorkerProtocol.SHUTDOWN:
+                        this.controller.shutdown();
+                        break;
+                    case WorkerProtocol.CONSOLE:
+                    {
+                        final String command = WorkerProtocol.readString(this.in);
+                        this.controller.sendConsoleString(command);
+                        break;
+                    }
+                    case WorkerProtocol.CLEAR_CONSOLE:
+                        this.controller.clearConsole();
+                        break;
+                    case WorkerProtocol.RESET:
+                    {
+                        final int millis = this.in.readInt();
+                        this.controller.reset(millis);
+                        break;
+                    }
+                    case WorkerProtocol.DISPATCH:
+                    {
+                        final int millis = this.in.readInt();
+                        final String[] commandLines = new String[this.in.readInt()];
+                        for (int i = 0; i < commandLines.length; i++)
+                        {
+                            commandLines[i] = WorkerProtocol.readString(this.in);
+                        }
+                        final boolean[] results = this.controller.dispatchCommands(commandLines, millis);
+                        synchronized (this.out)
+                        {
+                            this.out.writeByte(WorkerProtocol.RESULTS);
+                            this.out.writeInt(id);
+                            this.out.writeInt(results.length);
+                            for (final boolean value : results)
+                            {
+                                this.out.writeBoolean(value);
+                            }
+                            this.out.flush();
+                        }
+                        continue;
+                    }
+                    case WorkerProtocol.TICK_MODE:
+                    {
+                        final TickMode mode = TickMode.values()[this.in.readByte()];
+                        if (this.controller == null)
+                        {
+                            this.tickMode = mode;
+                        }
+                        else
+                        {
+                            this.controller.setTickMode(mode);
+                        }
+                        break;
+                    }
+                    case WorkerProtocol.TICK:
+                    {
+                        final int ticks = this.in.readInt();
+                        final int millis = this.in.readInt();
+                        this.controller.tick(ticks, millis);
+                        break;
+                    }
+                    case WorkerProtocol.CAPTURE_FILTER:
+                    {
+                        final LogLevel minimumLevel = LogLevel.values()[this.in.readByte()];
+                        final int maxLength = this.in.readInt();
+                        final String[] allowedPrefixes = new String[this.in.readInt()];
+                        for (int i = 0; i < allowedPrefixes.length; i++)
+                        {
+                            allowedPrefixes[i] = WorkerProtocol.readString(this.in);
+                        }
+                        final String[] deniedPrefixes = new String[this.in.readInt()];
+                        for (int i = 0; i < deniedPrefixes.length; i++)
+                        {
+                            deniedPrefixes[i] = WorkerProtocol.readString(this.in);
+                        }
+                        this.filter = new LogCaptureFilter().setMinimumLevel(minimumLevel).setAllowedPrefixes(allowedPrefixes)
+                                .setDeniedPrefixes(deniedPrefixes).setMaxMessageLength(maxLength);
+                        break;
+                    }
+                    case WorkerProtocol.EXIT:
+                        this.respond(id, true);
+                        return;
+                    default:
+                        throw new IOException("Unknown op code " + op); //$NON-NLS-1$
+                }
+                this.respond(id, result);
+            }
+            catch (IOException ex)
+            {
+                throw ex;
+            }
+            catch (Throwable ex)
+            {
+                synchronized (this.out)
+                {
+                    this.out.writeByte(WorkerProtocol.FAILURE);
+                    this.out.writeInt(id);
+                    WorkerProtocol.writeString(this.out, WorkerProtocol.toString(ex));
+                    this.out.flush();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Sends a result
+     * 
+     * @param id
+     * @param result
+     * @throws IOException
+     */
+    private void respond(int id, boolean result) throws IOException
+    {
+        synchronized (this.out)
+        {
+            // the counters are up to date as soon as the request completes
+            this.writeFiltered();
+            this.out.writeByte(WorkerProtocol.RESULT);
+            this.out.writeInt(id);
+            this.out.writeBoolean(result);
+            this.out.flush();
+        }
+    }
+    
+    /**
+     * Sends an event without payload
+     * 
+     * @param op
+     */
+    private void sendEvent(byte op)
+    {
+        try
+        {
+            synchronized (this.out)
+            {
+                this.writeFiltered();
+                this.out.writeByte(op);
+                this.out.flush();
+            }
+        }
+        catch (IOException ex)
+        {
+            // the pool is gone; nothing to report to
+            this.connectionLost(ex);
+        }
+    }
+    
+    /**
+     * Sends the counters of the capture filter changed since the last invocation; invoked while holding the output stream lock
+     * 
+     * @throws IOException
+     */
+    private void writeFiltered() throws IOException
+    {
+        final LogCaptureFilter current = this.filter;
+        if (current == null)
+        {
+            return;
+        }
+        final long droppedByLevel = current.getDroppedByLevel();
+        final long droppedByPrefix = current.getDroppedByPrefix();
+        final long truncated = current.getTruncated();
+        if (droppedByLevel != this.filtered[0] || droppedByPrefix != this.filtered[1] || truncated != this.filtered[2])
+        {
+            this.writeFiltered(droppedByLevel - this.filtered[0], droppedByPrefix - this.filtered[1], truncated - this.filtered[2]);
+            this.filtered[0] = droppedByLevel;
+            this.filtered[1] = droppedByPrefix;
+            this.filtered[2] = truncated;
+        }
+    }
+    
+    /**
+     * Writes a filtered event; invoked while holding the output stream lock
+     * 
+     * @param droppedByLevel
+     * @param droppedByPrefix
+     * @param truncated
+     * @throws IOException
+     */
+    private void writeFiltered(long droppedByLevel, long droppedByPrefix, long truncated) throws IOException
+    {
+        this.out.writeByte(WorkerProtocol.FILTERED);
+        this.out.writeLong(droppedByLevel);
+        this.out.writeLong(droppedByPrefix);
+        this.out.writeLong(truncated);
+    }
+    
+    @Override
+    public void log(LogLevel level, String message, long nanoTime, String threadName, int tick)
+    {
+        final LogCaptureFilter current = this.filter;
+        // command markers are never filtered
+        final boolean marker = message != null && message.startsWith(MARKER_LOG_PREFIX);
+        final String msg = current == null || marker ? String.valueOf(message) : current.filter(level, message);
+        if (msg == null)
+        {
+            // counted by the filter; sent with the next event or response
+            return;
+        }
+        try
+        {
+            synchronized (this.out)
+            {
+                this.writeFiltered();
+                this.out.writeByte(WorkerProtocol.LOG);
+                this.out.writeByte(level.ordinal());
+                WorkerProtocol.writeString(this.out, msg);
+                this.out.writeLong(nanoTime);
+                WorkerProtocol.writeString(this.out, threadName);
+                this.out.writeInt(tick);
+                this.out.flush();
+            }
+        }
+        catch (IOException ex)
+        {
+            // the pool is gone; nothing to report to
+            this.connectionLost(ex);
+        }
+    }
+    
+    @Override
+    public void filtered(long droppedByLevel, long droppedByPrefix, long truncated)
+    {
+        try
+        {
+            synchronized (this.out)
+            {
+                this.writeFiltered(droppedByLevel, droppedByPrefix, truncated);
+                this.out.flush();
+            }
+        }
+        catch (IOException ex)
+        {
+            // the pool is gone; nothing to report to
+            this.connectionLost(ex);
+        }
+    }
+    
+    @Override
+    public void ticked(int tick, long nanoTime, long durationNanos)
+    {
+        try
+        {
+            synchronized (this.out)
+            {
+                this.out.writeByte(WorkerProtocol.TICKED);
+                this.out.writeInt(tick);
+                this.out.writeLong(nanoTime);
+                this.out.writeLong(durationNanos);
+                this.out.flush();
+            }
+        }
+        catch (IOException ex)
+        {
+            // the pool is gone; nothing to report to
+            this.connectionLost(ex);
+        }
+    }
+    
+    @Override
+    public void phase(String phase, long nanoTime)
+    {
+        try
+        {
+            synchronized (this.out)
+            {
+                this.out.writeByte(WorkerProtocol.PHASE);
+                WorkerProtocol.writeString(this.out, phase);
+                this.out.writeLong(nanoTime);
+                this.out.flush();
+            }
+        }
+        catch (IOException ex)
+        {
+            // the pool is gone; nothing to report to
+            this.connectionLost(ex);
+        }
+    }
+    
+    @Override
+    public void started()
+    {
+        this.sendEvent(WorkerProtocol.STARTED);
+    }
+    
+    @Override
+    public void stopped()
+    {
+        this.controller = null;
+        // prepare the next session in background; registered before the pool learns about the stop so that the next start waits for it
+        this.prepareNext();
+        this.sendEvent(WorkerProtocol.STOPPED);
+    }
+    
+}
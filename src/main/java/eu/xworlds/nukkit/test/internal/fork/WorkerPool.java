@@ -0,0 +1,783 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal.fork;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.internal.ServerBridge;
+
+/**
+ * A pool of pre-warmed worker vms running test sessions out of process.
+ * 
+ * <p>
+ * The pool keeps {@code nukkit.test.workers} idle workers (defaults to half of the available processors) started ahead of time. A worker runs one
+ * session at a time and is recycled after {@code nukkit.test.worker.sessions} sessions (defaults to 10). Additional vm arguments for the workers are taken
+ * from {@code nukkit.test.worker.jvmArgs}.
+ * </p>
+ * 
+ * <p>
+ * The pool is shared by all class loaders of the test vm; classes of this package must only use jdk types and the shared controller interfaces.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+public final class WorkerPool
+{
+    
+    /** milliseconds to wait for a worker connecting to the pool */
+    private static final int                                  CONNECT_MILLIS = 30000;
+    
+    /** milliseconds to wait for a request being answered (in addition to request specific timeouts) */
+    private static final int                                  CALL_MILLIS    = 30000;
+    
+    /** the singleton instance */
+    private static final WorkerPool                           INSTANCE       = new WorkerPool();
+    
+    /** the number of idle workers to keep */
+    private final int                                         size           = Integer.getInteger("nukkit.test.workers", //$NON-NLS-1$
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2)).intValue();
+    
+    /** the number of sessions after which a worker is recycled */
+    private final int                                         maxSessions    = Integer.getInteger("nukkit.test.worker.sessions", 10).intValue(); //$NON-NLS-1$
+    
+    /** the worker ids */
+    private final AtomicInteger                               nextId         = new AtomicInteger();
+    
+    /** the workers waiting for their connection */
+    private final Map<Integer, CompletableFuture<Handshake>>  connecting     = new ConcurrentHashMap<>();
+    
+    /** the idle workers */
+    private final Deque<Worker>                               idle           = new ArrayDeque<>();
+    
+    /** all living workers */
+    private final Set<Worker>                                 workers        = Collections.newSetFromMap(new ConcurrentHashMap<Worker, Boolean>());
+    
+    /** the server socket the workers connect to */
+    private ServerSocket                                      serverSocket;
+    
+    /**
+     * Hidden constructor
+     */
+    private WorkerPool()
+    {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "nukkit-worker-pool-shutdown")); //$NON-NLS-1$
+    }
+    
+    /**
+     * Returns the worker pool
+     * 
+     * @return worker pool
+     */
+    public static WorkerPool getInstance()
+    {
+        return INSTANCE;
+    }
+    
+    /**
+     * Starts idle workers till the pool size is reached
+     */
+    public void prewarm()
+    {
+        while (true)
+        {
+            synchronized (this.idle)
+            {
+                if (this.idle.size() >= this.size)
+                {
+                    return;
+                }
+                this.idle.add(this.spawn());
+            }
+        }
+    }
+    
+    /**
+     * Returns an idle worker and starts a replacement
+     * 
+     * @return worker for exclusive use
+     */
+    public Worker acquire()
+    {
+        Worker worker = null;
+        synchronized (this.idle)
+        {
+            while (worker == null && !this.idle.isEmpty())
+            {
+                final Worker candidate = this.idle.poll();
+                if (candidate.isAlive())
+                {
+                    worker = candidate;
+                }
+            }
+            if (worker == null)
+            {
+                worker = this.spawn();
+            }
+        }
+        CompletableFuture.runAsync(this::prewarm);
+        return worker;
+    }
+    
+    /**
+     * Gives a worker back to the pool after its session ended
+     * 
+     * @param worker
+     */
+    void release(Worker worker)
+    {
+        // the controller of the ended session must not drive the next session
+        worker.lease++;
+        worker.sessions++;
+        if (!worker.isAlive() || worker.sessions >= this.maxSessions)
+        {
+            worker.terminate();
+            return;
+        }
+        synchronized (this.idle)
+        {
+            this.idle.push(worker);
+        }
+    }
+    
+    /**
+     * Terminates all workers
+     */
+    public void shutdown()
+    {
+        for (final Worker worker : new ArrayList<>(this.workers))
+        {
+            worker.terminate();
+        }
+    }
+    
+    /**
+     * Starts a new worker vm
+     * 
+     * @return worker
+     */
+    private Worker spawn()
+    {
+        final int id = this.nextId.incrementAndGet();
+        final CompletableFuture<Handshake> connection = new CompletableFuture<>();
+        this.connecting.put(Integer.valueOf(id), connection);
+        
+        final List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        final String jvmArgs = System.getProperty("nukkit.test.worker.jvmArgs", "").trim(); //$NON-NLS-1$ //$NON-NLS-2$
+        if (!jvmArgs.isEmpty())
+        {
+            Collections.addAll(command, jvmArgs.split("\\s+")); //$NON-NLS-1$
+        }
+        command.add("-cp"); //$NON-NLS-1$
+        command.add(System.getProperty("java.class.path")); //$NON-NLS-1$
+        command.add(NukkitWorker.class.getName());
+        command.add(String.valueOf(this.getServerSocket().getLocalPort()));
+        command.add(String.valueOf(id));
+        try
+        {
+            final Process process = new ProcessBuilder(command).inheritIO().start();
+            final Worker worker = new Worker(this, process, connection);
+            this.workers.add(worker);
+            return worker;
+        }
+        catch (IOException ex)
+        {
+            this.connecting.remove(Integer.valueOf(id));
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Returns the server socket; creates it on first invocation
+     * 
+     * @return server socket
+     */
+    private synchronized ServerSocket getServerSocket()
+    {
+        if (this.serverSocket == null)
+        {
+            try
+            {
+                this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            }
+            catch (IOException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+            final ServerSocket server = this.serverSocket;
+            final Thread acceptor = new Thread(() -> this.accept(server), "nukkit-worker-pool-acceptor"); //$NON-NLS-1$
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+        return this.serverSocket;
+    }
+    
+    /**
+     * Accepts worker connections
+     * 
+     * @param server
+     */
+    private void accept(ServerSocket server)
+    {
+        while (true)
+        {
+            try
+            {
+                final Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                final DataInputStream in = new DataInputStream(socket.getInputStream());
+                final int id = in.readInt();
+                final long workerNanoTime = in.readLong();
+                // the worker sent its clock right after connecting; the offset is accurate within the connect latency
+                final long clockOffset = System.nanoTime() - workerNanoTime;
+                final CompletableFuture<Handshake> connection = this.connecting.remove(Integer.valueOf(id));
+                if (connection == null)
+                {
+                    socket.close();
+                }
+                else
+                {
+                    connection.complete(new Handshake(socket, clockOffset));
+                }
+            }
+            catch (IOException ex)
+            {
+                this.acceptFailed(server, ex);
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Drops the broken server socket and fails the workers waiting for their connection; the next spawn opens a new server socket
+     * 
+     * @param server
+     * @param ex
+     */
+    private synchronized void acceptFailed(ServerSocket server, IOException ex)
+    {
+        if (this.serverSocket == server)
+        {
+            this.serverSocket = null;
+        }
+        try
+        {
+            server.close();
+        }
+        catch (IOException e)
+        {
+            ex.addSuppressed(e);
+        }
+        for (final Integer id : new ArrayList<>(this.connecting.keySet()))
+        {
+            final CompletableFuture<Handshake> connection = this.connecting.remove(id);
+            if (connection != null)
+            {
+                connection.completeExceptionally(ex);
+            }
+        }
+    }
+    
+    /**
+     * An accepted worker connection
+     */
+    private static final class Handshake
+    {
+        
+        /** the socket */
+        final Socket socket;
+        
+        /** the difference between the nano time of the test vm and the nano time of the worker vm */
+        final long   clockOffset;
+        
+        /**
+         * Constructor
+         * 
+         * @param socket
+         * @param clockOffset
+         */
+        Handshake(Socket socket, long clockOffset)
+        {
+            this.socket = socket;
+            this.clockOffset = clockOffset;
+        }
+        
+    }
+    
+    /**
+     * Writes the request payload
+     */
+    @FunctionalInterface
+    interface Payload
+    {
+        /**
+         * Writes the payload
+         * 
+         * @param out
+         * @throws IOException
+         */
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    /**
+     * A worker vm
+     */
+    public static final class Worker
+    {
+        
+        /** the pool */
+        private final WorkerPool                                   pool;
+        
+        /** the worker process */
+        private final Process                                      process;
+        
+        /** the connection to the worker */
+        private final CompletableFuture<Handshake>                 connection;
+        
+        /** the pending requests */
+        private final Map<Integer, CompletableFuture<boolean[]>>   pending     = new ConcurrentHashMap<>();
+        
+        /** the request ids */
+        private final AtomicInteger                                nextRequest = new AtomicInteger();
+        
+        /** the output stream; synchronized */
+        private volatile DataOutputStream                          out;
+        
+        /** the bridge of the current session */
+        private volatile ServerBridge                              bridge;
+        
+        /** {@code true} if the worker is terminated or lost its connection */
+        private volatile boolean                                   closed;
+        
+        /** the offset rebasing the nano times of the worker events to the clock of the test vm; set before the reader starts */
+        private long                                               clockOffset;
+        
+        /** {@code true} from the start request till the worker reported the server stopped */
+        private volatile boolean                                   running;
+        
+        /** the number of sessions run by this worker */
+        int                                                        sessions;
+        
+        /** the lease of the current session; incremented as soon as the session released the worker */
+        volatile int                                               lease;
+        
+        /**
+         * Constructor
+         * 
+         * @param pool
+         * @param process
+         * @param connection
+         */
+        Worker(WorkerPool pool, Process process, CompletableFuture<Handshake> connection)
+        {
+            this.pool = pool;
+            this.process = process;
+            this.connection = connection;
+        }
+        
+        /**
+         * Checks if the worker is usable
+         * 
+         * @return {@code true} if the worker is alive
+         */
+        boolean isAlive()
+        {
+            return !this.closed && this.process.isAlive();
+        }
+        
+        /**
+         * Returns the lease of the current session; see {@link #isLeased(int)}
+         * 
+         * @return lease
+         */
+        int getLease()
+        {
+            return this.lease;
+        }
+        
+        /**
+         * Checks if the session holding given lease still owns this worker
+         * 
+         * @param sessionLease
+         *            the lease returned by {@link #getLease()} after acquiring the worker
+         * @return {@code true} if the session did not release the worker
+         */
+        boolean isLeased(int sessionLease)
+        {
+            return this.lease == sessionLease;
+        }
+        
+        /**
+         * Checks if the server of given session is running; answered from the events of the worker without a round trip
+         * 
+         * @param sessionLease
+         *            the lease of the session
+         * @return {@code true} if the server is running
+         */
+        boolean isRunning(int sessionLease)
+        {
+            return this.running && this.isLeased(sessionLease) && this.isAlive();
+        }
+        
+        /**
+         * Starts the server within the worker
+         * 
+         * @param sessionLease
+         *            the lease of the session
+         * @param sessionBridge
+         * @param filePath
+         * @param dataPath
+         * @param pluginPath
+         * @param forwardLog
+         */
+        void start(int sessionLease, ServerBridge sessionBridge, String filePath, String dataPath, String pluginPath, boolean forwardLog)
+        {
+            if (!this.isLeased(sessionLease))
+            {
+                throw new IllegalStateException("Worker already released by the session"); //$NON-NLS-1$
+            }
+            this.bridge = sessionBridge;
+            // the server accepts console input while booting; it reports STARTED not before the main loop is entered
+            this.running = true;
+            try
+            {
+                this.call(sessionLease, WorkerProtocol.START, 0, stream -> {
+                    WorkerProtocol.writeString(stream, filePath);
+                    WorkerProtocol.writeString(stream, dataPath);
+                    WorkerProtocol.writeString(stream, pluginPath);
+                    stream.writeBoolean(forwardLog);
+                });
+            }
+            catch (RuntimeException ex)
+            {
+                this.running = false;
+                throw ex;
+            }
+        }
+        
+        /**
+         * Sends a request and waits for the result
+         * 
+         * @param sessionLease
+         *            the lease of the session
+         * @param op
+         *            op code
+         * @param millis
+         *            request specific milliseconds to wait
+         * @param payload
+         *            payload or {@code null}
+         * @return result
+         */
+        boolean call(int sessionLease, byte op, int millis, Payload payload)
+        {
+            return this.callForResults(sessionLease, op, millis, payload)[0];
+        }
+        
+        /**
+         * Sends a request and waits for the results
+         * 
+         * @param sessionLease
+         *            the lease of the session
+         * @param op
+         *            op code
+         * @param millis
+         *            request specific milliseconds to wait
+         * @param payload
+         *            payload or {@code null}
+         * @return results
+         */
+        boolean[] callForResults(int sessionLease, byte op, int millis, Payload payload)
+        {
+            if (this.closed)
+            {
+                throw new IllegalStateException("Worker vm terminated"); //$NON-NLS-1$
+            }
+            if (!this.isLeased(sessionLease))
+            {
+                throw new IllegalStateException("Worker already released by the session"); //$NON-NLS-1$
+            }
+            final DataOutputStream stream = this.connect();
+            final Integer id = Integer.valueOf(this.nextRequest.incrementAndGet());
+            final CompletableFuture<boolean[]> result = new CompletableFuture<>();
+            this.pending.put(id, result);
+            try
+            {
+                synchronized (stream)
+                {
+                    stream.writeByte(op);
+                    stream.writeInt(id.intValue());
+                    if (payload != null)
+                    {
+                        payload.write(stream);
+                    }
+                    stream.flush();
+                }
+                return result.get(CALL_MILLIS + millis, TimeUnit.MILLISECONDS);
+            }
+            catch (Exception ex)
+            {
+                this.pending.remove(id);
+                final Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                throw new IllegalStateException(cause.getMessage(), cause);
+            }
+        }
+        
+        /**
+         * Waits for the worker connection and starts the reader thread
+         * 
+         * @return output stream
+         */
+        private synchronized DataOutputStream connect()
+        {
+            if (this.out == null)
+            {
+                try
+                {
+                    final Handshake handshake = this.connection.get(CONNECT_MILLIS, TimeUnit.MILLISECONDS);
+                    final Socket socket = handshake.socket;
+                    this.clockOffset = handshake.clockOffset;
+                    final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    final Thread reader = new Thread(() -> this.read(in), "nukkit-worker-reader"); //$NON-NLS-1$
+                    reader.setDaemon(true);
+                    reader.start();
+                }
+                catch (Exception ex)
+                {
+                    this.terminate();
+                    throw new IllegalStateException("Worker vm did not connect within " + CONNECT_MILLIS + " milliseconds", ex); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+            return this.out;
+        }
+        
+        /**
+         * Reads responses and events from the worker
+         * 
+         * @param in
+         */
+        private void read(DataInputStream in)
+        {
+            try
+            {
+                while (true)
+                {
+                    final byte op = in.readByte();
+                    switch (op)
+                    {
+                        case WorkerProtocol.LOG:
+                        {
+                            final LogLevel level = LogLevel.values()[in.readByte()];
+                            final String message = WorkerProtocol.readString(in);
+                            final long nanoTime = in.readLong() + this.clockOffset;
+                            final String threadName = WorkerProtocol.readString(in);
+                            final int tick = in.readInt();
+                            final ServerBridge current = this.bridge;
+                            if (current != null)
+                            {
+                                current.log(level, message, nanoTime, threadName, tick);
+                            }
+                            break;
+                        }
+                        case WorkerProtocol.FILTERED:
+                        {
+                            final long droppedByLevel = in.readLong();
+                            final long droppedByPrefix = in.readLong();
+                            final long truncated = in.readLong();
+                            final ServerBridge current = this.bridge;
+                            if (current != null)
+                            {
+                                current.filtered(droppedByLevel, droppedByPrefix, truncated);
+                            }
+                            break;
+                        }
+                        case WorkerProtocol.TICKED:
+                        {
+                            final int tick = in.readInt();
+                            final long nanoTime = in.readLong() + this.clockOffset;
+                            final long duration = in.readLong();
+                            final ServerBridge current = this.bridge;
+                            if (current != null)
+                            {
+                                current.ticked(tick, nanoTime, duration);
+                            }
+                            break;
+                        }
+                        case WorkerProtocol.PHASE:
+                        {
+                            final String phase = WorkerProtocol.readString(in);
+                            final long nanoTime = in.readLong() + this.clockOffset;
+                            final ServerBridge current = this.bridge;
+                            if (current != null)
+                            {
+                                current.phase(phase, nanoTime);
+                            }
+                            break;
+                        }
+                        case WorkerProtocol.STARTED:
+                        {
+                            this.running = true;
+                            final ServerBridge current = this.bridge;
+                            if (current != null)
+                            {
+                                current.started();
+                            }
+                            break;
+                        }
+                        case WorkerProtocol.STOPPED:
+                        {
+                            this.running = false;
+                            final ServerBridge current = this.bridge;
+                            this.bridge = null;
+                            if (current != null)
+                            {
+                                current.stopped();
+                            }
+                            this.pool.release(this);
+                            break;
+                        }
+                        case WorkerProtocol.RESULT:
+                        {
+                            final Integer id = Integer.valueOf(in.readInt());
+                            final boolean value = in.readBoolean();
+                            final CompletableFuture<boolean[]> result = this.pending.remove(id);
+                            if (result != null)
+                            {
+                                result.complete(new boolean[] { value });
+                            }
+                            break;
+                        }
+                        case WorkerProtocol.RESULTS:
+                        {
+                            final Integer id = Integer.valueOf(in.readInt());
+                            final boolean[] values = new boolean[in.readInt()];
+                            for (int i = 0; i < values.length; i++)
+                            {
+                                values[i] = in.readBoolean();
+                            }
+                            final CompletableFuture<boolean[]> result = this.pending.remove(id);
+                            if (result != null)
+                            {
+                                result.complete(values);
+                            }
+                            break;
+                        }
+                        case WorkerProtocol.FAILURE:
+                        {
+                            final Integer id = Integer.valueOf(in.readInt());
+                            final String message = WorkerProtocol.readString(in);
+                            final CompletableFuture<boolean[]> result = this.pending.remove(id);
+                            if (result != null)
+                            {
+                                result.completeExceptionally(new IllegalStateException("Worker vm failed: " + message)); //$NON-NLS-1$
+                            }
+                            break;
+                        }
+                        default:
+                            throw new IOException("Unknown op code " + op); //$NON-NLS-1$
+                    }
+                }
+            }
+            catch (IOException ex)
+            {
+                // connection lost; the worker crashed or was terminated
+                this.closed = true;
+                this.running = false;
+                for (final CompletableFuture<boolean[]> result : this.pending.values())
+                {
+                    result.completeExceptionally(new IllegalStateException("Worker vm terminated", ex)); //$NON-NLS-1$
+                }
+                this.pending.clear();
+                final ServerBridge current = this.bridge;
+                this.bridge = null;
+                if (current != null)
+                {
+                    current.log(LogLevel.EMERGENCY, "Worker vm terminated unexpectedly", System.nanoTime(), Thread.currentThread().getName(), -1); //$NON-NLS-1$
+                    current.stopped();
+                }
+                this.terminate();
+            }
+        }
+        
+        /**
+         * Terminates the worker vm
+         */
+        void terminate()
+        {
+            this.pool.workers.remove(this);
+            if (this.out == null)
+            {
+                // never used; nothing to shut down gracefully
+                this.closed = true;
+                this.process.destroyForcibly();
+                return;
+            }
+            if (!this.closed)
+            {
+                try
+                {
+                    synchronized (this.out)
+                    {
+                        this.out.writeByte(WorkerProtocol.EXIT);
+                        this.out.writeInt(0);
+                        this.out.flush();
+                    }
+                }
+                catch (IOException ex)
+                {
+                    // already gone
+                }
+            }
+            this.closed = true;
+            try
+            {
+                if (!this.process.waitFor(5, TimeUnit.SECONDS))
+                {
+                    this.process.destroyForcibly();
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                this.process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+    }
+    
+}
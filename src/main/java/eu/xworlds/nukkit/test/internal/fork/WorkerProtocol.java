@@ -0,0 +1,150 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.internal.fork;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The protocol between test vm and worker vm.
+ * 
+ * <p>
+ * On connect the worker sends its id and its {@link System#nanoTime()}; the test vm adds the clock offset to the nano times of all events.
+ * Every message starts with an op code byte. Requests (test vm to worker) are followed by a request id; the worker answers each request with
+ * {@link #RESULT}, {@link #RESULTS} or {@link #FAILURE}. Events ({@link #LOG}, {@link #FILTERED}, {@link #TICKED}, {@link #PHASE}, {@link #STARTED}, {@link #STOPPED}) are sent by the worker at any time.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+final class WorkerProtocol
+{
+    
+    /** request: start server; file path, data path, plugin path, forward log flag */
+    static final byte START          = 1;
+    
+    /** request: check if server is running */
+    static final byte IS_RUNNING     = 2;
+    
+    /** request: shutdown server */
+    static final byte SHUTDOWN       = 3;
+    
+    /** request: send console string; command */
+    static final byte CONSOLE        = 4;
+    
+    /** request: clear pending console strings */
+    static final byte CLEAR_CONSOLE  = 5;
+    
+    /** request: reset server; millis */
+    static final byte RESET          = 6;
+    
+    /** request: terminate the worker */
+    static final byte EXIT           = 7;
+    
+    /** request: dispatch commands as console within one tick; millis, count, command lines */
+    static final byte DISPATCH       = 8;
+    
+    /** request: set tick mode; mode ordinal */
+    static final byte TICK_MODE      = 9;
+    
+    /** request: run ticks in step mode; ticks, millis */
+    static final byte TICK           = 10;
+    
+    /** request: set capture filter; minimum level ordinal, max length, allowed prefix count, allowed prefixes, denied prefix count, denied prefixes */
+    static final byte CAPTURE_FILTER = 11;
+    
+    /** response: result; boolean value */
+    static final byte RESULT         = 20;
+    
+    /** response: failure; message */
+    static final byte FAILURE        = 21;
+    
+    /** response: multiple results; count, boolean values */
+    static final byte RESULTS        = 22;
+    
+    /** event: log message; level ordinal, message, nano time, thread name, tick */
+    static final byte LOG            = 30;
+    
+    /** event: tick finished; tick, nano time, duration */
+    static final byte TICKED         = 33;
+    
+    /** event: startup phase finished; phase name, nano time */
+    static final byte PHASE          = 34;
+    
+    /** event: messages rejected by the capture filter since the last event; dropped by level, dropped by prefix, truncated */
+    static final byte FILTERED       = 35;
+    
+    /** event: server entered main loop */
+    static final byte STARTED        = 31;
+    
+    /** event: server was shut down */
+    static final byte STOPPED        = 32;
+    
+    /**
+     * Hidden constructor
+     */
+    private WorkerProtocol()
+    {
+        // empty
+    }
+    
+    /**
+     * Writes a string of any length
+     * 
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}
+     * 
+     * @param in
+     * @return string
+     * @throws IOException
+     */
+    static String readString(DataInputStream in) throws IOException
+    {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Returns the stack trace of given exception
+     * 
+     * @param ex
+     * @return stack trace
+     */
+    static String toString(Throwable ex)
+    {
+        final StringWriter writer = new StringWriter();
+        ex.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+    
+}
@@ -0,0 +1,552 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.sample;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.powermock.core.classloader.MockClassLoader;
+import org.powermock.core.classloader.annotations.UseClassPathAdjuster;
+import org.powermock.core.transformers.MockTransformer;
+import org.powermock.reflect.Whitebox;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+
+/**
+ * A mock class loader storing the transformed classes within a content addressed cache directory.
+ * 
+ * <p>
+ * Only the classes modified by the mock transformer chain are cached; all other classes are neither hashed nor written. The cache key is a hash of the
+ * original class bytes, the transformer chain, the class file transformers, the classes to modify and the packages to defer. On a hit the cached bytes
+ * are defined directly, skipping javassist. The cache survives the test vm, so repeated builds do not transform the nukkit classes again. Set the system
+ * property {@value #CACHE_PROPERTY} to a directory to relocate the cache or to {@code false} to disable it.
+ * </p>
+ * 
+ * <p>
+ * The entries are kept within a sub directory per powermock version; the directories of other versions are deleted as soon as the first class loader is
+ * created. If the entries exceed the size given by the system property {@value #SIZE_PROPERTY} in megabytes (defaults to 256) the oldest entries are
+ * deleted.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+final class CachingMockClassLoader extends MockClassLoader
+{
+    
+    /** the system property holding the cache directory */
+    static final String                      CACHE_PROPERTY        = "nukkit.test.transformcache"; //$NON-NLS-1$
+    
+    /** the system property holding the maximum cache size in megabytes */
+    static final String                      SIZE_PROPERTY         = "nukkit.test.transformcache.size"; //$NON-NLS-1$
+    
+    /** the prefix of the cache directories per powermock version */
+    private static final String              VERSION_PREFIX        = "v-"; //$NON-NLS-1$
+    
+    /** the powermock version */
+    private static final String              VERSION               = powermockVersion();
+    
+    /** the maximum cache size in bytes */
+    private static final long                CACHE_LIMIT           = Long.getLong(SIZE_PROPERTY, 256).longValue() << 20;
+    
+    /** the cache directory of the powermock version; {@code null} if caching is disabled */
+    private static final File                CACHE_DIR             = cacheDir();
+    
+    /** the packages to defer */
+    private final String                     deferred;
+    
+    /** the classes to modify; initialized lazily because the super constructor already adds classes */
+    private Set<String>                      modify;
+    
+    /** the transformer chain */
+    private String                           chain                 = ""; //$NON-NLS-1$
+    
+    /** the class file transformers rewriting classes instead of the mock transformer chain */
+    private final List<ClassFileTransformer> classFileTransformers = new ArrayList<>();
+    
+    /** the class file transformer names */
+    private String                           rewriters             = ""; //$NON-NLS-1$
+    
+    /** the time spent loading nested classes while the current class of the thread loads */
+    private static final ThreadLocal<long[]> NESTED_NANOS          = ThreadLocal.withInitial(() -> new long[1]);
+    
+    /** the counters and timings */
+    private final ClassLoadingStats          stats                 = new ClassLoadingStats();
+    
+    /**
+     * Constructor
+     * 
+     * @param classesToMock
+     *            the classes to be prepared
+     * @param packagesToDefer
+     *            the packages (and classes) to be loaded by the parent class loader
+     * @param useClassPathAdjuster
+     *            the class path adjuster or {@code null}
+     */
+    CachingMockClassLoader(String[] classesToMock, String[] packagesToDefer, UseClassPathAdjuster useClassPathAdjuster)
+    {
+        super(classesToMock, packagesToDefer, useClassPathAdjuster);
+        final Set<String> sorted = new TreeSet<>();
+        if (packagesToDefer != null)
+        {
+            Collections.addAll(sorted, packagesToDefer);
+        }
+        this.deferred = sorted.toString();
+    }
+    
+    /**
+     * Returns the cache directory of the powermock version and evicts stale entries
+     * 
+     * @return cache directory or {@code null} if caching is disabled
+     */
+    private static File cacheDir()
+    {
+        final String value = System.getProperty(CACHE_PROPERTY);
+        if ("false".equals(value)) //$NON-NLS-1$
+        {
+            return null;
+        }
+        final File root = value == null || value.isEmpty() ? new File(System.getProperty("java.io.tmpdir"), "nukkit-test-transforms") : new File(value); //$NON-NLS-1$ //$NON-NLS-2$
+        final File dir = new File(root, VERSION_PREFIX + sha256(VERSION.getBytes(StandardCharsets.UTF_8)).substring(0, 16));
+        evict(root, dir);
+        return dir;
+    }
+    
+    /**
+     * Deletes the cache directories of other powermock versions and the oldest entries exceeding the cache size
+     * 
+     * @param root
+     *            the cache root directory
+     * @param dir
+     *            the cache directory of the powermock version
+     */
+    private static void evict(File root, File dir)
+    {
+        final File[] versions = root.listFiles();
+        if (versions == null)
+        {
+            return;
+        }
+        for (final File version : versions)
+        {
+            if (version.isDirectory() && version.getName().startsWith(VERSION_PREFIX) && !version.equals(dir))
+            {
+                delete(version.toPath());
+            }
+        }
+        
+        final List<File> entries = new ArrayList<>();
+        long size = 0;
+        final File[] buckets = dir.listFiles();
+        for (final File bucket : buckets == null ? new File[0] : buckets)
+        {
+            final File[] files = bucket.listFiles();
+            for (final File file : files == null ? new File[0] : files)
+            {
+                entries.add(file);
+                size += file.length();
+            }
+        }
+        if (size <= CACHE_LIMIT)
+        {
+            return;
+        }
+        // evict down to three quarters, so that the next vms do not evict again
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        for (final File entry : entries)
+        {
+            if (size <= CACHE_LIMIT / 4 * 3)
+            {
+                return;
+            }
+            size -= entry.length();
+            entry.delete();
+        }
+    }
+    
+    /**
+     * Deletes given directory with all files; other test vms may still read the files, so failures are ignored
+     * 
+     * @param dir
+     */
+    private static void delete(Path dir)
+    {
+        try (final Stream<Path> paths = Files.walk(dir))
+        {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+        catch (IOException ex)
+        {
+            // caching is best effort
+        }
+    }
+    
+    /**
+     * Returns the powermock version; falls back to the location of the powermock classes
+     * 
+     * @return version
+     */
+    private static String powermockVersion()
+    {
+        final String version = MockClassLoader.class.getPackage().getImplementationVersion();
+        if (version != null)
+        {
+            return version;
+        }
+        return String.valueOf(MockClassLoader.class.getProtectionDomain().getCodeSource().getLocation());
+    }
+    
+    @Override
+    public synchronized void addClassesToModify(String... classes)
+    {
+        super.addClassesToModify(classes);
+        if (this.modify == null)
+        {
+            this.modify = new TreeSet<>();
+        }
+        if (classes != null)
+        {
+            Collections.addAll(this.modify, classes);
+        }
+    }
+    
+    /**
+     * Sets the class file transformers; a class changed by these transformers bypasses the mock transformer chain
+     * 
+     * @param transformers
+     */
+    void setClassFileTransformers(List<ClassFileTransformer> transformers)
+    {
+        this.classFileTransformers.clear();
+        this.classFileTransformers.addAll(transformers);
+        final StringBuilder builder = new StringBuilder();
+        for (final ClassFileTransformer transformer : transformers)
+        {
+            builder.append(transformer.getClass().getName()).append(';');
+        }
+        this.rewriters = builder.toString();
+    }
+    
+    @Override
+    public void setMockTransformerChain(List<MockTransformer> mockTransformerChain)
+    {
+        super.setMockTransformerChain(mockTransformerChain);
+        final StringBuilder builder = new StringBuilder();
+        for (final MockTransformer transformer : mockTransformerChain)
+        {
+            builder.append(transformer.getClass().getName()).append(';');
+        }
+        this.chain = builder.toString();
+    }
+    
+    @Override
+    protected Class<?> loadModifiedClass(String name) throws ClassFormatError, ClassNotFoundException
+    {
+        // defining a class loads its super classes and interfaces; their time is recorded on their own and subtracted from the self time of this class
+        final long[] nested = NESTED_NANOS.get();
+        final long outer = nested[0];
+        nested[0] = 0;
+        final long start = System.nanoTime();
+        try
+        {
+            return this.load(name, start, nested);
+        }
+        finally
+        {
+            nested[0] = outer + System.nanoTime() - start;
+        }
+    }
+    
+    /**
+     * Loads a class and records its self time
+     * 
+     * @param name
+     *            class name
+     * @param start
+     *            the nano time the load started
+     * @param nested
+     *            the time spent loading nested classes
+     * @return loaded class
+     * @throws ClassFormatError
+     * @throws ClassNotFoundException
+     */
+    private Class<?> load(String name, long start, long[] nested) throws ClassFormatError, ClassNotFoundException
+    {
+        final boolean modified = this.isModified(name);
+        final byte[] original = this.classFileTransformers.isEmpty() && (CACHE_DIR == null || !modified) ? null : this.readOriginal(name);
+        if (original == null)
+        {
+            final Class<?> result = super.loadModifiedClass(name);
+            this.stats.record(name, System.nanoTime() - start - nested[0], modified, false);
+            return result;
+        }
+        
+        // the class file transformers skip most classes cheaply; hashing and writing only pays off for the mock transformer chain
+        final File file = CACHE_DIR == null || !modified ? null : this.cacheFile(original);
+        if (file != null && file.isFile())
+        {
+            try
+            {
+                final Class<?> result = this.define(name, Files.readAllBytes(file.toPath()));
+                this.stats.record(name, System.nanoTime() - start - nested[0], false, true);
+                return result;
+            }
+            catch (IOException ex)
+            {
+                // broken cache entry; transform again
+            }
+        }
+        
+        final byte[] rewritten = this.applyClassFileTransformers(name, original);
+        final Class<?> result;
+        if (rewritten != null)
+        {
+            // bypasses the mock transformer chain
+            if (file != null)
+            {
+                write(file, rewritten);
+            }
+            result = this.define(name, rewritten);
+        }
+        else
+        {
+            result = super.loadModifiedClass(name);
+            if (file != null)
+            {
+                this.store(name, file);
+            }
+        }
+        this.stats.record(name, System.nanoTime() - start - nested[0], rewritten != null || modified, false);
+        return result;
+    }
+    
+    /**
+     * Checks if the mock transformer chain modifies given class; deferred classes never reach the loader
+     * 
+     * @param name
+     *            class name
+     * @return {@code true} if given class is modified
+     */
+    private synchronized boolean isModified(String name)
+    {
+        return this.modify != null && (this.modify.contains(name) || this.modify.contains(MODIFY_ALL_CLASSES));
+    }
+    
+    /**
+     * Returns the counters and timings of this class loader
+     * 
+     * @return class loading statistics
+     */
+    ClassLoadingStats getStats()
+    {
+        return this.stats;
+    }
+    
+    /**
+     * Defines a class with the protection domain of the original class
+     * 
+     * @param name
+     *            class name
+     * @param bytes
+     *            class bytes
+     * @return defined class
+     * @throws ClassNotFoundException
+     */
+    private Class<?> define(String name, byte[] bytes) throws ClassNotFoundException
+    {
+        final Class<?> deferClass = this.getParent().loadClass(name);
+        return this.defineClass(name, bytes, 0, bytes.length, deferClass.getProtectionDomain());
+    }
+    
+    /**
+     * Applies the class file transformers
+     * 
+     * @param name
+     *            class name
+     * @param original
+     *            the original class bytes
+     * @return rewritten class bytes or {@code null} if no transformer changed the class
+     */
+    private byte[] applyClassFileTransformers(String name, byte[] original)
+    {
+        byte[] result = null;
+        for (final ClassFileTransformer transformer : this.classFileTransformers)
+        {
+            try
+            {
+                final byte[] bytes = transformer.transform(this, name.replace('.', '/'), null, null, result == null ? original : result);
+                if (bytes != null)
+                {
+                    result = bytes;
+                }
+            }
+            catch (IllegalClassFormatException ex)
+            {
+                final ClassFormatError error = new ClassFormatError(ex.getMessage());
+                error.initCause(ex);
+                throw error;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the original class bytes from the parent class loader
+     * 
+     * @param name
+     *            class name
+     * @return class bytes or {@code null} if the class is no class path resource
+     */
+    private byte[] readOriginal(String name)
+    {
+        try (final InputStream is = this.getParent().getResourceAsStream(name.replace('.', '/') + ".class")) //$NON-NLS-1$
+        {
+            if (is == null)
+            {
+                return null;
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+        catch (IOException ex)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Returns the cache file for given class bytes
+     * 
+     * @param original
+     *            the original class bytes
+     * @return cache file
+     */
+    private File cacheFile(byte[] original)
+    {
+        final String modified;
+        synchronized (this)
+        {
+            modified = String.valueOf(this.modify);
+        }
+        final String hex = sha256((this.chain + '\n' + this.rewriters + '\n' + modified + '\n' + this.deferred + '\n').getBytes(StandardCharsets.UTF_8), original);
+        return new File(new File(CACHE_DIR, hex.substring(0, 2)), hex.substring(2) + ".class"); //$NON-NLS-1$
+    }
+    
+    /**
+     * Returns the sha-256 hash of given data
+     * 
+     * @param data
+     * @return hex string
+     */
+    private static String sha256(byte[]... data)
+    {
+        try
+        {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+            for (final byte[] bytes : data)
+            {
+                digest.update(bytes);
+            }
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : digest.digest())
+            {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Stores the bytes of a class that was just defined by the super class
+     * 
+     * @param name
+     *            class name
+     * @param file
+     *            cache file
+     */
+    private void store(String name, File file)
+    {
+        try
+        {
+            // the super class keeps the transformed class within its (unpruned) class pool
+            final ClassPool pool = (ClassPool) Whitebox.getInternalState(this, "classPool", MockClassLoader.class); //$NON-NLS-1$
+            final CtClass type = pool.getOrNull(name);
+            if (type == null)
+            {
+                return;
+            }
+            write(file, type.toBytecode());
+        }
+        catch (Exception ex)
+        {
+            // caching is best effort
+        }
+    }
+    
+    /**
+     * Writes a cache entry
+     * 
+     * @param file
+     *            cache file
+     * @param bytes
+     *            class bytes
+     */
+    private static void write(File file, byte[] bytes)
+    {
+        try
+        {
+            file.getParentFile().mkdirs();
+            // other test vms may write the same entry concurrently
+            final File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile()); //$NON-NLS-1$
+            Files.write(tmp.toPath(), bytes);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ex)
+        {
+            // caching is best effort
+        }
+    }
+    
+}
@@ -0,0 +1,196 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test.sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings of a mock class loader; see {@link PowermockState#getClassLoadingStats()}.
+ * 
+ * @author mepeisen
+ */
+public final class ClassLoadingStats
+{
+    
+    /** the number of slowest classes kept */
+    private static final int                 SLOWEST_COUNT = 10;
+    
+    /** the number of classes loaded by the mock class loader */
+    private final LongAdder                  loaded        = new LongAdder();
+    
+    /** the number of classes transformed by the mock transformer chain or a class file transformer */
+    private final LongAdder                  transformed   = new LongAdder();
+    
+    /** the number of classes defined from the transform cache */
+    private final LongAdder                  cacheHits     = new LongAdder();
+    
+    /** the self time spent loading and transforming */
+    private final LongAdder                  nanos         = new LongAdder();
+    
+    /** the slowest classes; the fastest of them first; guarded by itself */
+    private final PriorityQueue<ClassTiming> slowest       = new PriorityQueue<>();
+    
+    /**
+     * Records a loaded class
+     * 
+     * @param name
+     *            class name
+     * @param durationNanos
+     *            the self time spent loading the class; excludes the classes loaded meanwhile
+     * @param transform
+     *            {@code true} if the class was transformed
+     * @param cached
+     *            {@code true} if the class was defined from the cache
+     */
+    void record(String name, long durationNanos, boolean transform, boolean cached)
+    {
+        this.loaded.increment();
+        if (transform)
+        {
+            this.transformed.increment();
+        }
+        if (cached)
+        {
+            this.cacheHits.increment();
+        }
+        this.nanos.add(durationNanos);
+        synchronized (this.slowest)
+        {
+            if (this.slowest.size() < SLOWEST_COUNT)
+            {
+                this.slowest.add(new ClassTiming(name, durationNanos));
+            }
+            else if (this.slowest.peek().nanos < durationNanos)
+            {
+                this.slowest.poll();
+                this.slowest.add(new ClassTiming(name, durationNanos));
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of classes loaded by the mock class loader
+     * 
+     * @return class count
+     */
+    public long getLoaded()
+    {
+        return this.loaded.sum();
+    }
+    
+    /**
+     * Returns the number of classes transformed by the mock transformer chain or a class file transformer; the other classes were defined from the cache
+     * or loaded unmodified
+     * 
+     * @return class count
+     */
+    public long getTransformed()
+    {
+        return this.transformed.sum();
+    }
+    
+    /**
+     * Returns the number of classes defined from the transform cache
+     * 
+     * @return class count
+     */
+    public long getCacheHits()
+    {
+        return this.cacheHits.sum();
+    }
+    
+    /**
+     * Returns the total time spent loading and transforming classes; each class counts its self time, so nested loads of super classes are not counted twice
+     * 
+     * @return milliseconds
+     */
+    public double getTotalMillis()
+    {
+        return this.nanos.sum() / 1000000d;
+    }
+    
+    /**
+     * Returns the slowest classes
+     * 
+     * @return class names with their self times, the slowest first
+     */
+    public List<String> getSlowest()
+    {
+        final List<ClassTiming> timings;
+        synchronized (this.slowest)
+        {
+            timings = new ArrayList<>(this.slowest);
+        }
+        timings.sort(null);
+        final List<String> result = new ArrayList<>();
+        for (int i = timings.size() - 1; i >= 0; i--)
+        {
+            result.add(timings.get(i).toString());
+        }
+        return result;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return String.format("%d classes loaded, %d transformed, %d from cache, %.2f ms", //$NON-NLS-1$
+                Long.valueOf(this.getLoaded()), Long.valueOf(this.getTransformed()), Long.valueOf(this.getCacheHits()), Double.valueOf(this.getTotalMillis()));
+    }
+    
+    /**
+     * The loading time of a class
+     */
+    private static final class ClassTiming implements Comparable<ClassTiming>
+    {
+        
+        /** class name */
+        final String name;
+        
+        /** loading time */
+        final long   nanos;
+        
+        /**
+         * Constructor
+         * 
+         * @param name
+         * @param nanos
+         */
+        ClassTiming(String name, long nanos)
+        {
+            this.name = name;
+            this.nanos = nanos;
+        }
+        
+        @Override
+        public int compareTo(ClassTiming o)
+        {
+            return Long.compare(this.nanos, o.nanos);
+        }
+        
+        @Override
+        public String toString()
+        {
+            return String.format("%s (%.2f ms)", this.name, Double.valueOf(this.nanos / 1000000d)); //$NON-NLS-1$
+        }
+        
+    }
+    
+}
@@ -17,12 +17,18 @@
  */
 package eu.xworlds.nukkit.test.sample;
 
+import java.lang.instrument.ClassFileTransformer;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.junit.gen5.api.extension.AfterEachExtensionPoint;
 import org.junit.gen5.api.extension.BeforeAllExtensionPoint;
@@ -58,6 +64,22 @@ public class PowermockExtension implements InstancePostProcessor, AfterEachExten
     
     /** the extension namespace */
     private static final Namespace NS = Namespace.of(PowermockExtension.class);
+    
+    /** the maximum number of cached mock class loaders */
+    private static final int MAX_CACHED_LOADERS = 8;
+    
+    /** the mock class loaders by test class, classes to prepare and packages to ignore; the least recently used loader is dropped first */
+    private static final Map<List<Object>, ClassLoader> LOADERS = new LinkedHashMap<List<Object>, ClassLoader>(16, 0.75f, true) {
+        
+        /** serial version uid */
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, ClassLoader> eldest)
+        {
+            return this.size() > MAX_CACHED_LOADERS;
+        }
+    };
 
     @Override
     public void beforeEach(TestExtensionContext context) throws Exception
@@ -77,6 +99,11 @@ public class PowermockExtension implements InstancePostProcessor, AfterEachExten
             Thread.currentThread().setContextClassLoader(state.getOrigClassLoader()); // JUnit4TestSuiteChunkerImpl:108
             state.setOrigClassLoader(null);
         }
+        // the mock class loader is reused by the next test method; drop the mocks of this one
+        synchronized (MockRepository.class)
+        {
+            MockRepository.clear();
+        }
     }
 
     @Override
@@ -107,18 +134,11 @@ public class PowermockExtension implements InstancePostProcessor, AfterEachExten
         final Method origMethod = context.getTestMethod();
         
         // powermock class loader and clone
-        final TestClassesExtractor prepareForTestExtractor = new PrepareForTestExtractorImpl();
-        final String[] prepareForTestClasses = prepareForTestExtractor.getTestClasses(origClass); // AbstractTestSuiteChunkerImpl:176
-        final String[] stateTestClasses = state.getClassesToPrepareAsString(); // classes to prepare, that can be injected by other extensions
-        final String[] stateIgnorePackages = state.getPackagesToIgnoreAsArray(); // packages to ignore, that can be injected by other extensions
-        final String[] ignorePackages = new PowerMockIgnorePackagesExtractorImpl().getPackagesToIgnore(origClass);
-        final ClassLoader defaultMockLoader = createNewClassloader(
-                origClass,
-                new ArrayMergerImpl().mergeArrays(String.class, prepareForTestClasses, stateTestClasses),
-                new ArrayMergerImpl().mergeArrays(String.class, ignorePackages, stateIgnorePackages),
-                new MockTransformer[0]); // AbstractTestSuiteChunkerImpl:178
-        
-        registerProxyframework(defaultMockLoader); // AbstractTestSuiteChunkerImpl:181
+        final ClassLoader defaultMockLoader = this.getMockClassLoader(origClass, state);
+        if (defaultMockLoader instanceof CachingMockClassLoader)
+        {
+            state.setClassLoadingStats(((CachingMockClassLoader) defaultMockLoader).getStats());
+        }
         
         // create new instance etc. from new class loader
         final Class<?> newTestClass = defaultMockLoader.loadClass(origClass.getName());
@@ -145,6 +165,120 @@ public class PowermockExtension implements InstancePostProcessor, AfterEachExten
     
 
 
+    /**
+     * Returns the mock class loader for given test class; the transformed classes are reused by all test methods with equal settings
+     * 
+     * @param origClass
+     *            the test class
+     * @param state
+     *            the powermock state
+     * @return mock class loader
+     */
+    private ClassLoader getMockClassLoader(Class<?> origClass, PowermockState state)
+    {
+        final String[] classesToPrepare = getClassesToPrepare(origClass, state);
+        final String[] packagesToIgnore = getPackagesToIgnore(origClass, state);
+        
+        final Set<String> transformerNames = new TreeSet<>();
+        for (final Class<? extends ClassFileTransformer> transformer : state.getClassFileTransformers())
+        {
+            transformerNames.add(transformer.getName());
+        }
+        
+        final List<Object> key = Arrays.asList(origClass, toSortedSet(classesToPrepare), toSortedSet(packagesToIgnore), transformerNames);
+        synchronized (LOADERS)
+        {
+            ClassLoader defaultMockLoader = LOADERS.get(key);
+            if (defaultMockLoader == null)
+            {
+                defaultMockLoader = createNewClassloader(
+                        origClass,
+                        classesToPrepare,
+                        packagesToIgnore,
+                        createClassFileTransformers(state.getClassFileTransformers()),
+                        new MockTransformer[0]); // AbstractTestSuiteChunkerImpl:178
+                
+                registerProxyframework(defaultMockLoader); // AbstractTestSuiteChunkerImpl:181
+                LOADERS.put(key, defaultMockLoader);
+            }
+            return defaultMockLoader;
+        }
+    }
+    
+    /**
+     * Creates the class file transformers
+     * 
+     * @param types
+     *            the transformer classes
+     * @return transformers
+     */
+    private static List<ClassFileTransformer> createClassFileTransformers(Set<Class<? extends ClassFileTransformer>> types)
+    {
+        final List<ClassFileTransformer> result = new ArrayList<>();
+        for (final Class<? extends ClassFileTransformer> type : types)
+        {
+            try
+            {
+                result.add(type.newInstance());
+            }
+            catch (InstantiationException | IllegalAccessException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the classes to prepare from {@code PrepareForTest} annotations and the powermock state
+     * 
+     * @param origClass
+     *            the test class
+     * @param state
+     *            the powermock state
+     * @return classes to prepare
+     */
+    private static String[] getClassesToPrepare(Class<?> origClass, PowermockState state)
+    {
+        final TestClassesExtractor prepareForTestExtractor = new PrepareForTestExtractorImpl();
+        final String[] prepareForTestClasses = prepareForTestExtractor.getTestClasses(origClass); // AbstractTestSuiteChunkerImpl:176
+        final String[] stateTestClasses = state.getClassesToPrepareAsString(); // classes to prepare, that can be injected by other extensions
+        return new ArrayMergerImpl().mergeArrays(String.class, prepareForTestClasses, stateTestClasses);
+    }
+    
+    /**
+     * Returns the packages to ignore from {@code PowerMockIgnore} annotations and the powermock state
+     * 
+     * @param origClass
+     *            the test class
+     * @param state
+     *            the powermock state
+     * @return packages to ignore
+     */
+    private static String[] getPackagesToIgnore(Class<?> origClass, PowermockState state)
+    {
+        final String[] stateIgnorePackages = state.getPackagesToIgnoreAsArray(); // packages to ignore, that can be injected by other extensions
+        final String[] ignorePackages = new PowerMockIgnorePackagesExtractorImpl().getPackagesToIgnore(origClass);
+        return new ArrayMergerImpl().mergeArrays(String.class, ignorePackages, stateIgnorePackages);
+    }
+    
+    /**
+     * Returns the sorted elements of given array
+     * 
+     * @param values
+     *            array or {@code null}
+     * @return sorted set
+     */
+    private static Set<String> toSortedSet(String[] values)
+    {
+        final Set<String> result = new TreeSet<>();
+        if (values != null)
+        {
+            Collections.addAll(result, values);
+        }
+        return result;
+    }
+    
     /**
      * @return <code>true</code> if there are some mock policies that
      *         contributes with classes that should be loaded by the mock
@@ -160,8 +294,34 @@ public class PowermockExtension implements InstancePostProcessor, AfterEachExten
         return hasMockPolicyProvidedClasses;
     }
     
+    /**
+     * Creates a new mock class loader that is not bound to a test class; used to isolate code that relies on static state.
+     * 
+     * @param classesToPrepare
+     *            the classes to be prepared
+     * @param packagesToIgnore
+     *            the packages (and classes) to be loaded by the parent class loader
+     * @param classFileTransformers
+     *            the class file transformers rewriting classes instead of the mock transformers
+     * @return mock class loader with registered proxy framework
+     */
+    public static ClassLoader createIsolatedClassLoader(final String[] classesToPrepare, final String[] packagesToIgnore, ClassFileTransformer... classFileTransformers)
+    {
+        final List<MockTransformer> mockTransformerChain = new ArrayList<MockTransformer>();
+        mockTransformerChain.add(new MainMockTransformer());
+        final MockClassLoader mockLoader = AccessController.doPrivileged(new PrivilegedAction<MockClassLoader>() {
+            public MockClassLoader run() {
+                return new CachingMockClassLoader(classesToPrepare, packagesToIgnore, (UseClassPathAdjuster) null);
+            }
+        });
+        mockLoader.setMockTransformerChain(mockTransformerChain);
+        ((CachingMockClassLoader) mockLoader).setClassFileTransformers(Arrays.asList(classFileTransformers));
+        registerProxyframework(mockLoader);
+        return mockLoader;
+    }
+    
     // taken from AbstractTestChunkerImpl
-    private void registerProxyframework(ClassLoader classLoader) {
+    private static void registerProxyframework(ClassLoader classLoader) {
         Class<?> proxyFrameworkClass = null;
         try {
             proxyFrameworkClass = Class.forName("org.powermock.api.extension.proxyframework.ProxyFrameworkImpl", false, classLoader);
@@ -191,6 +351,7 @@ public class PowermockExtension implements InstancePostProcessor, AfterEachExten
             Class<?> testClass,
             String[] preliminaryClassesToLoadByMockClassloader,
             final String[] packagesToIgnore,
+            List<ClassFileTransformer> classFileTransformers,
             MockTransformer... extraMockTransformers) {
         ClassLoader mockLoader = null;
         final String[] classesToLoadByMockClassloader = makeSureArrayContainsTestClassName(
@@ -205,11 +366,12 @@ public class PowermockExtension implements InstancePostProcessor, AfterEachExten
             final UseClassPathAdjuster useClassPathAdjuster = testClass.getAnnotation(UseClassPathAdjuster.class);
             mockLoader = AccessController.doPrivileged(new PrivilegedAction<MockClassLoader>() {
                 public MockClassLoader run() {
-                    return new MockClassLoader(classesToLoadByMockClassloader, packagesToIgnore, useClassPathAdjuster);
+                    return new CachingMockClassLoader(classesToLoadByMockClassloader, packagesToIgnore, useClassPathAdjuster);
                 }
             });
             MockClassLoader mockClassLoader = (MockClassLoader) mockLoader;
             mockClassLoader.setMockTransformerChain(mockTransformerChain);
+            ((CachingMockClassLoader) mockClassLoader).setClassFileTransformers(classFileTransformers);
             new MockPolicyInitializerImpl(testClass).initialize(mockLoader);
         }
         return mockLoader;
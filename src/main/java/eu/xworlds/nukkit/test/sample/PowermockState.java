@@ -17,7 +17,9 @@
  */
 package eu.xworlds.nukkit.test.sample;
 
+import java.lang.instrument.ClassFileTransformer;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -42,6 +44,16 @@ public class PowermockState
      * packages to ignore
      */
     private Set<String> packagesToIgnore = new HashSet<>();
+    
+    /**
+     * class file transformers rewriting classes instead of the mock transformers; need a public no-arg constructor
+     */
+    private Set<Class<? extends ClassFileTransformer>> classFileTransformers = new LinkedHashSet<>();
+    
+    /**
+     * counters and timings of the mock class loader
+     */
+    private ClassLoadingStats classLoadingStats;
 
     /**
      * @return the origClassLoader
@@ -89,6 +101,31 @@ public class PowermockState
         return this.packagesToIgnore;
     }
 
+    /**
+     * @return the classFileTransformers
+     */
+    public Set<Class<? extends ClassFileTransformer>> getClassFileTransformers()
+    {
+        return this.classFileTransformers;
+    }
+
+    /**
+     * @return the classLoadingStats of the mock class loader; {@code null} if the test does not use a mock class loader. The mock class loader is
+     *         shared by the test methods of a class, so the statistics include previous test methods.
+     */
+    public ClassLoadingStats getClassLoadingStats()
+    {
+        return this.classLoadingStats;
+    }
+
+    /**
+     * @param classLoadingStats the classLoadingStats to set
+     */
+    void setClassLoadingStats(ClassLoadingStats classLoadingStats)
+    {
+        this.classLoadingStats = classLoadingStats;
+    }
+
     /**
      * @return
      */
@@ -0,0 +1,78 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.servertests;
+
+import static eu.xworlds.nukkit.test.Criterias.defaultServerConfig;
+import static eu.xworlds.nukkit.test.Criterias.waitStarted;
+import static eu.xworlds.nukkit.test.LogEventCheck.contains;
+import static eu.xworlds.nukkit.test.LogEventCheck.prefix;
+import static eu.xworlds.nukkit.test.NukkitAssertions.assertLogSequence;
+
+import org.junit.gen5.api.extension.ExtendWith;
+import org.junit.gen5.junit4.runner.JUnit5;
+import org.junit.runner.RunWith;
+
+import eu.xworlds.nukkit.test.LogSequence;
+import eu.xworlds.nukkit.test.NukkitExtension;
+import eu.xworlds.nukkit.test.NukkitTestSession;
+import eu.xworlds.nukkit.test.sample.PowermockExtension;
+
+/**
+ * A test case asserting a log sequence that starts within the present log while the server keeps logging.
+ * 
+ * @author mepeisen
+ */
+@RunWith(JUnit5.class)
+@ExtendWith(NukkitExtension.class)
+@ExtendWith(PowermockExtension.class)
+public class ConcurrentLogSequenceTest
+{
+    
+    /**
+     * Tests the sequence of the startup messages followed by messages logged while the present messages are replayed
+     * 
+     * @throws InterruptedException
+     */
+    @org.junit.gen5.api.Test
+    public void testSequenceWhileLogging() throws InterruptedException
+    {
+        final NukkitTestSession session = new NukkitTestSession();
+        session.startWith(defaultServerConfig(), waitStarted());
+        
+        final Thread logger = new Thread(() -> {
+            for (int i = 0; i < 100; i++)
+            {
+                session.sendConsoleString("say concurrent " + i); //$NON-NLS-1$
+            }
+        });
+        logger.start();
+        try
+        {
+            assertLogSequence(session, 10000, new LogSequence()
+                    .then(prefix("Loading")) //$NON-NLS-1$
+                    .then(contains("concurrent 0")) //$NON-NLS-1$
+                    .then(contains("concurrent 99"))); //$NON-NLS-1$
+        }
+        finally
+        {
+            logger.join();
+            session.stop().waitShutdownComplete(5000);
+        }
+    }
+    
+}
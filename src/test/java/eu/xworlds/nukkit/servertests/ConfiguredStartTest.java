@@ -0,0 +1,60 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.servertests;
+
+import static eu.xworlds.nukkit.test.Criterias.serverConfig;
+import static eu.xworlds.nukkit.test.Criterias.waitStarted;
+import static org.junit.gen5.api.Assertions.assertTrue;
+
+import org.junit.gen5.api.extension.ExtendWith;
+import org.junit.gen5.junit4.runner.JUnit5;
+import org.junit.runner.RunWith;
+
+import eu.xworlds.nukkit.test.NukkitExtension;
+import eu.xworlds.nukkit.test.NukkitServerConfig;
+import eu.xworlds.nukkit.test.NukkitTestSession;
+import eu.xworlds.nukkit.test.sample.PowermockExtension;
+
+/**
+ * A simple test case starting a pre-configured server without language selection.
+ * 
+ * @author mepeisen
+ */
+@RunWith(JUnit5.class)
+@ExtendWith(NukkitExtension.class)
+@ExtendWith(PowermockExtension.class)
+public class ConfiguredStartTest
+{
+    
+    /**
+     * Tests starting the server with written config
+     */
+    @org.junit.gen5.api.Test
+    public void testConfiguredStart()
+    {
+        final NukkitTestSession session = new NukkitTestSession();
+        session.startWith(
+            serverConfig(new NukkitServerConfig().setMotd("configured")), //$NON-NLS-1$
+            waitStarted()
+        );
+        assertTrue(session.isConfigured());
+        
+        session.stop().waitShutdownComplete(5000);
+    }
+    
+}
@@ -0,0 +1,62 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.servertests;
+
+import static eu.xworlds.nukkit.test.Criterias.defaultServerConfig;
+import static eu.xworlds.nukkit.test.Criterias.isolated;
+import static eu.xworlds.nukkit.test.Criterias.waitStarted;
+import static org.junit.gen5.api.Assertions.assertTrue;
+
+import org.junit.gen5.api.extension.ExtendWith;
+import org.junit.gen5.junit4.runner.JUnit5;
+import org.junit.runner.RunWith;
+
+import eu.xworlds.nukkit.test.NukkitExtension;
+import eu.xworlds.nukkit.test.NukkitTestSession;
+import eu.xworlds.nukkit.test.sample.PowermockExtension;
+
+/**
+ * A simple test case running two isolated servers at the same time.
+ * 
+ * @author mepeisen
+ */
+@RunWith(JUnit5.class)
+@ExtendWith(NukkitExtension.class)
+@ExtendWith(PowermockExtension.class)
+public class IsolatedSessionsTest
+{
+    
+    /**
+     * Tests starting two isolated servers
+     */
+    @org.junit.gen5.api.Test
+    public void testTwoServers()
+    {
+        final NukkitTestSession first = new NukkitTestSession();
+        final NukkitTestSession second = new NukkitTestSession();
+        first.startWith(isolated(), defaultServerConfig(), waitStarted());
+        second.startWith(isolated(), defaultServerConfig(), waitStarted());
+        assertTrue(first.isRunning());
+        assertTrue(second.isRunning());
+        
+        first.stop().waitShutdownComplete(5000);
+        assertTrue(second.isRunning());
+        second.stop().waitShutdownComplete(5000);
+    }
+    
+}
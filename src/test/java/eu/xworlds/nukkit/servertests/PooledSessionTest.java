@@ -0,0 +1,105 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.servertests;
+
+import static eu.xworlds.nukkit.test.LogEventCheck.contains;
+import static org.junit.gen5.api.Assertions.assertFalse;
+import static org.junit.gen5.api.Assertions.assertNotNull;
+import static org.junit.gen5.api.Assertions.assertNull;
+import static org.junit.gen5.api.Assertions.assertSame;
+import static org.junit.gen5.api.Assertions.assertTrue;
+
+import org.junit.gen5.api.extension.ExtendWith;
+import org.junit.gen5.junit4.runner.JUnit5;
+import org.junit.runner.RunWith;
+
+import eu.xworlds.nukkit.test.NukkitExtension;
+import eu.xworlds.nukkit.test.NukkitTestSession;
+import eu.xworlds.nukkit.test.api.NukkitInject;
+import eu.xworlds.nukkit.test.sample.PowermockExtension;
+
+/**
+ * Test cases receiving a running server from the session pool.
+ * 
+ * <p>
+ * Both tests share the pooled server. The test methods may run in any order, so each test checks that the server was reset and leaves a log message and a
+ * scheduled task behind for the next test.
+ * </p>
+ * 
+ * @author mepeisen
+ */
+@RunWith(JUnit5.class)
+@ExtendWith(NukkitExtension.class)
+@ExtendWith(PowermockExtension.class)
+public class PooledSessionTest
+{
+    
+    /** the log message left by the tests */
+    private static final String      LOG_MARKER  = "pooled log marker"; //$NON-NLS-1$
+    
+    /** the log message of the task left by the tests */
+    private static final String      TASK_MARKER = "pooled task marker"; //$NON-NLS-1$
+    
+    /** the session of the previous test */
+    private static NukkitTestSession previous;
+    
+    /**
+     * Tests the injection of a pooled and running server
+     * 
+     * @param session
+     */
+    @org.junit.gen5.api.Test
+    public void testPooledSession(@NukkitInject(pooled = true) NukkitTestSession session)
+    {
+        assertResetAndLeaveState(session);
+    }
+    
+    /**
+     * Tests that the pooled server was reset after the previous test
+     * 
+     * @param session
+     */
+    @org.junit.gen5.api.Test
+    public void testPooledSessionReset(@NukkitInject(pooled = true) NukkitTestSession session)
+    {
+        assertResetAndLeaveState(session);
+    }
+    
+    /**
+     * Checks that the state left by the previous test was cleared and leaves new state behind
+     * 
+     * @param session
+     */
+    private static void assertResetAndLeaveState(NukkitTestSession session)
+    {
+        assertTrue(session.isRunning());
+        if (previous != null)
+        {
+            assertSame(previous, session, "Pooled session not reused"); //$NON-NLS-1$
+            assertFalse(session.checkLog(contains(LOG_MARKER)), "Log of the previous test not cleared"); //$NON-NLS-1$
+            assertNull(session.waitForNewLog(contains(TASK_MARKER), 500), "Task of the previous test not cancelled"); //$NON-NLS-1$
+        }
+        previous = session;
+        
+        session.sendConsoleString("say " + LOG_MARKER); //$NON-NLS-1$
+        assertTrue(session.waitForLog(contains(LOG_MARKER), 5000));
+        session.getServer().getScheduler().scheduleRepeatingTask(() -> session.getServer().getLogger().info(TASK_MARKER), 1);
+        assertNotNull(session.waitForNewLog(contains(TASK_MARKER), 5000));
+    }
+    
+}
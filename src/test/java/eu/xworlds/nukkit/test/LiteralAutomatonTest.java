@@ -0,0 +1,107 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the {@link LiteralAutomaton}
+ * 
+ * @author mepeisen
+ */
+public class LiteralAutomatonTest
+{
+    
+    /**
+     * Scans a message and returns the occurrences as {@code literal@start}
+     * 
+     * @param message
+     * @param literals
+     * @return occurrences in order of their end index
+     */
+    private static List<String> scan(String message, String... literals)
+    {
+        final List<String> result = new ArrayList<>();
+        new LiteralAutomaton(Arrays.asList(literals)).scan(message, (literal, start) -> result.add(literals[literal] + "@" + start)); //$NON-NLS-1$
+        return result;
+    }
+    
+    /**
+     * Tests overlapping literals sharing suffixes
+     */
+    @Test
+    public void testOverlappingLiterals()
+    {
+        assertEquals(Arrays.asList("she@1", "he@2", "hers@2"), scan("ushers", "he", "she", "his", "hers")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+    }
+    
+    /**
+     * Tests a literal overlapping itself
+     */
+    @Test
+    public void testSelfOverlap()
+    {
+        assertEquals(Arrays.asList("aa@0", "aa@1", "aa@2"), scan("aaaa", "aa")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    }
+    
+    /**
+     * Tests a literal being a prefix of another literal
+     */
+    @Test
+    public void testPrefixLiteral()
+    {
+        assertEquals(Arrays.asList("ab@0", "abc@0", "ab@3"), scan("abcab", "ab", "abc")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+    }
+    
+    /**
+     * Tests the failure links after a partial match
+     */
+    @Test
+    public void testFailureAfterPartialMatch()
+    {
+        assertEquals(Arrays.asList("abd@2"), scan("ababd", "abd", "abc")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+    
+    /**
+     * Tests duplicate literals being reported for each index
+     */
+    @Test
+    public void testDuplicateLiterals()
+    {
+        assertEquals(Arrays.asList("x@1", "x@1"), scan("-x-", "x", "x")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    }
+    
+    /**
+     * Tests messages without occurrences
+     */
+    @Test
+    public void testNoMatch()
+    {
+        assertEquals(Collections.emptyList(), scan("Loading", "Done", "Error")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        assertEquals(Collections.emptyList(), scan("", "Done")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(Collections.emptyList(), scan("Done")); //$NON-NLS-1$
+    }
+    
+}
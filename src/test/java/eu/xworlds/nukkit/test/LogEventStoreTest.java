@@ -0,0 +1,90 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import cn.nukkit.utils.LogLevel;
+
+/**
+ * Tests of the {@link LogEventStore}
+ * 
+ * @author mepeisen
+ */
+public class LogEventStoreTest
+{
+    
+    /**
+     * Tests that readers lapped by concurrent producers read the overwritten events from the spill file in order and without gaps
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testLappedScanWithSpill() throws Exception
+    {
+        final File file = File.createTempFile("spill", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+        file.deleteOnExit();
+        final LogEventStore store = new LogEventStore(16, LogOverflow.SPILL_TO_DISK, () -> file, null);
+        final int perThread = 20000;
+        final Thread[] producers = new Thread[4];
+        for (int i = 0; i < producers.length; i++)
+        {
+            producers[i] = new Thread(() -> {
+                for (int j = 0; j < perThread; j++)
+                {
+                    store.append(LogLevel.INFO, "event", System.nanoTime(), "producer", 0); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            });
+            producers[i].start();
+        }
+        
+        final long[] last = { -1 };
+        final int[] gaps = new int[1];
+        long position = 0;
+        while (true)
+        {
+            boolean alive = false;
+            for (final Thread producer : producers)
+            {
+                alive |= producer.isAlive();
+            }
+            position = store.scan(position, (event) -> {
+                if (event.getSequence() != last[0] + 1)
+                {
+                    gaps[0]++;
+                }
+                last[0] = event.getSequence();
+                return false;
+            });
+            if (!alive && position == store.getHead())
+            {
+                break;
+            }
+        }
+        
+        assertEquals(0, gaps[0]);
+        assertEquals(producers.length * perThread - 1, last[0]);
+        assertEquals(0, store.getDropped());
+        store.clear();
+    }
+    
+}
@@ -0,0 +1,212 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * Tests of the {@link LogJournal}
+ * 
+ * @author mepeisen
+ */
+public class LogJournalTest
+{
+    
+    /** a chunk size forcing records to the next chunk */
+    private static final int CHUNK_SIZE = 256;
+    
+    /** the journal file */
+    private File             file;
+    
+    /**
+     * Creates the journal file
+     * 
+     * @throws IOException
+     */
+    @Before
+    public void createFile() throws IOException
+    {
+        this.file = File.createTempFile("log-journal", ".dat"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    
+    /**
+     * Deletes the journal file
+     */
+    @After
+    public void deleteFile()
+    {
+        this.file.delete();
+    }
+    
+    /**
+     * Appends events with sequence numbers and capture times from {@code 0} to {@code count - 1}
+     * 
+     * @param journal
+     * @param count
+     * @param messageLength
+     */
+    private static void append(LogJournal journal, int count, int messageLength)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            final StringBuilder message = new StringBuilder().append(i).append(':');
+            while (message.length() < messageLength)
+            {
+                message.append('x');
+            }
+            journal.append(new LogEvent(LogLevel.INFO, message.toString(), i, i, "main", i)); //$NON-NLS-1$
+        }
+    }
+    
+    /**
+     * Reads the events of given sequence range
+     * 
+     * @param journal
+     * @param from
+     * @param to
+     * @return events
+     */
+    private static List<LogEvent> read(LogJournal journal, long from, long to)
+    {
+        final List<LogEvent> result = new ArrayList<>();
+        assertEquals(-1, journal.scan(from, to, (event) -> !result.add(event)));
+        return result;
+    }
+    
+    /**
+     * Asserts that given events have ascending sequence numbers starting at given sequence number
+     * 
+     * @param events
+     * @param from
+     * @param count
+     */
+    private static void assertSequences(List<LogEvent> events, long from, int count)
+    {
+        assertEquals(count, events.size());
+        for (int i = 0; i < count; i++)
+        {
+            assertEquals(from + i, events.get(i).getSequence());
+            assertTrue(events.get(i).getMessage().startsWith((from + i) + ":")); //$NON-NLS-1$
+        }
+    }
+    
+    /**
+     * Tests seeking via the sparse index at and around the index entries
+     */
+    @Test
+    public void testSeek()
+    {
+        final LogJournal journal = new LogJournal(() -> this.file);
+        append(journal, LogJournal.INDEX_INTERVAL * 4 + 10, 8);
+        
+        assertSequences(read(journal, 0, 3), 0, 3);
+        assertSequences(read(journal, LogJournal.INDEX_INTERVAL - 1, LogJournal.INDEX_INTERVAL + 1), LogJournal.INDEX_INTERVAL - 1, 2);
+        assertSequences(read(journal, LogJournal.INDEX_INTERVAL * 2, LogJournal.INDEX_INTERVAL * 2 + 1), LogJournal.INDEX_INTERVAL * 2, 1);
+        assertSequences(read(journal, LogJournal.INDEX_INTERVAL * 4 + 5, Long.MAX_VALUE), LogJournal.INDEX_INTERVAL * 4 + 5, 5);
+        assertSequences(read(journal, LogJournal.INDEX_INTERVAL * 5, Long.MAX_VALUE), 0, 0);
+    }
+    
+    /**
+     * Tests the position returned for an accepted event
+     */
+    @Test
+    public void testAccepted()
+    {
+        final LogJournal journal = new LogJournal(() -> this.file);
+        append(journal, 100, 8);
+        
+        assertEquals(71, journal.scan(10, 100, (event) -> event.getSequence() == 70));
+        assertEquals(-1, journal.scan(10, 50, (event) -> event.getSequence() == 70));
+    }
+    
+    /**
+     * Tests seeking by capture time
+     */
+    @Test
+    public void testScanTime()
+    {
+        final LogJournal journal = new LogJournal(() -> this.file);
+        append(journal, LogJournal.INDEX_INTERVAL * 3, 8);
+        
+        final List<LogEvent> result = new ArrayList<>();
+        journal.scanTime(LogJournal.INDEX_INTERVAL + 3, LogJournal.INDEX_INTERVAL + 7, (event) -> !result.add(event));
+        assertSequences(result, LogJournal.INDEX_INTERVAL + 3, 4);
+    }
+    
+    /**
+     * Tests records continuing in the next chunk after an end of chunk marker
+     */
+    @Test
+    public void testEndOfChunk()
+    {
+        final LogJournal journal = new LogJournal(() -> this.file, CHUNK_SIZE);
+        // 31 header bytes, 4 thread bytes and 60 message bytes; two records per chunk
+        append(journal, 9, 60);
+        
+        assertSequences(read(journal, 0, Long.MAX_VALUE), 0, 9);
+        assertSequences(read(journal, 3, 6), 3, 3);
+        assertEquals(5 * CHUNK_SIZE, this.file.length());
+    }
+    
+    /**
+     * Tests messages too long for a chunk being truncated
+     */
+    @Test
+    public void testTruncated()
+    {
+        final LogJournal journal = new LogJournal(() -> this.file, CHUNK_SIZE);
+        append(journal, 3, 1000);
+        
+        final List<LogEvent> events = read(journal, 0, Long.MAX_VALUE);
+        assertSequences(events, 0, 3);
+        assertEquals(CHUNK_SIZE - 31 - 4 - 4, events.get(1).getMessage().length());
+    }
+    
+    /**
+     * Tests closing and reopening the journal
+     */
+    @Test
+    public void testClose()
+    {
+        final LogJournal journal = new LogJournal(() -> this.file, CHUNK_SIZE);
+        append(journal, 10, 60);
+        journal.close();
+        
+        assertFalse(this.file.exists());
+        assertSequences(read(journal, 0, Long.MAX_VALUE), 0, 0);
+        
+        append(journal, 3, 60);
+        assertTrue(this.file.exists());
+        assertSequences(read(journal, 0, Long.MAX_VALUE), 0, 3);
+    }
+    
+}
@@ -0,0 +1,174 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static eu.xworlds.nukkit.test.LogEventCheck.allOf;
+import static eu.xworlds.nukkit.test.LogEventCheck.contains;
+import static eu.xworlds.nukkit.test.LogEventCheck.level;
+import static eu.xworlds.nukkit.test.LogEventCheck.message;
+import static eu.xworlds.nukkit.test.LogEventCheck.prefix;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * Tests of the {@link LogMatcher}
+ * 
+ * @author mepeisen
+ */
+public class LogMatcherTest
+{
+    
+    /**
+     * Creates an info event
+     * 
+     * @param sequence
+     * @param message
+     * @return event
+     */
+    private static LogEvent event(long sequence, String message)
+    {
+        return event(sequence, LogLevel.INFO, message);
+    }
+    
+    /**
+     * Creates an event
+     * 
+     * @param sequence
+     * @param level
+     * @param message
+     * @return event
+     */
+    private static LogEvent event(long sequence, LogLevel level, String message)
+    {
+        return new LogEvent(level, message, sequence, sequence, "main", 0); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests the literal kinds evaluated by the automaton
+     */
+    @Test
+    public void testLiteralKinds()
+    {
+        final LogMatcher matcher = new LogMatcher().expect(prefix("Loading")).expect(contains("Done")).expect(message("Ready")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        
+        assertFalse(matcher.offer(event(0, "Not Loading"))); //$NON-NLS-1$
+        assertFalse(matcher.offer(event(1, "Ready!"))); //$NON-NLS-1$
+        assertFalse(matcher.isMatched(0));
+        assertFalse(matcher.isMatched(2));
+        
+        assertFalse(matcher.offer(event(2, "Loading world"))); //$NON-NLS-1$
+        assertFalse(matcher.offer(event(3, "All Done (1s)"))); //$NON-NLS-1$
+        assertTrue(matcher.offer(event(4, "Ready"))); //$NON-NLS-1$
+        
+        assertTrue(matcher.isComplete());
+        assertEquals(2, matcher.getMatchedSequence(0));
+        assertEquals(3, matcher.getMatchedSequence(1));
+        assertEquals(4, matcher.getMatchedSequence(2));
+    }
+    
+    /**
+     * Tests overlapping literals of several expectations satisfied by one event
+     */
+    @Test
+    public void testOverlappingPatterns()
+    {
+        final LogMatcher matcher = new LogMatcher().expect(prefix("Lo")).expect(contains("Loading")).expect(contains("ading wor")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        
+        assertTrue(matcher.offer(event(7, "Loading world"))); //$NON-NLS-1$
+        assertEquals(7, matcher.getMatchedSequence(0));
+        assertEquals(7, matcher.getMatchedSequence(1));
+        assertEquals(7, matcher.getMatchedSequence(2));
+    }
+    
+    /**
+     * Tests that the first matching event is kept
+     */
+    @Test
+    public void testFirstMatchKept()
+    {
+        final LogMatcher matcher = new LogMatcher().expect(contains("tick")).expect(prefix("Done")); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        assertFalse(matcher.offer(event(0, "tick 1"))); //$NON-NLS-1$
+        assertFalse(matcher.offer(event(1, "tick 2"))); //$NON-NLS-1$
+        assertEquals(0, matcher.getMatchedSequence(0));
+        assertEquals(-1, matcher.getMatchedSequence(1));
+        assertEquals(Arrays.asList("prefix \"Done\""), matcher.getPending()); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests expectations without literal and composite expectations with a required literal
+     */
+    @Test
+    public void testPlainAndCompositeChecks()
+    {
+        final LogMatcher matcher = new LogMatcher().expect("warning", level(LogLevel.WARNING)) //$NON-NLS-1$
+                .expect("error with prefix", allOf(prefix("Crash"), level(LogLevel.ERROR))); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        assertFalse(matcher.offer(event(0, LogLevel.INFO, "Crash report"))); //$NON-NLS-1$
+        assertFalse(matcher.offer(event(1, LogLevel.ERROR, "Other error"))); //$NON-NLS-1$
+        assertFalse(matcher.offer(event(2, LogLevel.WARNING, "Crash report"))); //$NON-NLS-1$
+        assertEquals(2, matcher.getMatchedSequence(0));
+        assertEquals(Arrays.asList("error with prefix"), matcher.getPending()); //$NON-NLS-1$
+        
+        assertTrue(matcher.offer(event(3, LogLevel.ERROR, "Crash report"))); //$NON-NLS-1$
+        assertEquals(3, matcher.getMatchedSequence(1));
+        assertEquals(Collections.emptyList(), matcher.getPending());
+    }
+    
+    /**
+     * Tests empty literals; they are not compiled into the automaton and must be evaluated per event
+     */
+    @Test
+    public void testEmptyLiteral()
+    {
+        final LogMatcher matcher = new LogMatcher().expect(message("")).expect(prefix("")); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        assertFalse(matcher.offer(event(0, null)));
+        assertFalse(matcher.isMatched(0));
+        assertFalse(matcher.isMatched(1));
+        
+        assertFalse(matcher.offer(event(1, "Loading"))); //$NON-NLS-1$
+        assertFalse(matcher.isMatched(0));
+        assertEquals(1, matcher.getMatchedSequence(1));
+        
+        assertTrue(matcher.offer(event(2, ""))); //$NON-NLS-1$
+        assertEquals(2, matcher.getMatchedSequence(0));
+    }
+    
+    /**
+     * Tests the matcher without expectations and adding expectations after compilation
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testExpectAfterCompile()
+    {
+        final LogMatcher matcher = new LogMatcher();
+        assertTrue(matcher.isComplete());
+        assertTrue(matcher.offer(event(0, "any"))); //$NON-NLS-1$
+        matcher.expect(prefix("late")); //$NON-NLS-1$
+    }
+    
+}
@@ -0,0 +1,144 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static eu.xworlds.nukkit.test.LogEventCheck.prefix;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * Tests of the {@link LogRateCheck}
+ * 
+ * @author mepeisen
+ */
+public class LogRateCheckTest
+{
+    
+    /**
+     * Creates an info event
+     * 
+     * @param millis
+     *            the capture time in milliseconds
+     * @param message
+     * @return event
+     */
+    private static LogEvent event(long millis, String message)
+    {
+        return new LogEvent(LogLevel.INFO, message, millis, TimeUnit.MILLISECONDS.toNanos(millis), "main", 0); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests the first event exceeding the rate
+     */
+    @Test
+    public void testExceeded()
+    {
+        final LogRateCheck check = new LogRateCheck(prefix("spam"), 3); //$NON-NLS-1$
+        
+        assertFalse(check.check(event(0, "spam"))); //$NON-NLS-1$
+        assertFalse(check.check(event(100, "spam"))); //$NON-NLS-1$
+        assertFalse(check.check(event(200, "spam"))); //$NON-NLS-1$
+        assertTrue(check.check(event(999, "spam"))); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests that events exactly one second old are no longer counted
+     */
+    @Test
+    public void testSecondBoundary()
+    {
+        final LogRateCheck check = new LogRateCheck(prefix("spam"), 3); //$NON-NLS-1$
+        
+        assertFalse(check.check(event(0, "spam"))); //$NON-NLS-1$
+        assertFalse(check.check(event(100, "spam"))); //$NON-NLS-1$
+        assertFalse(check.check(event(200, "spam"))); //$NON-NLS-1$
+        assertFalse(check.check(event(1000, "spam"))); //$NON-NLS-1$
+        assertTrue(check.check(event(1099, "spam"))); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests that other events are not counted
+     */
+    @Test
+    public void testOtherEvents()
+    {
+        final LogRateCheck check = new LogRateCheck(prefix("spam"), 1); //$NON-NLS-1$
+        
+        assertFalse(check.check(event(0, "spam"))); //$NON-NLS-1$
+        assertFalse(check.check(event(1, "other"))); //$NON-NLS-1$
+        assertFalse(check.check(event(2, "other spam"))); //$NON-NLS-1$
+        assertTrue(check.check(event(3, "spam"))); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests the sliding window after the rate was exceeded
+     */
+    @Test
+    public void testSlidingWindow()
+    {
+        final LogRateCheck check = new LogRateCheck(prefix("spam"), 2); //$NON-NLS-1$
+        
+        assertFalse(check.check(event(0, "spam"))); //$NON-NLS-1$
+        assertFalse(check.check(event(500, "spam"))); //$NON-NLS-1$
+        assertTrue(check.check(event(900, "spam"))); //$NON-NLS-1$
+        assertTrue(check.check(event(950, "spam"))); //$NON-NLS-1$
+        // 900, 950, 1499
+        assertTrue(check.check(event(1499, "spam"))); //$NON-NLS-1$
+        // 950, 1499, 1900 after 900 left the window
+        assertTrue(check.check(event(1900, "spam"))); //$NON-NLS-1$
+        // 1900, 2949
+        assertFalse(check.check(event(2949, "spam"))); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests a rate beyond the initial ring size; the ring grows with the events within one second
+     */
+    @Test
+    public void testLargeRate()
+    {
+        final LogRateCheck check = new LogRateCheck(prefix("spam"), 100); //$NON-NLS-1$
+        for (int i = 0; i < 100; i++)
+        {
+            assertFalse(check.check(event(i, "spam"))); //$NON-NLS-1$
+        }
+        assertTrue(check.check(event(100, "spam"))); //$NON-NLS-1$
+        
+        final LogRateCheck unbounded = new LogRateCheck(prefix("spam"), Integer.MAX_VALUE); //$NON-NLS-1$
+        for (int i = 0; i < 1000; i++)
+        {
+            assertFalse(unbounded.check(event(i, "spam"))); //$NON-NLS-1$
+        }
+    }
+    
+    /**
+     * Tests a negative rate
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeRate()
+    {
+        new LogRateCheck(prefix("spam"), -1); //$NON-NLS-1$
+    }
+    
+}
@@ -0,0 +1,247 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static eu.xworlds.nukkit.test.LogEventCheck.contains;
+import static eu.xworlds.nukkit.test.LogEventCheck.level;
+import static eu.xworlds.nukkit.test.LogEventCheck.prefix;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * Tests of the {@link LogSequence}
+ * 
+ * @author mepeisen
+ */
+public class LogSequenceTest
+{
+    
+    /**
+     * Creates an info event
+     * 
+     * @param sequence
+     * @param millis
+     *            the capture time in milliseconds
+     * @param message
+     * @return event
+     */
+    private static LogEvent event(long sequence, long millis, String message)
+    {
+        return event(sequence, millis, LogLevel.INFO, message);
+    }
+    
+    /**
+     * Creates an event
+     * 
+     * @param sequence
+     * @param millis
+     *            the capture time in milliseconds
+     * @param level
+     * @param message
+     * @return event
+     */
+    private static LogEvent event(long sequence, long millis, LogLevel level, String message)
+    {
+        return new LogEvent(level, message, sequence, TimeUnit.MILLISECONDS.toNanos(millis), "main", 0); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests a sequence reached in order
+     */
+    @Test
+    public void testInOrder()
+    {
+        final LogSequence sequence = new LogSequence().then(prefix("Loading")).then(contains("Enabling")).then(prefix("Done")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        
+        assertFalse(sequence.offer(event(0, 0, "Loading properties"))); //$NON-NLS-1$
+        assertFalse(sequence.offer(event(1, 3, "unrelated"))); //$NON-NLS-1$
+        assertFalse(sequence.offer(event(2, 5, "Plugin: Enabling foo"))); //$NON-NLS-1$
+        assertTrue(sequence.offer(event(3, 12, "Done (1s)"))); //$NON-NLS-1$
+        
+        assertTrue(sequence.isComplete());
+        assertNull(sequence.getViolation());
+        assertEquals(3, sequence.getReachedSteps());
+        assertEquals(2, sequence.getEvent(1).getSequence());
+        assertArrayEquals(new long[] { 0, TimeUnit.MILLISECONDS.toNanos(5), TimeUnit.MILLISECONDS.toNanos(7) }, sequence.getLatencies());
+    }
+    
+    /**
+     * Tests that events of later steps arriving too early do not advance the sequence
+     */
+    @Test
+    public void testOutOfOrder()
+    {
+        final LogSequence sequence = new LogSequence().then(prefix("A")).then(prefix("B")); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        assertFalse(sequence.offer(event(0, 0, "B early"))); //$NON-NLS-1$
+        assertEquals(0, sequence.getReachedSteps());
+        assertFalse(sequence.offer(event(1, 1, "A"))); //$NON-NLS-1$
+        assertEquals(1, sequence.getReachedSteps());
+        assertTrue(sequence.offer(event(2, 2, "B late"))); //$NON-NLS-1$
+        assertEquals(2, sequence.getEvent(1).getSequence());
+    }
+    
+    /**
+     * Tests that one event advances at most one step
+     */
+    @Test
+    public void testOneStepPerEvent()
+    {
+        final LogSequence sequence = new LogSequence().then(contains("x")).then(contains("x")); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        assertFalse(sequence.offer(event(0, 0, "x"))); //$NON-NLS-1$
+        assertEquals(1, sequence.getReachedSteps());
+        assertTrue(sequence.offer(event(1, 1, "x"))); //$NON-NLS-1$
+        assertTrue(sequence.isComplete());
+    }
+    
+    /**
+     * Tests a forbidden event stopping the sequence
+     */
+    @Test
+    public void testForbidden()
+    {
+        final LogSequence sequence = new LogSequence().then(prefix("A")).then(prefix("B")).forbid("errors", level(LogLevel.ERROR)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        
+        assertFalse(sequence.offer(event(0, 0, "A"))); //$NON-NLS-1$
+        assertTrue(sequence.offer(event(1, 1, LogLevel.ERROR, "B failed"))); //$NON-NLS-1$
+        assertFalse(sequence.isComplete());
+        assertEquals("forbidden event (errors): B failed", sequence.getViolation()); //$NON-NLS-1$
+        
+        // stopped at the violation
+        assertTrue(sequence.offer(event(2, 2, "B"))); //$NON-NLS-1$
+        assertEquals(1, sequence.getReachedSteps());
+    }
+    
+    /**
+     * Tests that forbidden checks end with the complete sequence
+     */
+    @Test
+    public void testForbiddenAfterComplete()
+    {
+        final LogSequence sequence = new LogSequence().then(prefix("A")).forbid(level(LogLevel.ERROR)); //$NON-NLS-1$
+        
+        assertTrue(sequence.offer(event(0, 0, "A"))); //$NON-NLS-1$
+        assertTrue(sequence.offer(event(1, 1, LogLevel.ERROR, "late error"))); //$NON-NLS-1$
+        assertTrue(sequence.isComplete());
+        assertNull(sequence.getViolation());
+    }
+    
+    /**
+     * Tests the maximum gap between steps at its boundary
+     */
+    @Test
+    public void testGapBoundary()
+    {
+        final LogSequence sequence = new LogSequence().then(prefix("A")).then(prefix("B"), 5); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        assertFalse(sequence.offer(event(0, 10, "A"))); //$NON-NLS-1$
+        assertTrue(sequence.offer(event(1, 15, "B"))); //$NON-NLS-1$
+        assertTrue(sequence.isComplete());
+    }
+    
+    /**
+     * Tests an exceeded gap; any event after the gap violates the sequence
+     */
+    @Test
+    public void testGapExceeded()
+    {
+        final LogSequence sequence = new LogSequence().then(prefix("A")).then("B", prefix("B"), 5); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        
+        assertFalse(sequence.offer(event(0, 10, "A"))); //$NON-NLS-1$
+        assertFalse(sequence.offer(event(1, 14, "other"))); //$NON-NLS-1$
+        assertTrue(sequence.offer(event(2, 16, "other"))); //$NON-NLS-1$
+        assertFalse(sequence.isComplete());
+        assertEquals("step 2 (B) not reached within 5 ms", sequence.getViolation()); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests that the gap does not apply to the first step
+     */
+    @Test
+    public void testNoGapForFirstStep()
+    {
+        final LogSequence sequence = new LogSequence().then(prefix("A"), 1).then(prefix("B")); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        assertFalse(sequence.offer(event(0, 0, "other"))); //$NON-NLS-1$
+        assertFalse(sequence.offer(event(1, 1000, "A"))); //$NON-NLS-1$
+        assertTrue(sequence.offer(event(2, 5000, "B"))); //$NON-NLS-1$
+        assertTrue(sequence.isComplete());
+    }
+    
+    /**
+     * Tests that an event delivered twice advances the sequence once
+     */
+    @Test
+    public void testDuplicateIgnored()
+    {
+        final LogSequence sequence = new LogSequence().then(prefix("A")).then(prefix("A")); //$NON-NLS-1$ //$NON-NLS-2$
+        final LogEvent a = event(0, 0, "A"); //$NON-NLS-1$
+        
+        assertFalse(sequence.offer(a));
+        assertFalse(sequence.offer(a));
+        assertEquals(1, sequence.getReachedSteps());
+        assertTrue(sequence.offer(event(1, 1, "A"))); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests a sequence starting within the present events while another thread logs the later steps
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentLogging() throws Exception
+    {
+        final LogEventStore store = new LogEventStore(1 << 15, LogOverflow.DROP_OLDEST, null, null);
+        store.append(LogLevel.INFO, "Loading properties", System.nanoTime(), "main", 0); //$NON-NLS-1$ //$NON-NLS-2$
+        for (int i = 0; i < 10000; i++)
+        {
+            store.append(LogLevel.INFO, "present", System.nanoTime(), "main", 0); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        final LogSequence sequence = new LogSequence().then(prefix("Loading")).then(prefix("Done")); //$NON-NLS-1$ //$NON-NLS-2$
+        final LogWatcher watcher = new LogWatcher(sequence.asCheck(), true);
+        
+        final Thread logger = new Thread(() -> {
+            watcher.offer(store.append(LogLevel.INFO, "Done (1s)", System.nanoTime(), "logger", 0)); //$NON-NLS-1$ //$NON-NLS-2$
+            for (int i = 0; i < 10000; i++)
+            {
+                watcher.offer(store.append(LogLevel.INFO, "live", System.nanoTime(), "logger", 0)); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        });
+        logger.start();
+        watcher.replay(store);
+        
+        watcher.getFuture().get(10, TimeUnit.SECONDS);
+        logger.join();
+        assertTrue(sequence.isComplete());
+        assertEquals(0, sequence.getEvent(0).getSequence());
+        assertEquals(10001, sequence.getEvent(1).getSequence());
+        assertTrue(sequence.getLatencies()[1] >= 0);
+    }
+    
+}
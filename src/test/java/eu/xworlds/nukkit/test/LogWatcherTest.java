@@ -0,0 +1,159 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import cn.nukkit.utils.LogLevel;
+import eu.xworlds.nukkit.test.NukkitTestSession.LogEvent;
+
+/**
+ * Tests of the {@link LogWatcher}
+ * 
+ * @author mepeisen
+ */
+public class LogWatcherTest
+{
+    
+    /**
+     * Appends an info event
+     * 
+     * @param store
+     * @param message
+     * @return event
+     */
+    private static LogEvent append(LogEventStore store, String message)
+    {
+        return store.append(LogLevel.INFO, message, System.nanoTime(), "main", 0); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests that events offered while replaying are queued and delivered after the present events, once
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testOfferDuringReplay() throws Exception
+    {
+        final LogEventStore store = new LogEventStore(16, LogOverflow.DROP_OLDEST, null, null);
+        append(store, "a"); //$NON-NLS-1$
+        append(store, "b"); //$NON-NLS-1$
+        final List<String> seen = new ArrayList<>();
+        final LogWatcher[] watcher = new LogWatcher[1];
+        watcher[0] = new LogWatcher((event) -> {
+            seen.add(event.getMessage());
+            if (seen.size() == 1)
+            {
+                // a new event logged by another thread while the first one is checked
+                final Thread logger = new Thread(() -> {
+                    final LogEvent c = append(store, "c"); //$NON-NLS-1$
+                    assertFalse(watcher[0].offer(c));
+                });
+                logger.start();
+                try
+                {
+                    logger.join();
+                }
+                catch (InterruptedException ex)
+                {
+                    throw new IllegalStateException(ex);
+                }
+                assertEquals(1, seen.size());
+            }
+            return "d".equals(event.getMessage()); //$NON-NLS-1$
+        }, true);
+        
+        watcher[0].replay(store);
+        assertEquals("[a, b, c]", seen.toString()); //$NON-NLS-1$
+        
+        assertTrue(watcher[0].offer(append(store, "d"))); //$NON-NLS-1$
+        assertEquals("[a, b, c, d]", seen.toString()); //$NON-NLS-1$
+        assertEquals("d", watcher[0].getFuture().get().getMessage()); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests that a live event already delivered by the replay is dropped
+     */
+    @Test
+    public void testDuplicateDropped()
+    {
+        final LogEventStore store = new LogEventStore(16, LogOverflow.DROP_OLDEST, null, null);
+        final LogEvent a = append(store, "a"); //$NON-NLS-1$
+        final List<String> seen = new ArrayList<>();
+        final LogWatcher watcher = new LogWatcher((event) -> {
+            seen.add(event.getMessage());
+            return false;
+        }, true);
+        
+        watcher.replay(store);
+        assertFalse(watcher.offer(a));
+        assertEquals("[a]", seen.toString()); //$NON-NLS-1$
+    }
+    
+    /**
+     * Tests replaying while another thread logs; the check sees every event once, in order and never concurrently
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentLogging() throws Exception
+    {
+        final int present = 5000;
+        final int live = 20000;
+        final LogEventStore store = new LogEventStore(present + live, LogOverflow.DROP_OLDEST, null, null);
+        for (int i = 0; i < present; i++)
+        {
+            append(store, "present"); //$NON-NLS-1$
+        }
+        final AtomicInteger inCheck = new AtomicInteger();
+        final List<Long> seen = new ArrayList<>();
+        final LogWatcher watcher = new LogWatcher((event) -> {
+            assertEquals(1, inCheck.incrementAndGet());
+            seen.add(Long.valueOf(event.getSequence()));
+            inCheck.decrementAndGet();
+            return "last".equals(event.getMessage()); //$NON-NLS-1$
+        }, true);
+        
+        final Thread logger = new Thread(() -> {
+            for (int i = 0; i < live; i++)
+            {
+                watcher.offer(append(store, i == live - 1 ? "last" : "live")); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        });
+        logger.start();
+        watcher.replay(store);
+        
+        assertEquals("last", watcher.getFuture().get(10, TimeUnit.SECONDS).getMessage()); //$NON-NLS-1$
+        logger.join();
+        assertEquals(present + live, seen.size());
+        for (int i = 0; i < seen.size(); i++)
+        {
+            assertEquals(i, seen.get(i).longValue());
+        }
+    }
+    
+}
@@ -0,0 +1,152 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the {@link TickHistogram}
+ * 
+ * @author mepeisen
+ */
+public class TickHistogramTest
+{
+    
+    /** nano seconds per millisecond */
+    private static final long MILLI = 1000000L;
+    
+    /**
+     * Tests that small values get buckets of their own
+     */
+    @Test
+    public void testExactBuckets()
+    {
+        for (int value = 0; value < 128; value++)
+        {
+            assertEquals(value, TickHistogram.indexOf(value));
+            assertEquals(value, TickHistogram.highestEquivalent(value));
+        }
+        assertEquals(128, TickHistogram.indexOf(128));
+        assertEquals(128, TickHistogram.highestEquivalent(128));
+        assertEquals(256, TickHistogram.indexOf(256));
+        assertEquals(256, TickHistogram.indexOf(257));
+        assertEquals(257, TickHistogram.highestEquivalent(256));
+        assertEquals(257, TickHistogram.indexOf(258));
+    }
+    
+    /**
+     * Tests that the buckets are contiguous and keep the relative precision of one percent
+     */
+    @Test
+    public void testBucketBounds()
+    {
+        for (int index = 0; index < TickHistogram.indexOf(Long.MAX_VALUE); index++)
+        {
+            final long highest = TickHistogram.highestEquivalent(index);
+            assertEquals(index, TickHistogram.indexOf(highest));
+            assertEquals(index + 1, TickHistogram.indexOf(highest + 1));
+            final long lowest = index == 0 ? 0 : TickHistogram.highestEquivalent(index - 1) + 1;
+            assertTrue("bucket " + index, highest - lowest <= lowest / 100); //$NON-NLS-1$
+        }
+        assertEquals(Long.MAX_VALUE, TickHistogram.highestEquivalent(TickHistogram.indexOf(Long.MAX_VALUE)));
+    }
+    
+    /**
+     * Tests the percentiles, the slow ticks and the average ticks per second
+     */
+    @Test
+    public void testSnapshot()
+    {
+        final TickHistogram histogram = new TickHistogram();
+        for (int i = 1; i <= 100; i++)
+        {
+            histogram.record(i * TickHistogram.TICK_NANOS, i * MILLI);
+        }
+        
+        final TickStats stats = histogram.snapshot();
+        assertEquals(100, stats.getCount());
+        assertEquals(50.5, stats.getMeanMillis(), 0.001);
+        assertEquals(50, stats.getP50Millis(), 0.5);
+        assertTrue(stats.getP50Millis() >= 50);
+        assertEquals(99, stats.getP99Millis(), 0.99);
+        assertTrue(stats.getP99Millis() >= 99);
+        assertEquals(100, stats.getP999Millis(), 0.000001);
+        assertEquals(100, stats.getMaxMillis(), 0.000001);
+        assertEquals(50, stats.getSlowTicks());
+        assertEquals(20, stats.getAverageTps(), 0.000001);
+    }
+    
+    /**
+     * Tests that percentiles never exceed the longest tick
+     */
+    @Test
+    public void testPercentileCappedByMax()
+    {
+        final TickHistogram histogram = new TickHistogram();
+        histogram.record(0, 1000 * MILLI + 1);
+        
+        final TickStats stats = histogram.snapshot();
+        assertEquals(stats.getMaxMillis(), stats.getP50Millis(), 0);
+        assertEquals(stats.getMaxMillis(), stats.getP999Millis(), 0);
+        assertEquals(0, stats.getAverageTps(), 0);
+    }
+    
+    /**
+     * Tests an empty histogram and negative durations
+     */
+    @Test
+    public void testEmptyAndNegative()
+    {
+        final TickHistogram histogram = new TickHistogram();
+        TickStats stats = histogram.snapshot();
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getMeanMillis(), 0);
+        assertEquals(0, stats.getP99Millis(), 0);
+        assertEquals(0, stats.getAverageTps(), 0);
+        
+        histogram.record(0, -5);
+        stats = histogram.snapshot();
+        assertEquals(1, stats.getCount());
+        assertEquals(0, stats.getMaxMillis(), 0);
+    }
+    
+    /**
+     * Tests that clearing removes the ticks and the begin time of the first tick
+     */
+    @Test
+    public void testClear()
+    {
+        final TickHistogram histogram = new TickHistogram();
+        histogram.record(0, 80 * MILLI);
+        histogram.record(TickHistogram.TICK_NANOS, 80 * MILLI);
+        histogram.clear();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getSlowTicks());
+        
+        histogram.record(1000 * MILLI, MILLI);
+        histogram.record(1100 * MILLI, MILLI);
+        final TickStats stats = histogram.snapshot();
+        assertEquals(2, stats.getCount());
+        assertEquals(10, stats.getAverageTps(), 0.000001);
+        assertEquals(1, stats.getMaxMillis(), 0.000001);
+    }
+    
+}
@@ -0,0 +1,135 @@
+/*
+    This file is part of "nukkit xWorlds test tools".
+
+    "nukkit xWorlds test tools" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "nukkit xWorlds test tools" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "nukkit xWorlds test tools". If not, see <http://www.gnu.org/licenses/>.
+
+ */
+package eu.xworlds.nukkit.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the {@link TickWindow}
+ * 
+ * @author mepeisen
+ */
+public class TickWindowTest
+{
+    
+    /** nano seconds per millisecond */
+    private static final long MILLI = 1000000L;
+    
+    /**
+     * Creates a window with ticks 1 to given count beginning every 50 milliseconds; tick {@code i} takes {@code i} milliseconds
+     * 
+     * @param capacity
+     * @param count
+     * @return window
+     */
+    private static TickWindow window(int capacity, int count)
+    {
+        final TickWindow window = new TickWindow(capacity);
+        for (int i = 1; i <= count; i++)
+        {
+            window.record(i, i * TickHistogram.TICK_NANOS, i * MILLI);
+        }
+        return window;
+    }
+    
+    /**
+     * Tests that the selection includes ticks beginning exactly at the window start
+     */
+    @Test
+    public void testSelectTrailing()
+    {
+        final TickWindow window = window(16, 10);
+        
+        final TickWindow.Selection selection = window.select(8 * TickHistogram.TICK_NANOS);
+        assertArrayEquals(new int[] { 8, 9, 10 }, selection.ticks);
+        assertArrayEquals(new long[] { 8 * MILLI, 9 * MILLI, 10 * MILLI }, selection.durations);
+        assertEquals(10, window.select(0).size());
+        assertEquals(0, window.select(11 * TickHistogram.TICK_NANOS).size());
+    }
+    
+    /**
+     * Tests that a full window overwrites the oldest ticks
+     */
+    @Test
+    public void testSelectWrapped()
+    {
+        final TickWindow window = window(4, 10);
+        
+        assertArrayEquals(new int[] { 7, 8, 9, 10 }, window.select(0).ticks);
+        assertArrayEquals(new int[] { 9, 10 }, window.select(9 * TickHistogram.TICK_NANOS).ticks);
+        
+        window.clear();
+        assertEquals(0, window.select(0).size());
+        window.record(42, 0, MILLI);
+        assertArrayEquals(new int[] { 42 }, window.select(0).ticks);
+    }
+    
+    /**
+     * Tests the nearest rank percentiles
+     */
+    @Test
+    public void testPercentile()
+    {
+        final TickWindow.Selection selection = window(128, 100).select(0);
+        
+        assertEquals(50, selection.percentileMillis(0.5), 0);
+        assertEquals(99, selection.percentileMillis(0.99), 0);
+        assertEquals(100, selection.percentileMillis(0.999), 0);
+        assertEquals(1, selection.percentileMillis(0), 0);
+        assertEquals(0, window(4, 0).select(0).percentileMillis(0.99), 0);
+    }
+    
+    /**
+     * Tests that the average ticks per second follow the begin times and ignore the processing times
+     */
+    @Test
+    public void testAverageTps()
+    {
+        assertEquals(20, window(128, 100).select(0).averageTps(), 0.000001);
+        
+        final TickWindow window = new TickWindow(16);
+        window.record(1, 0, MILLI);
+        assertEquals(0, window.select(0).averageTps(), 0);
+        window.record(2, 100 * MILLI, MILLI);
+        window.record(3, 200 * MILLI, MILLI);
+        assertEquals(10, window.select(0).averageTps(), 0.000001);
+    }
+    
+    /**
+     * Tests that the longest ticks are described first
+     */
+    @Test
+    public void testDescribeWorst()
+    {
+        final String description = window(16, 10).select(0).describeWorst(3, 20 * TickHistogram.TICK_NANOS);
+        
+        final int first = description.indexOf(" tick 10 ("); //$NON-NLS-1$
+        final int second = description.indexOf(" tick 9 ("); //$NON-NLS-1$
+        final int third = description.indexOf(" tick 8 ("); //$NON-NLS-1$
+        assertTrue(description, description.startsWith("worst ticks:")); //$NON-NLS-1$
+        assertTrue(description, first > 0 && first < second && second < third);
+        assertFalse(description, description.contains(" tick 7 (")); //$NON-NLS-1$
+        assertTrue(description, description.contains(" 500 ms ago)")); //$NON-NLS-1$
+    }
+    
+}